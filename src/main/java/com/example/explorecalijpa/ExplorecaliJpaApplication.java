@@ -7,6 +7,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import com.example.explorecalijpa.business.TourPackageService;
 import com.example.explorecalijpa.business.TourService;
@@ -16,6 +17,7 @@ import io.swagger.v3.oas.models.info.Info;
 
 @SpringBootApplication
 @ComponentScan({ "com.example", "edu.ensign.cs460" })
+@EnableScheduling
 public class ExplorecaliJpaApplication implements CommandLineRunner {
 
     @Bean
@@ -0,0 +1,84 @@
+package com.example.explorecalijpa.business;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Version counters of the data behind cached responses, one per resource.
+ *
+ * Bumped after commit by the change events of the TourRatingService,
+ * TourService and TourPackageService (and of the Spring Data REST writes),
+ * so a response built after reading a version never holds data older than
+ * that version. The listeners run last of all the listeners of a commit;
+ * listeners that update in-memory state served from cached responses must
+ * be ordered {@link #BEFORE_BUMP}.
+ */
+@Component
+public class DataVersions {
+
+  /** Ratings of any tour, e.g. the top recommendations. */
+  public static final String RATINGS = "ratings";
+  public static final String TOURS = "tours";
+  public static final String PACKAGES = "packages";
+
+  public static final int BEFORE_BUMP = Ordered.LOWEST_PRECEDENCE - 1;
+
+  // tells the versions of one run from those of the previous ones
+  private final long epoch = System.currentTimeMillis();
+  private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  /**
+   * @param tourId the tour
+   * @return the resource of the ratings of one tour.
+   */
+  public static String tourRatings(int tourId) {
+    return RATINGS + "/" + tourId;
+  }
+
+  /**
+   * @param resource the resource
+   * @return its current version.
+   */
+  public long current(String resource) {
+    AtomicLong version = versions.get(resource);
+    return version == null ? 0 : version.get();
+  }
+
+  /**
+   * @return the start of this run, part of every version tag.
+   */
+  public long epoch() {
+    return epoch;
+  }
+
+  public void bump(String resource) {
+    versions.computeIfAbsent(resource, r -> new AtomicLong()).incrementAndGet();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  public void onTourRatingChanged(TourRatingEvent event) {
+    bump(tourRatings(event.tourId()));
+    bump(RATINGS);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  public void onTourChanged(TourChangedEvent event) {
+    bump(TOURS);
+    // rating responses carry tour titles, and a deleted tour has no average
+    bump(tourRatings(event.tourId()));
+    bump(RATINGS);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  public void onTourPackageChanged(TourPackageChangedEvent event) {
+    bump(PACKAGES);
+  }
+}
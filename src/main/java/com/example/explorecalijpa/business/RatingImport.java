@@ -0,0 +1,13 @@
+package com.example.explorecalijpa.business;
+
+/**
+ * One validated rating of a bulk import.
+ *
+ * @param line       line of the record in the imported file
+ * @param tourId     tour identifier
+ * @param customerId customer identifier
+ * @param score      score of the rating
+ * @param comment    optional comment
+ */
+public record RatingImport(long line, int tourId, int customerId, int score, String comment) {
+}
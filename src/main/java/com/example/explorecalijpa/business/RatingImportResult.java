@@ -0,0 +1,21 @@
+package com.example.explorecalijpa.business;
+
+import java.util.List;
+
+/**
+ * Outcome of importing one chunk of ratings.
+ *
+ * @param imported number of ratings created
+ * @param rejected the records that were not imported
+ */
+public record RatingImportResult(int imported, List<Rejected> rejected) {
+
+  /**
+   * A record that was not imported.
+   *
+   * @param line   line of the record in the imported file
+   * @param reason why it was rejected
+   */
+  public record Rejected(long line, String reason) {
+  }
+}
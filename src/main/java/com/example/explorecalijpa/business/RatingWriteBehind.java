@@ -0,0 +1,394 @@
+package com.example.explorecalijpa.business;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.example.explorecalijpa.model.QueuedTourRating;
+import com.example.explorecalijpa.repo.QueuedTourRatingRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind ingestion of new tour ratings, enabled with
+ * {@code ratings.write-behind.enabled=true}.
+ *
+ * Requests only hand the rating to an acceptor thread, which inserts
+ * whatever requests are waiting (up to {@code ratings.write-behind.batch-size})
+ * into the tour_rating_outbox table as one JDBC batch and one commit, then
+ * releases them: group commit, without the tour and duplicate SELECTs,
+ * statistics and events of TourRatingService.createNew. A single writer
+ * thread drains the outbox the same way and imports it with
+ * TourRatingService.importRatings, deleting the imported rows from the
+ * outbox in the same transaction.
+ *
+ * Acceptance contract: an accepted rating is committed to the outbox before
+ * the request returns, and written unless it keeps failing. A rating already
+ * queued is refused by the outbox unique key; when a group insert fails its
+ * ratings are inserted one at a time, so only the offending request sees
+ * the error. The writer picks up what a previous run left behind when it
+ * starts, so neither a crash nor an interrupted writer loses ratings. When a
+ * batch fails its ratings are written one at a time, so only the failing rows
+ * are retried; a rating that fails {@value #ATTEMPTS} times stays in the
+ * outbox for inspection and is counted as failed. Ratings of an unknown tour
+ * or of a customer who already rated the tour are reported when the batch is
+ * applied: logged, counted as rejected and removed.
+ */
+@Component
+@ConditionalOnProperty(name = "ratings.write-behind.enabled", havingValue = "true")
+@Slf4j
+public class RatingWriteBehind implements SmartLifecycle, MeterBinder {
+
+  // stop after the web server (DEFAULT_PHASE - 1024) so no request enqueues behind the final drain
+  private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+  private static final int ATTEMPTS = 3;
+  private static final long IDLE_WAIT_MILLIS = 100;
+
+  private final TourRatingService tourRatingService;
+  private final QueuedTourRatingRepository outbox;
+  private final TransactionOperations transactions;
+  private final int capacity;
+  private final int batchSize;
+  private final Duration retryDelay;
+  // requests waiting for the acceptor's next group insert
+  private final BlockingQueue<Offer> offers = new LinkedBlockingQueue<>();
+  // wakes the writer when a rating is queued
+  private final Semaphore signal = new Semaphore(0);
+  private final AtomicLong pending = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong groupInserts = new AtomicLong();
+
+  // guarded by offers, so no offer is queued after the acceptor's last look
+  private volatile boolean accepting;
+  private volatile boolean writing;
+  private volatile Thread acceptor;
+  private volatile Thread writer;
+
+  private record Offer(QueuedTourRating rating, CompletableFuture<Boolean> accepted) {
+  }
+
+  @Autowired
+  public RatingWriteBehind(TourRatingService tourRatingService, QueuedTourRatingRepository outbox,
+      TransactionOperations transactions,
+      @Value("${ratings.write-behind.capacity:10000}") int capacity,
+      @Value("${ratings.write-behind.batch-size:500}") int batchSize) {
+    this(tourRatingService, outbox, transactions, capacity, batchSize, Duration.ofSeconds(1));
+  }
+
+  RatingWriteBehind(TourRatingService tourRatingService, QueuedTourRatingRepository outbox,
+      TransactionOperations transactions, int capacity, int batchSize, Duration retryDelay) {
+    this.tourRatingService = tourRatingService;
+    this.outbox = outbox;
+    this.transactions = transactions;
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+    this.retryDelay = retryDelay;
+  }
+
+  /**
+   * Queue a new rating for the writer. Returns once the rating is committed
+   * to the outbox with the others offered meanwhile.
+   *
+   * @param tourId     tour identifier
+   * @param customerId customer identifier
+   * @param score      score of the rating
+   * @param comment    optional comment
+   * @return false if the outbox is full or closed, the rating was not accepted
+   * @throws org.springframework.dao.DuplicateKeyException if a rating of the
+   *         customer for the tour is already queued.
+   */
+  public boolean offer(int tourId, int customerId, int score, String comment) {
+    Offer offer = new Offer(new QueuedTourRating(tourId, customerId, score, comment), new CompletableFuture<>());
+    synchronized (offers) {
+      if (!accepting) {
+        return false;
+      }
+      if (pending.incrementAndGet() > capacity) {
+        pending.decrementAndGet();
+        return false;
+      }
+      offers.add(offer);
+    }
+    try {
+      return offer.accepted().join();
+    } catch (CompletionException e) {
+      throw (RuntimeException) e.getCause();
+    }
+  }
+
+  /**
+   * @return number of ratings accepted but not yet written.
+   */
+  public long pending() {
+    return pending.get();
+  }
+
+  @Override
+  public synchronized void start() {
+    if (writer != null) {
+      return;
+    }
+    pending.set(outbox.countByAttemptsLessThan(ATTEMPTS));
+    if (pending.get() > 0) {
+      log.info("Resuming {} queued tour ratings", pending.get());
+    }
+    writing = true;
+    synchronized (offers) {
+      accepting = true;
+    }
+    acceptor = new Thread(this::accept, "rating-write-behind-accept");
+    acceptor.start();
+    writer = new Thread(this::drain, "rating-write-behind");
+    writer.start();
+  }
+
+  /**
+   * Stop accepting ratings, write everything already accepted and wait for
+   * the writer to finish.
+   */
+  @Override
+  public synchronized void stop() {
+    Thread thread = writer;
+    if (thread == null) {
+      return;
+    }
+    synchronized (offers) {
+      accepting = false;
+    }
+    try {
+      // the offers already waiting are inserted before the writer's final drain
+      acceptor.join();
+      writing = false;
+      signal.release();
+      log.info("Flushing {} queued tour ratings", pending.get());
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    acceptor = null;
+    writer = null;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return writer != null;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  private void accept() {
+    List<Offer> batch = new ArrayList<>(batchSize);
+    while (true) {
+      Offer first;
+      try {
+        first = offers.poll(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        synchronized (offers) {
+          accepting = false;
+        }
+        offers.forEach(this::refuse);
+        offers.clear();
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (first == null) {
+        if (!accepting && offers.isEmpty()) {
+          return;
+        }
+        continue;
+      }
+      // group commit: every request that arrived while the last insert ran
+      batch.add(first);
+      offers.drainTo(batch, batchSize - 1);
+      insert(batch);
+      batch.clear();
+    }
+  }
+
+  private void insert(List<Offer> batch) {
+    try {
+      commitOffers(batch);
+      return;
+    } catch (RuntimeException e) {
+      if (batch.size() == 1) {
+        refuse(batch.get(0), e);
+        return;
+      }
+      log.debug("Queuing {} tour ratings failed, queuing them one at a time", batch.size(), e);
+    }
+    for (Offer offer : batch) {
+      try {
+        commitOffers(List.of(offer));
+      } catch (RuntimeException e) {
+        refuse(offer, e);
+      }
+    }
+  }
+
+  private void commitOffers(List<Offer> batch) {
+    transactions.executeWithoutResult(status -> outbox.insertAll(batch.stream().map(Offer::rating).toList()));
+    groupInserts.incrementAndGet();
+    batch.forEach(o -> o.accepted().complete(true));
+    signal.release();
+  }
+
+  private void refuse(Offer offer) {
+    pending.decrementAndGet();
+    offer.accepted().complete(false);
+  }
+
+  private void refuse(Offer offer, RuntimeException cause) {
+    pending.decrementAndGet();
+    offer.accepted().completeExceptionally(cause);
+  }
+
+  private void drain() {
+    while (!Thread.currentThread().isInterrupted()) {
+      List<QueuedTourRating> batch;
+      try {
+        // group commit: everything that queued up while the last batch was written
+        batch = outbox.findByAttemptsLessThanOrderById(ATTEMPTS, PageRequest.of(0, batchSize));
+      } catch (RuntimeException e) {
+        log.warn("Reading the queued tour ratings failed", e);
+        if (!writing) {
+          return;
+        }
+        pause();
+        continue;
+      }
+      if (!batch.isEmpty()) {
+        write(batch);
+      } else if (!writing) {
+        return;
+      } else {
+        try {
+          signal.tryAcquire(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+          signal.drainPermits();
+        } catch (InterruptedException e) {
+          // the queued ratings stay in the outbox for the next start
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  private void write(List<QueuedTourRating> batch) {
+    try {
+      commit(batch);
+      return;
+    } catch (RuntimeException e) {
+      if (batch.size() == 1) {
+        attemptFailed(batch.get(0), e);
+        pause();
+        return;
+      }
+      log.warn("Writing {} queued tour ratings failed, writing them one at a time", batch.size(), e);
+    }
+    boolean failures = false;
+    for (QueuedTourRating rating : batch) {
+      try {
+        commit(List.of(rating));
+      } catch (RuntimeException e) {
+        attemptFailed(rating, e);
+        failures = true;
+      }
+    }
+    if (failures) {
+      pause();
+    }
+  }
+
+  /**
+   * Import the ratings and remove them from the outbox in one transaction.
+   */
+  private void commit(List<QueuedTourRating> ratings) {
+    List<RatingImport> imports = ratings.stream()
+        .map(r -> new RatingImport(r.getId(), r.getTourId(), r.getCustomerId(), r.getScore(), r.getComment()))
+        .toList();
+    RatingImportResult result = transactions.execute(status -> {
+      RatingImportResult imported = tourRatingService.importRatings(imports);
+      outbox.deleteAllByIdInBatch(ratings.stream().map(QueuedTourRating::getId).toList());
+      return imported;
+    });
+    written.addAndGet(result.imported());
+    rejected.addAndGet(result.rejected().size());
+    batches.incrementAndGet();
+    pending.addAndGet(-ratings.size());
+    result.rejected().forEach(r -> log.warn("Queued tour rating {} rejected: {}", r.line(), r.reason()));
+  }
+
+  private void attemptFailed(QueuedTourRating rating, RuntimeException cause) {
+    try {
+      transactions.executeWithoutResult(status -> outbox.incrementAttempts(rating.getId()));
+    } catch (RuntimeException e) {
+      log.warn("Counting the failed attempt of queued tour rating {} failed", rating.getId(), e);
+      return;
+    }
+    int attempt = rating.getAttempts() + 1;
+    if (attempt < ATTEMPTS) {
+      log.warn("Writing queued tour rating {} failed, attempt {} of {}", rating.getId(), attempt, ATTEMPTS, cause);
+      return;
+    }
+    failed.incrementAndGet();
+    pending.decrementAndGet();
+    log.error("Giving up on queued tour rating {}: tour {} customer {} score {}", rating.getId(),
+        rating.getTourId(), rating.getCustomerId(), rating.getScore(), cause);
+  }
+
+  private void pause() {
+    try {
+      Thread.sleep(retryDelay.toMillis());
+    } catch (InterruptedException e) {
+      // ends the writer, the queued ratings stay in the outbox for the next start
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("ratings.write-behind.pending", pending, AtomicLong::get)
+        .description("Ratings accepted and waiting for the writer.")
+        .register(registry);
+    FunctionCounter.builder("ratings.write-behind.batches", batches, AtomicLong::get)
+        .description("Batches written.")
+        .register(registry);
+    FunctionCounter.builder("ratings.write-behind.outbox-batches", groupInserts, AtomicLong::get)
+        .description("Group inserts of accepted ratings into the outbox.")
+        .register(registry);
+    bindOutcome(registry, "written", written);
+    bindOutcome(registry, "rejected", rejected);
+    bindOutcome(registry, "failed", failed);
+  }
+
+  private static void bindOutcome(MeterRegistry registry, String result, AtomicLong count) {
+    FunctionCounter.builder("ratings.write-behind.ratings", count, AtomicLong::get)
+        .tag("result", result)
+        .description("Queued ratings by outcome.")
+        .register(registry);
+  }
+}
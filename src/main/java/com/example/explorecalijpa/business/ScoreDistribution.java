@@ -0,0 +1,16 @@
+package com.example.explorecalijpa.business;
+
+/**
+ * Distribution of the scores of a tour.
+ *
+ * @param tourId the tour identifier
+ * @param counts number of ratings per score, indexed by score 0-5
+ * @param total  number of ratings
+ * @param mean   mean score, null without ratings
+ * @param p50    median score, null without ratings
+ * @param p90    90th percentile score, null without ratings
+ * @param p99    99th percentile score, null without ratings
+ */
+public record ScoreDistribution(int tourId, long[] counts, long total, Double mean,
+    Integer p50, Integer p90, Integer p99) {
+}
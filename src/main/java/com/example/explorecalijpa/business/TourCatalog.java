@@ -0,0 +1,232 @@
+package com.example.explorecalijpa.business;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+import com.example.explorecalijpa.repo.TourFacetView;
+import com.example.explorecalijpa.repo.TourRepository;
+
+/**
+ * In-memory columnar snapshot of the tours for faceted filtering.
+ *
+ * The tours are numbered in price order. Every difficulty, region and tour
+ * package code has a bitset of the tours that have it, and a price range is
+ * a run of consecutive tours found by binary search over the sorted prices.
+ * Any combination of facets is answered with bitset unions and
+ * intersections, and so are the facet counts.
+ *
+ * Loaded from the filterable columns of the tours when the application is
+ * ready. A TourChangedEvent replaces one tour and swaps in a new immutable
+ * snapshot; filters never lock.
+ */
+@Component
+public class TourCatalog {
+
+  static final String DIFFICULTY = "difficulty";
+  static final String REGION = "region";
+  static final String PACKAGE = "package";
+
+  private static final Comparator<TourCatalogEntry> BY_PRICE = Comparator
+      .comparing(TourCatalogEntry::price, Comparator.nullsLast(Comparator.naturalOrder()))
+      .thenComparingInt(TourCatalogEntry::id);
+
+  private final TourRepository tourRepository;
+  private final Map<Integer, TourCatalogEntry> entries = new HashMap<>();
+  private volatile Snapshot snapshot = new Snapshot(List.of());
+
+  public TourCatalog(TourRepository tourRepository) {
+    this.tourRepository = tourRepository;
+  }
+
+  /**
+   * Filter the tours.
+   *
+   * @param filter the facet selection
+   * @param offset number of matching tours to skip
+   * @param limit  maximum number of tours returned
+   * @return the matching tours by price, their total and the facet counts
+   */
+  public TourFilterResult filter(TourFilter filter, int offset, int limit) {
+    Snapshot catalog = snapshot;
+    BitSet difficulties = catalog.union(catalog.difficulties, filter.difficulties());
+    BitSet regions = catalog.union(catalog.regions, filter.regions());
+    BitSet packages = catalog.union(catalog.packages, filter.tourPackageCodes());
+    BitSet prices = catalog.priceRange(filter);
+
+    BitSet matches = catalog.intersect(difficulties, regions, packages, prices);
+    List<TourCatalogEntry> page = new ArrayList<>();
+    int skipped = 0;
+    for (int i = matches.nextSetBit(0); i >= 0 && page.size() < limit; i = matches.nextSetBit(i + 1)) {
+      if (skipped++ >= offset) {
+        page.add(catalog.tours[i]);
+      }
+    }
+
+    Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+    // each facet is counted against the selections of the other facets only
+    facets.put(DIFFICULTY, counts(catalog.difficulties, catalog.intersect(regions, packages, prices)));
+    facets.put(REGION, counts(catalog.regions, catalog.intersect(difficulties, packages, prices)));
+    facets.put(PACKAGE, counts(catalog.packages, catalog.intersect(difficulties, regions, prices)));
+    return new TourFilterResult(matches.cardinality(), page, facets);
+  }
+
+  /**
+   * @return number of tours in the catalog.
+   */
+  public int size() {
+    return snapshot.tours.length;
+  }
+
+  /**
+   * Reload the catalog.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void rebuild() {
+    entries.clear();
+    for (TourFacetView view : tourRepository.findAllFacets()) {
+      entries.put(view.getId(), TourCatalogEntry.of(view));
+    }
+    snapshot = new Snapshot(entries.values());
+  }
+
+  /**
+   * Apply a committed change to one tour.
+   *
+   * @param event the change
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onTourChanged(TourChangedEvent event) {
+    if (event.deleted()) {
+      entries.remove(event.tourId());
+    } else {
+      entries.put(event.tourId(), TourCatalogEntry.of(event.tour()));
+    }
+    snapshot = new Snapshot(entries.values());
+  }
+
+  private static <K> Map<String, Integer> counts(Map<K, BitSet> facet, BitSet others) {
+    Map<String, Integer> counts = new LinkedHashMap<>();
+    facet.forEach((value, tours) -> {
+      BitSet matching = (BitSet) tours.clone();
+      matching.and(others);
+      counts.put(String.valueOf(value), matching.cardinality());
+    });
+    return counts;
+  }
+
+  /**
+   * The tours in price order and their facet bitsets.
+   */
+  private static final class Snapshot {
+    private final TourCatalogEntry[] tours;
+    private final int[] prices;
+    private final Map<Difficulty, BitSet> difficulties = new EnumMap<>(Difficulty.class);
+    private final Map<Region, BitSet> regions = new EnumMap<>(Region.class);
+    private final Map<String, BitSet> packages = new TreeMap<>();
+
+    Snapshot(Collection<TourCatalogEntry> entries) {
+      tours = entries.toArray(new TourCatalogEntry[0]);
+      Arrays.sort(tours, BY_PRICE);
+      // tours without a price sort last and are left out of the price array
+      prices = Arrays.stream(tours).filter(t -> t.price() != null).mapToInt(TourCatalogEntry::price).toArray();
+      for (int i = 0; i < tours.length; i++) {
+        TourCatalogEntry tour = tours[i];
+        if (tour.difficulty() != null) {
+          difficulties.computeIfAbsent(tour.difficulty(), d -> empty()).set(i);
+        }
+        if (tour.region() != null) {
+          regions.computeIfAbsent(tour.region(), r -> empty()).set(i);
+        }
+        if (tour.tourPackageCode() != null) {
+          packages.computeIfAbsent(tour.tourPackageCode(), p -> empty()).set(i);
+        }
+      }
+    }
+
+    private BitSet empty() {
+      return new BitSet(tours.length);
+    }
+
+    /**
+     * @return the tours in all of the selections, a null selection taking
+     *         any tour.
+     */
+    BitSet intersect(BitSet... selections) {
+      BitSet tours = empty();
+      tours.set(0, this.tours.length);
+      for (BitSet selection : selections) {
+        if (selection != null) {
+          tours.and(selection);
+        }
+      }
+      return tours;
+    }
+
+    /**
+     * @return the tours with any of the selected values, null (any tour) if
+     *         nothing is selected.
+     */
+    <K> BitSet union(Map<K, BitSet> facet, Set<K> selected) {
+      if (selected.isEmpty()) {
+        return null;
+      }
+      BitSet union = empty();
+      for (K value : selected) {
+        BitSet tours = facet.get(value);
+        if (tours != null) {
+          union.or(tours);
+        }
+      }
+      return union;
+    }
+
+    /**
+     * @return the tours priced within the range, null (any tour) if no bound
+     *         is set.
+     */
+    BitSet priceRange(TourFilter filter) {
+      if (!filter.hasPriceRange()) {
+        return null;
+      }
+      int from = filter.minPrice() == null ? 0 : firstAtLeast(filter.minPrice());
+      int to = filter.maxPrice() == null || filter.maxPrice() == Integer.MAX_VALUE ? prices.length
+          : firstAtLeast(filter.maxPrice() + 1);
+      BitSet range = empty();
+      if (from < to) {
+        range.set(from, to);
+      }
+      return range;
+    }
+
+    private int firstAtLeast(int price) {
+      int low = 0;
+      int high = prices.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (prices[mid] < price) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
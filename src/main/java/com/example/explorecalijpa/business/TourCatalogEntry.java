@@ -0,0 +1,31 @@
+package com.example.explorecalijpa.business;
+
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+import com.example.explorecalijpa.model.Tour;
+import com.example.explorecalijpa.repo.TourFacetView;
+
+/**
+ * A tour as held by the TourCatalog.
+ *
+ * @param id              tour identifier
+ * @param title           tour title
+ * @param price           tour price, null if not set
+ * @param difficulty      tour difficulty
+ * @param region          tour region
+ * @param tourPackageCode code of the tour package
+ */
+public record TourCatalogEntry(int id, String title, Integer price, Difficulty difficulty, Region region,
+    String tourPackageCode) {
+
+  static TourCatalogEntry of(TourFacetView view) {
+    return new TourCatalogEntry(view.getId(), view.getTitle(), view.getPrice(), view.getDifficulty(),
+        view.getRegion(), view.getTourPackageCode());
+  }
+
+  static TourCatalogEntry of(Tour tour) {
+    // the code is the identifier of the package proxy, reading it does not load the package
+    return new TourCatalogEntry(tour.getId(), tour.getTitle(), tour.getPrice(), tour.getDifficulty(),
+        tour.getRegion(), tour.getTourPackage() == null ? null : tour.getTourPackage().getCode());
+  }
+}
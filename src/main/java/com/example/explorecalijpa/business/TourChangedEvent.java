@@ -0,0 +1,17 @@
+package com.example.explorecalijpa.business;
+
+import com.example.explorecalijpa.model.Tour;
+
+/**
+ * Published when a tour is created, changed or deleted, through the REST
+ * repository or the TourService.
+ *
+ * @param tourId the tour identifier
+ * @param tour   the tour as saved, null if it was deleted
+ */
+public record TourChangedEvent(int tourId, Tour tour) {
+
+  public boolean deleted() {
+    return tour == null;
+  }
+}
@@ -0,0 +1,30 @@
+package com.example.explorecalijpa.business;
+
+import java.util.Set;
+
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+
+/**
+ * Facet selection for the TourCatalog. A tour matches if it has one of the
+ * selected values of every facet; an empty set selects any value.
+ *
+ * @param difficulties     selected difficulties
+ * @param regions          selected regions
+ * @param tourPackageCodes selected tour package codes
+ * @param minPrice         lowest price, inclusive, null for no bound
+ * @param maxPrice         highest price, inclusive, null for no bound
+ */
+public record TourFilter(Set<Difficulty> difficulties, Set<Region> regions, Set<String> tourPackageCodes,
+    Integer minPrice, Integer maxPrice) {
+
+  public TourFilter {
+    difficulties = difficulties == null ? Set.of() : Set.copyOf(difficulties);
+    regions = regions == null ? Set.of() : Set.copyOf(regions);
+    tourPackageCodes = tourPackageCodes == null ? Set.of() : Set.copyOf(tourPackageCodes);
+  }
+
+  boolean hasPriceRange() {
+    return minPrice != null || maxPrice != null;
+  }
+}
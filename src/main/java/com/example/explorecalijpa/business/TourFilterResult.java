@@ -0,0 +1,17 @@
+package com.example.explorecalijpa.business;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tours matching a TourFilter, with facet counts.
+ *
+ * @param total  number of matching tours
+ * @param tours  the requested page of matching tours, by price
+ * @param facets per facet ("difficulty", "region", "package") and value, the
+ *               number of tours that would match if that value were the
+ *               facet's only selection, the other facets as selected
+ */
+public record TourFilterResult(int total, List<TourCatalogEntry> tours,
+    Map<String, Map<String, Integer>> facets) {
+}
@@ -0,0 +1,10 @@
+package com.example.explorecalijpa.business;
+
+/**
+ * Published when a tour package is created, changed or deleted, through the
+ * REST repository or the TourPackageService.
+ *
+ * @param code the tour package code
+ */
+public record TourPackageChangedEvent(String code) {
+}
@@ -0,0 +1,41 @@
+package com.example.explorecalijpa.business;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+
+import com.example.explorecalijpa.model.TourPackage;
+
+/**
+ * Turns the writes to /packages made through Spring Data REST into
+ * TourPackageChangedEvents. The repository has committed by the time these
+ * run.
+ */
+@Component
+@RepositoryEventHandler
+public class TourPackageRestEventHandler {
+
+  private final ApplicationEventPublisher publisher;
+
+  public TourPackageRestEventHandler(ApplicationEventPublisher publisher) {
+    this.publisher = publisher;
+  }
+
+  @HandleAfterCreate
+  public void afterCreate(TourPackage tourPackage) {
+    publisher.publishEvent(new TourPackageChangedEvent(tourPackage.getCode()));
+  }
+
+  @HandleAfterSave
+  public void afterSave(TourPackage tourPackage) {
+    publisher.publishEvent(new TourPackageChangedEvent(tourPackage.getCode()));
+  }
+
+  @HandleAfterDelete
+  public void afterDelete(TourPackage tourPackage) {
+    publisher.publishEvent(new TourPackageChangedEvent(tourPackage.getCode()));
+  }
+}
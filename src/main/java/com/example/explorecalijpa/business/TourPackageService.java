@@ -2,28 +2,35 @@ package com.example.explorecalijpa.business;
 
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.example.explorecalijpa.model.TourPackage;
 import com.example.explorecalijpa.repo.TourPackageRepository;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
 @Transactional
+@Timed("service.invocations")
 public class TourPackageService {
   private TourPackageRepository tourPackageRepository;
+  private ApplicationEventPublisher publisher;
 
-  public TourPackageService(TourPackageRepository tourPackageRepository) {
+  public TourPackageService(TourPackageRepository tourPackageRepository, ApplicationEventPublisher publisher) {
     this.tourPackageRepository = tourPackageRepository;
+    this.publisher = publisher;
   }
 
   public TourPackage createTourPackage(String code, String name) {
     log.info("Create tour package {}:{}",code, name);
-    return tourPackageRepository.findById(code)
+    TourPackage tourPackage = tourPackageRepository.findById(code)
         .orElse(tourPackageRepository.save(new TourPackage(code, name)));
+    publisher.publishEvent(new TourPackageChangedEvent(code));
+    return tourPackage;
   }
 
   public List<TourPackage> lookupAll() {
@@ -0,0 +1,22 @@
+package com.example.explorecalijpa.business;
+
+import java.util.List;
+
+/**
+ * Published by the TourRatingService whenever ratings of a tour are created,
+ * updated or deleted. Listeners that keep derived state should use
+ * {@code @TransactionalEventListener} so they only see committed changes.
+ *
+ * @param tourId      the tour whose ratings changed
+ * @param customerIds the customers whose ratings changed
+ * @param change      what happened to the ratings
+ */
+public record TourRatingEvent(int tourId, List<Integer> customerIds, Change change) {
+
+  /**
+   * Kind of change applied to the ratings.
+   */
+  public enum Change {
+    CREATED, UPDATED, DELETED
+  }
+}
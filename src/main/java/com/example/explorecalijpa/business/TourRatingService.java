@@ -1,17 +1,35 @@
 package com.example.explorecalijpa.business;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import com.example.explorecalijpa.model.Tour;
 import com.example.explorecalijpa.model.TourRating;
 import com.example.explorecalijpa.repo.TourRatingRepository;
+import com.example.explorecalijpa.repo.TourRatingStatsRepository;
+import com.example.explorecalijpa.repo.TourRatingRow;
+import com.example.explorecalijpa.repo.TourRatingTotals;
+import com.example.explorecalijpa.repo.TourRatingUpsert;
+import com.example.explorecalijpa.repo.TourRatingView;
 import com.example.explorecalijpa.repo.TourRepository;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
@@ -24,19 +42,34 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 @Slf4j
 @Transactional
+@Timed("service.invocations")
 public class TourRatingService {
+  // customers per duplicate check query, keeps the IN list bounded
+  private static final int DUPLICATE_CHECK_CHUNK = 1000;
+
   private TourRatingRepository tourRatingRepository;
   private TourRepository tourRepository;
+  private TourRatingStatsRepository tourRatingStatsRepository;
+  private ApplicationEventPublisher eventPublisher;
+  private TourScoreHistogram scoreHistogram;
 
   /**
    * Construct TourRatingService
    *
-   * @param tourRatingRepository Tour Rating Repository
-   * @param tourRepository       Tour Repository
+   * @param tourRatingRepository      Tour Rating Repository
+   * @param tourRepository            Tour Repository
+   * @param tourRatingStatsRepository Tour Rating Statistics Repository
+   * @param eventPublisher            publisher of TourRatingEvents
+   * @param scoreHistogram            in-memory score counts per tour
    */
-  public TourRatingService(TourRatingRepository tourRatingRepository, TourRepository tourRepository) {
+  public TourRatingService(TourRatingRepository tourRatingRepository, TourRepository tourRepository,
+      TourRatingStatsRepository tourRatingStatsRepository, ApplicationEventPublisher eventPublisher,
+      TourScoreHistogram scoreHistogram) {
     this.tourRatingRepository = tourRatingRepository;
     this.tourRepository = tourRepository;
+    this.tourRatingStatsRepository = tourRatingStatsRepository;
+    this.eventPublisher = eventPublisher;
+    this.scoreHistogram = scoreHistogram;
   }
 
   /**
@@ -47,12 +80,19 @@ public class TourRatingService {
    * @param score      score of the tour rating
    * @param comment    additional comment
    * @throws NoSuchElementException if no Tour found.
+   * @throws ConstraintViolationException if the score is missing or not 0-5.
+   * @throws org.springframework.dao.DataIntegrityViolationException if the
+   *         customer already rated the tour.
    * @return created entity
    */
   public TourRating createNew(int tourId, Integer customerId, Integer score, String comment) throws NoSuchElementException {
     log.info("Create a tour rating for tour {} and customer {}", tourId, String.valueOf(customerId));
-    return tourRatingRepository.save(new TourRating(verifyTour(tourId), customerId,
+    verifyScore(score);
+    TourRating rating = tourRatingRepository.save(new TourRating(verifyTour(tourId), customerId,
         score, comment));
+    adjustStats(tourId, score, 1);
+    eventPublisher.publishEvent(new TourRatingEvent(tourId, List.of(customerId), TourRatingEvent.Change.CREATED));
+    return rating;
   }
 
   /**
@@ -86,25 +126,82 @@ public class TourRatingService {
    */
   public List<TourRating> lookupRatings(int tourId) throws NoSuchElementException {
     log.info("Lookup ratings for tour {}", tourId);
-    return tourRatingRepository.findByTourId(verifyTour(tourId).getId());
+    verifyTourExists(tourId);
+    return tourRatingRepository.findByTourId(tourId);
   }
 
   /**
-   * Update all of the elements of a Tour Rating.
+   * Get a page of the ratings of a tour by keyset.
    *
    * @param tourId  tour identifier
-   * @param score   score of the tour rating
-   * @param comment additional comment
-   * @return Tour Rating Domain Object
+   * @param afterId id of the last rating of the previous page, 0 for the
+   *                first page
+   * @param size    maximum number of ratings
+   * @return the ratings after afterId, in id order
+   * @throws NoSuchElementException if no Tour found.
+   */
+  public List<TourRatingView> lookupRatings(int tourId, int afterId, int size) throws NoSuchElementException {
+    log.info("Lookup {} ratings for tour {} after {}", size, tourId, afterId);
+    verifyTourExists(tourId);
+    return tourRatingRepository.findPageByTourId(tourId, afterId, PageRequest.of(0, size));
+  }
+
+  /**
+   * Stream the ratings of a tour to a consumer from a database cursor,
+   * without holding them all in memory.
+   *
+   * @param tourId   tour identifier
+   * @param consumer receives every rating, in insertion order
+   * @throws NoSuchElementException if no Tour found.
+   */
+  public void streamRatings(int tourId, Consumer<TourRatingView> consumer) throws NoSuchElementException {
+    log.info("Stream ratings for tour {}", tourId);
+    verifyTourExists(tourId);
+    try (Stream<TourRatingView> ratings = tourRatingRepository.streamByTourId(tourId)) {
+      ratings.forEach(consumer);
+    }
+  }
+
+  /**
+   * Stream all the ratings to a consumer from a database cursor, without
+   * holding them all in memory.
+   *
+   * @param consumer receives every rating, in insertion order
+   */
+  public void streamAll(Consumer<TourRatingView> consumer) {
+    log.info("Stream all tour ratings");
+    try (Stream<TourRatingView> ratings = tourRatingRepository.streamAll()) {
+      ratings.forEach(consumer);
+    }
+  }
+
+  /**
+   * Replace all of the elements of a Tour Rating, creating it if the customer
+   * has not rated the tour yet. The rating is written with one upsert, safe
+   * against concurrent writers of the same customer and tour.
+   *
+   * @param tourId     tour identifier
+   * @param customerId customer identifier
+   * @param score      score of the tour rating
+   * @param comment    additional comment
+   * @return true if the rating was created
    * @throws NoSuchElementException if no Tour found.
+   * @throws ConstraintViolationException if the score is missing or not 0-5.
    */
-  public TourRating update(int tourId, Integer customerId, Integer score, String comment)
+  public boolean update(int tourId, Integer customerId, Integer score, String comment)
       throws NoSuchElementException {
     log.info("Update tour {} customer {}", tourId, customerId);
-    TourRating rating = verifyTourRating(tourId, customerId);
-    rating.setScore(score);
-    rating.setComment(comment);
-    return tourRatingRepository.save(rating);
+    verifyScore(score);
+    verifyTourExists(tourId);
+    TourRatingUpsert result = tourRatingRepository.upsert(tourId, customerId, score, comment);
+    if (result.created()) {
+      adjustStats(tourId, score, 1);
+    } else {
+      replaceStats(tourId, result.previousScore(), score);
+    }
+    eventPublisher.publishEvent(new TourRatingEvent(tourId, List.of(customerId),
+        result.created() ? TourRatingEvent.Change.CREATED : TourRatingEvent.Change.UPDATED));
+    return result.created();
   }
 
   /**
@@ -115,15 +212,21 @@ public class TourRatingService {
    * @param score      score of the tour rating
    * @param comment    additional comment
    * @return Tour Rating Domain Object
-   * @throws NoSuchElementException if no Tour found.
+   * @throws NoSuchElementException      if no Tour found.
+   * @throws ConstraintViolationException if the score is not 0-5.
    */
   public TourRating updateSome(int tourId, Integer customerId, Optional<Integer> score, Optional<String> comment)
       throws NoSuchElementException {
     log.info("Update some of tour {} customer {}", tourId, customerId);
+    score.ifPresent(TourRatingService::verifyScore);
     TourRating rating = verifyTourRating(tourId, customerId);
+    Integer previousScore = rating.getScore();
     score.ifPresent(s ->rating.setScore(s));
     comment.ifPresent(c -> rating.setComment(c));
-    return tourRatingRepository.save(rating);
+    TourRating saved = tourRatingRepository.save(rating);
+    replaceStats(tourId, previousScore, rating.getScore());
+    eventPublisher.publishEvent(new TourRatingEvent(tourId, List.of(customerId), TourRatingEvent.Change.UPDATED));
+    return saved;
   }
 
   /**
@@ -137,47 +240,231 @@ public class TourRatingService {
     log.info("Delete rating for tour {} customer {}", tourId, customerId);
     TourRating rating = verifyTourRating(tourId, customerId);
     tourRatingRepository.delete(rating);
+    adjustStats(tourId, rating.getScore(), -1);
+    eventPublisher.publishEvent(new TourRatingEvent(tourId, List.of(customerId), TourRatingEvent.Change.DELETED));
+  }
+
+  /**
+   * Get the distribution of the scores of a tour from the in-memory
+   * histogram, without a transaction or a database round trip.
+   *
+   * @param tourId tour identifier
+   * @return counts per score, mean and percentiles; all zero for a tour
+   *         without ratings.
+   */
+  @Transactional(Transactional.TxType.SUPPORTS)
+  public ScoreDistribution getScoreDistribution(int tourId) {
+    return scoreHistogram.distribution(tourId);
   }
 
   /**
-   * Get the average score of a tour.
+   * Get the average score of a tour from its rating statistics.
    *
    * @param tourId tour identifier
-   * @return average score as a Double.
-   * @throws NoSuchElementException
+   * @return average score as a Double, null if the tour has no ratings.
+   * @throws NoSuchElementException if no Tour found.
    */
   public Double getAverageScore(int tourId) throws NoSuchElementException {
-    List<TourRating> ratings = tourRatingRepository.findByTourId(verifyTour(tourId).getId());
-    OptionalDouble average = ratings.stream().mapToInt((rating) -> rating.getScore()).average();
-    return average.isPresent() ? average.getAsDouble() : null;
+    verifyTourExists(tourId);
+    return tourRatingStatsRepository.findTotals(List.of(tourId)).stream()
+        .findFirst()
+        .map(TourRatingTotals::getAverage)
+        .orElse(null);
   }
 
   /**
-   * Service for many customers to give the same score for a service
+   * Get the average scores of many tours in one query.
    *
-   * @param tourId
-   * @param score
-   * @param customers
+   * @param tourIds tour identifiers
+   * @return average score by tour identifier, in the given order, for the
+   *         tours that have ratings.
+   */
+  public Map<Integer, Double> getAverageScores(Collection<Integer> tourIds) {
+    log.info("Get average scores of tours {}", tourIds);
+    Map<Integer, Double> byTour = new LinkedHashMap<>();
+    for (TourRatingTotals totals : tourRatingStatsRepository.findTotals(tourIds)) {
+      if (totals.getAverage() != null) {
+        byTour.put(totals.getTourId(), totals.getAverage());
+      }
+    }
+    Map<Integer, Double> averages = new LinkedHashMap<>();
+    for (Integer tourId : tourIds) {
+      if (byTour.containsKey(tourId)) {
+        averages.put(tourId, byTour.get(tourId));
+      }
+    }
+    return averages;
+  }
+
+  /**
+   * Service for many customers to give the same score for a service.
+   *
+   * Duplicates are checked with one query per chunk of customers and the
+   * ratings are inserted as JDBC batches.
+   *
+   * @param tourId    tour identifier
+   * @param score     score of every rating
+   * @param customers customer identifiers
+   * @throws NoSuchElementException      if no Tour found.
+   * @throws ConstraintViolationException if the score is not 0-5, a customer
+   *                                      is null, listed twice or already
+   *                                      rated the tour.
    */
   public void rateMany(int tourId,  int score, List<Integer> customers) {
-    Tour tour = verifyTour(tourId);
-    for (Integer c : customers) {
-      if (tourRatingRepository.findByTourIdAndCustomerId(tourId, c).isPresent()) {
+    log.info("Rate tour {} score {} for {} customers", tourId, score, customers.size());
+    verifyScore(score);
+    if (customers.stream().anyMatch(Objects::isNull)) {
+      throw new ConstraintViolationException("Customer identifiers must not be null", null);
+    }
+    verifyTourExists(tourId);
+    if (new HashSet<>(customers).size() != customers.size()) {
+      throw new ConstraintViolationException("Unable to create duplicate ratings", null);
+    }
+    for (int from = 0; from < customers.size(); from += DUPLICATE_CHECK_CHUNK) {
+      List<Integer> chunk = customers.subList(from, Math.min(from + DUPLICATE_CHECK_CHUNK, customers.size()));
+      if (!tourRatingRepository.findRatedCustomers(tourId, chunk).isEmpty()) {
         throw new ConstraintViolationException("Unable to create duplicate ratings", null);
       }
-      tourRatingRepository.save(new TourRating(tour, c, score));
+    }
+    tourRatingRepository.insertAll(tourId, score, customers);
+    adjustStats(tourId, score, customers.size());
+    eventPublisher.publishEvent(new TourRatingEvent(tourId, List.copyOf(customers), TourRatingEvent.Change.CREATED));
+  }
+
+  /**
+   * Import one chunk of validated ratings in a single transaction. Records
+   * of unknown tours and duplicates, in the database or earlier in the
+   * chunk, are rejected; the others are inserted as JDBC batches.
+   *
+   * @param chunk the ratings, at most a few thousand
+   * @return how many ratings were imported and which records were rejected
+   */
+  public RatingImportResult importRatings(List<RatingImport> chunk) {
+    log.info("Import {} tour ratings", chunk.size());
+    Map<Integer, List<RatingImport>> byTour = new LinkedHashMap<>();
+    for (RatingImport r : chunk) {
+      byTour.computeIfAbsent(r.tourId(), t -> new ArrayList<>()).add(r);
+    }
+    Set<Integer> tours = new HashSet<>(tourRepository.findExistingIds(byTour.keySet()));
+
+    List<RatingImportResult.Rejected> rejected = new ArrayList<>();
+    List<TourRatingRow> rows = new ArrayList<>(chunk.size());
+    for (Map.Entry<Integer, List<RatingImport>> e : byTour.entrySet()) {
+      int tourId = e.getKey();
+      if (!tours.contains(tourId)) {
+        e.getValue().forEach(r -> rejected.add(new RatingImportResult.Rejected(r.line(),
+            "Tour does not exist " + tourId)));
+        continue;
+      }
+      Set<Integer> rated = new HashSet<>(tourRatingRepository.findRatedCustomers(tourId,
+          e.getValue().stream().map(RatingImport::customerId).toList()));
+      long[] scores = new long[6];
+      List<Integer> customers = new ArrayList<>();
+      for (RatingImport r : e.getValue()) {
+        if (!rated.add(r.customerId())) {
+          rejected.add(new RatingImportResult.Rejected(r.line(), "Unable to create duplicate ratings"));
+          continue;
+        }
+        rows.add(new TourRatingRow(tourId, r.customerId(), r.score(), r.comment()));
+        customers.add(r.customerId());
+        scores[r.score()]++;
+      }
+      adjustStats(tourId, scores);
+      if (!customers.isEmpty()) {
+        eventPublisher.publishEvent(new TourRatingEvent(tourId, customers, TourRatingEvent.Change.CREATED));
+      }
+    }
+    tourRatingRepository.insertAll(rows);
+    rejected.sort(Comparator.comparingLong(RatingImportResult.Rejected::line));
+    return new RatingImportResult(rows.size(), rejected);
+  }
+
+  /**
+   * Move one rating of a tour from a previous score to a new score in the
+   * tour statistics.
+   *
+   * @param tourId        tour identifier
+   * @param previousScore score before the update
+   * @param score         score after the update
+   */
+  private void replaceStats(int tourId, Integer previousScore, Integer score) {
+    if (!Objects.equals(previousScore, score)) {
+      long[] counts = TourScoreHistogram.deltas(score, 1);
+      if (previousScore != null) {
+        long[] removed = TourScoreHistogram.deltas(previousScore, -1);
+        Arrays.setAll(counts, i -> counts[i] + removed[i]);
+      }
+      adjustStats(tourId, counts);
+    }
+  }
+
+  /**
+   * Add (or remove) ratings of a score to the tour statistics.
+   *
+   * @param tourId tour identifier
+   * @param score  score of the ratings
+   * @param delta  number of ratings added (positive) or removed (negative)
+   */
+  private void adjustStats(int tourId, int score, long delta) {
+    adjustStats(tourId, TourScoreHistogram.deltas(score, delta));
+  }
+
+  /**
+   * Add (or remove) ratings of several scores to the tour statistics at once,
+   * with one upsert that also creates the statistics row on the first rating
+   * of a tour.
+   *
+   * @param tourId tour identifier
+   * @param counts number of ratings added (positive) or removed (negative),
+   *               indexed by score 0-5
+   */
+  private void adjustStats(int tourId, long[] counts) {
+    if (Arrays.stream(counts).allMatch(count -> count == 0)) {
+      return;
+    }
+    tourRatingStatsRepository.adjust(tourId, counts);
+    eventPublisher.publishEvent(new TourScoresEvent(tourId, counts.clone()));
+  }
+
+  /**
+   * Verify a new or replacing rating has a score of 0-5, the statistics count
+   * every rating under its score.
+   *
+   * @param score score of the rating
+   * @throws ConstraintViolationException if the score is missing or not 0-5.
+   */
+  private static void verifyScore(Integer score) {
+    if (score == null) {
+      throw new ConstraintViolationException("score must not be null", null);
+    }
+    if (score < 0 || score > 5) {
+      throw new ConstraintViolationException("score must be between 0 and 5", null);
     }
   }
+
   /**
-   * Verify and return the Tour given a tourId.
+   * Verify a Tour exists and return a reference to it, without loading its
+   * columns, to link new ratings to.
    *
    * @param tourId
-   * @return the found Tour
+   * @return reference to the Tour
    * @throws NoSuchElementException if no Tour found.
    */
   private Tour verifyTour(int tourId) throws NoSuchElementException {
-    return tourRepository.findById(tourId)
-        .orElseThrow(() -> new NoSuchElementException("Tour does not exist " + tourId));
+    verifyTourExists(tourId);
+    return tourRepository.getReferenceById(tourId);
+  }
+
+  /**
+   * Verify a Tour exists without loading it.
+   *
+   * @param tourId
+   * @throws NoSuchElementException if no Tour found.
+   */
+  private void verifyTourExists(int tourId) throws NoSuchElementException {
+    if (!tourRepository.existsById(tourId)) {
+      throw new NoSuchElementException("Tour does not exist " + tourId);
+    }
   }
 
   /**
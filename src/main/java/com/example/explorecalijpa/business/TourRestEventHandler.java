@@ -0,0 +1,51 @@
+package com.example.explorecalijpa.business;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.HandleBeforeDelete;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+
+import com.example.explorecalijpa.model.Tour;
+
+/**
+ * Turns the writes to /tours made through Spring Data REST into
+ * TourChangedEvents. The repository has committed by the time these run.
+ */
+@Component
+@RepositoryEventHandler
+public class TourRestEventHandler {
+
+  private final ApplicationEventPublisher publisher;
+
+  public TourRestEventHandler(ApplicationEventPublisher publisher) {
+    this.publisher = publisher;
+  }
+
+  @HandleAfterCreate
+  public void afterCreate(Tour tour) {
+    publisher.publishEvent(new TourChangedEvent(tour.getId(), tour));
+  }
+
+  @HandleAfterSave
+  public void afterSave(Tour tour) {
+    publisher.publishEvent(new TourChangedEvent(tour.getId(), tour));
+  }
+
+  /**
+   * Load the lazy text group while the tour is still managed. A DELETE asking
+   * for a body serializes the tour once it has left the persistence context,
+   * where the lazy text can no longer be loaded.
+   */
+  @HandleBeforeDelete
+  public void beforeDelete(Tour tour) {
+    tour.getDescription();
+  }
+
+  @HandleAfterDelete
+  public void afterDelete(Tour tour) {
+    publisher.publishEvent(new TourChangedEvent(tour.getId(), null));
+  }
+}
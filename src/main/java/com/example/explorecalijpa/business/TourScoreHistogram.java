@@ -0,0 +1,143 @@
+package com.example.explorecalijpa.business;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.explorecalijpa.model.TourRatingStats;
+import com.example.explorecalijpa.repo.TourRatingStatsRepository;
+
+/**
+ * In-memory count of the ratings of every tour per score.
+ *
+ * Seeded from the tour rating statistics when the application is ready and
+ * then moved by the committed TourScoresEvents of the TourRatingService. The
+ * counters are LongAdders, so writers of the same tour update separate cells
+ * and readers sum them without touching the database. Updates share a read
+ * lock; a rebuild takes the write lock, so no update is applied to counters
+ * that are being cleared and reloaded.
+ */
+@Component
+public class TourScoreHistogram {
+
+  static final int SCORES = 6;
+
+  private final TourRatingStatsRepository repo;
+  private final ConcurrentHashMap<Integer, LongAdder[]> tours = new ConcurrentHashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  public TourScoreHistogram(TourRatingStatsRepository repo) {
+    this.repo = repo;
+  }
+
+  /**
+   * @param tourId the tour
+   * @return the distribution of the tour's scores, all zero for a tour
+   *         without ratings (or that does not exist).
+   */
+  public ScoreDistribution distribution(int tourId) {
+    long[] counts = new long[SCORES];
+    LongAdder[] counters = tours.get(tourId);
+    if (counters != null) {
+      for (int score = 0; score < SCORES; score++) {
+        counts[score] = counters[score].sum();
+      }
+    }
+    long total = 0;
+    long sum = 0;
+    for (int score = 0; score < SCORES; score++) {
+      total += counts[score];
+      sum += score * counts[score];
+    }
+    if (total == 0) {
+      return new ScoreDistribution(tourId, counts, 0, null, null, null, null);
+    }
+    return new ScoreDistribution(tourId, counts, total, (double) sum / total,
+        percentile(counts, total, 50), percentile(counts, total, 90), percentile(counts, total, 99));
+  }
+
+  /**
+   * The lowest score with at least p percent of the ratings at or below it.
+   */
+  private static int percentile(long[] counts, long total, int p) {
+    long rank = (total * p + 99) / 100;
+    long seen = 0;
+    for (int score = 0; score < SCORES; score++) {
+      seen += counts[score];
+      if (seen >= rank) {
+        return score;
+      }
+    }
+    return SCORES - 1;
+  }
+
+  /**
+   * Reload the counts from the tour rating statistics, one row per tour.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    lock.writeLock().lock();
+    try {
+      tours.clear();
+      for (TourRatingStats stats : repo.findAll()) {
+        LongAdder[] counters = counters(stats.getTourId());
+        long[] histogram = stats.getHistogram();
+        for (int score = 0; score < SCORES; score++) {
+          counters[score].add(histogram[score]);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Apply a committed change to the score counts of a tour.
+   *
+   * @param event the change
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onScoresChanged(TourScoresEvent event) {
+    lock.readLock().lock();
+    try {
+      LongAdder[] counters = counters(event.tourId());
+      for (int score = 0; score < SCORES; score++) {
+        if (event.deltas()[score] != 0) {
+          counters[score].add(event.deltas()[score]);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @param score score of the ratings
+   * @param delta number of ratings added (positive) or removed (negative)
+   * @return the per-score deltas of the change, all zero for a score outside
+   *         0-5, which the histogram does not count
+   */
+  static long[] deltas(int score, long delta) {
+    long[] deltas = new long[SCORES];
+    if (score >= 0 && score < SCORES) {
+      deltas[score] = delta;
+    }
+    return deltas;
+  }
+
+  private LongAdder[] counters(int tourId) {
+    return tours.computeIfAbsent(tourId, id -> {
+      LongAdder[] counters = new LongAdder[SCORES];
+      for (int score = 0; score < SCORES; score++) {
+        counters[score] = new LongAdder();
+      }
+      return counters;
+    });
+  }
+}
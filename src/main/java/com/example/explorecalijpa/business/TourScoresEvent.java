@@ -0,0 +1,12 @@
+package com.example.explorecalijpa.business;
+
+/**
+ * Published by the TourRatingService with every change to the score counts
+ * of a tour, alongside the TourRatingEvent of the same write.
+ *
+ * @param tourId the tour whose score counts changed
+ * @param deltas ratings added (positive) or removed (negative), indexed by
+ *               score 0-5
+ */
+public record TourScoresEvent(int tourId, long[] deltas) {
+}
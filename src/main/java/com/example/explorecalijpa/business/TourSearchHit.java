@@ -0,0 +1,11 @@
+package com.example.explorecalijpa.business;
+
+/**
+ * A tour matching a search.
+ *
+ * @param tourId the tour identifier
+ * @param title  the tour title
+ * @param score  BM25 relevance, higher is better
+ */
+public record TourSearchHit(int tourId, String title, double score) {
+}
@@ -0,0 +1,313 @@
+package com.example.explorecalijpa.business;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.explorecalijpa.model.Tour;
+import com.example.explorecalijpa.repo.TourRepository;
+import com.example.explorecalijpa.repo.TourTextView;
+
+/**
+ * In-memory inverted index over the text of the tours, ranked with BM25.
+ *
+ * The title, keywords, description, blurb and bullets of every tour are
+ * tokenized into one document, title and keyword terms counting more. A
+ * query term matches the indexed terms it is a prefix of, an exact match
+ * scoring more than a longer term. A short prefix can match thousands of
+ * terms, so it is expanded to at most {@link #MAX_EXPANSIONS} of them: the
+ * exact term, then the terms found in the most tours. A tour whose only
+ * match is a rarer expansion is not found until the prefix is longer.
+ *
+ * Built from the tours when the application is ready. A TourChangedEvent
+ * re-tokenizes only the changed tour and swaps in a new immutable snapshot
+ * of the postings, so searches never lock and never see a half-built index.
+ */
+@Component
+public class TourSearchIndex {
+
+  static final float K1 = 1.2f;
+  static final float B = 0.75f;
+  static final float TITLE_WEIGHT = 3f;
+  static final float KEYWORDS_WEIGHT = 2f;
+  static final float PREFIX_WEIGHT = 0.5f;
+  static final int MAX_EXPANSIONS = 64;
+
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+  private static final Set<String> STOP_WORDS = Set.of("an", "and", "are", "as", "at", "be", "by", "for",
+      "from", "in", "is", "it", "of", "on", "or", "the", "to", "with", "you", "your");
+
+  private final TourRepository tourRepository;
+  private final Map<Integer, Document> documents = new HashMap<>();
+  private volatile Snapshot snapshot = Snapshot.build(List.of());
+
+  public TourSearchIndex(TourRepository tourRepository) {
+    this.tourRepository = tourRepository;
+  }
+
+  /**
+   * Search the tours.
+   *
+   * @param query free text, every term also matched as a prefix
+   * @param limit maximum number of hits
+   * @return the best matching tours, best first
+   */
+  public List<TourSearchHit> search(String query, int limit) {
+    Snapshot index = snapshot;
+    Set<String> terms = new LinkedHashSet<>(tokenize(query));
+    if (terms.isEmpty() || index.tourIds.length == 0) {
+      return List.of();
+    }
+    float[] scores = new float[index.tourIds.length];
+    float[] termScores = new float[index.tourIds.length];
+    for (String term : terms) {
+      Arrays.fill(termScores, 0f);
+      for (int t : index.expansions(term)) {
+        // a document matching several expansions of a term counts its best one
+        index.score(t, index.terms[t].length() == term.length() ? 1f : PREFIX_WEIGHT, termScores);
+      }
+      for (int doc = 0; doc < scores.length; doc++) {
+        scores[doc] += termScores[doc];
+      }
+    }
+
+    List<Integer> matches = new ArrayList<>();
+    for (int doc = 0; doc < scores.length; doc++) {
+      if (scores[doc] > 0) {
+        matches.add(doc);
+      }
+    }
+    matches.sort((a, b) -> scores[a] != scores[b] ? Float.compare(scores[b], scores[a])
+        : Integer.compare(index.tourIds[a], index.tourIds[b]));
+    return matches.stream()
+        .limit(limit)
+        .map(doc -> new TourSearchHit(index.tourIds[doc], index.titles[doc], scores[doc]))
+        .toList();
+  }
+
+  /**
+   * @return number of tours indexed.
+   */
+  public int size() {
+    return snapshot.tourIds.length;
+  }
+
+  /**
+   * Re-index all tours.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void rebuild() {
+    documents.clear();
+    for (TourTextView text : tourRepository.findAllText()) {
+      documents.put(text.getId(), Document.of(text));
+    }
+    snapshot = Snapshot.build(documents.values());
+  }
+
+  /**
+   * Re-index a committed change to one tour.
+   *
+   * @param event the change
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onTourChanged(TourChangedEvent event) {
+    if (event.deleted()) {
+      documents.remove(event.tourId());
+    } else {
+      documents.put(event.tourId(), Document.of(event.tour()));
+    }
+    snapshot = Snapshot.build(documents.values());
+  }
+
+  /**
+   * Lower case, accents removed, split on anything but letters and digits;
+   * single characters and stop words dropped.
+   */
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text == null || text.isBlank()) {
+      return tokens;
+    }
+    String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+        .toLowerCase(Locale.ROOT);
+    for (String token : SEPARATORS.split(folded)) {
+      if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * The weighted term frequencies of one tour.
+   */
+  private record Document(int tourId, String title, Map<String, Float> frequencies, float length) {
+
+    static Document of(TourTextView text) {
+      return of(text.getId(), text.getTitle(), text.getKeywords(), text.getDescription(), text.getBlurb(),
+          text.getBullets());
+    }
+
+    static Document of(Tour tour) {
+      return of(tour.getId(), tour.getTitle(), tour.getKeywords(), tour.getDescription(), tour.getBlurb(),
+          tour.getBullets());
+    }
+
+    private static Document of(int tourId, String title, String keywords, String description, String blurb,
+        String bullets) {
+      Map<String, Float> frequencies = new HashMap<>();
+      float length = add(frequencies, title, TITLE_WEIGHT)
+          + add(frequencies, keywords, KEYWORDS_WEIGHT)
+          + add(frequencies, description, 1f)
+          + add(frequencies, blurb, 1f)
+          + add(frequencies, bullets, 1f);
+      return new Document(tourId, title, frequencies, length);
+    }
+
+    private static float add(Map<String, Float> frequencies, String text, float weight) {
+      List<String> tokens = tokenize(text);
+      tokens.forEach(token -> frequencies.merge(token, weight, Float::sum));
+      return tokens.size() * weight;
+    }
+  }
+
+  private record Posting(int doc, float frequency) {
+  }
+
+  /**
+   * Immutable postings: terms sorted for prefix lookups, for every term the
+   * documents containing it and the weighted frequencies in those documents.
+   */
+  private static final class Snapshot {
+    private final int[] tourIds;
+    private final String[] titles;
+    private final float[] lengthNorms;
+    private final String[] terms;
+    private final float[] idfs;
+    private final int[][] postingDocs;
+    private final float[][] postingFrequencies;
+
+    private Snapshot(int[] tourIds, String[] titles, float[] lengthNorms, String[] terms, float[] idfs,
+        int[][] postingDocs, float[][] postingFrequencies) {
+      this.tourIds = tourIds;
+      this.titles = titles;
+      this.lengthNorms = lengthNorms;
+      this.terms = terms;
+      this.idfs = idfs;
+      this.postingDocs = postingDocs;
+      this.postingFrequencies = postingFrequencies;
+    }
+
+    static Snapshot build(Collection<Document> documents) {
+      List<Document> docs = new ArrayList<>(documents);
+      docs.sort((a, b) -> Integer.compare(a.tourId(), b.tourId()));
+      int n = docs.size();
+      int[] tourIds = new int[n];
+      String[] titles = new String[n];
+      float[] lengthNorms = new float[n];
+      float totalLength = 0;
+      for (Document doc : docs) {
+        totalLength += doc.length();
+      }
+      float averageLength = n == 0 || totalLength == 0 ? 1f : totalLength / n;
+
+      TreeMap<String, List<Posting>> postings = new TreeMap<>();
+      for (int d = 0; d < n; d++) {
+        Document doc = docs.get(d);
+        tourIds[d] = doc.tourId();
+        titles[d] = doc.title();
+        // the length part of the BM25 denominator, fixed per document
+        lengthNorms[d] = K1 * (1 - B + B * doc.length() / averageLength);
+        for (Map.Entry<String, Float> entry : doc.frequencies().entrySet()) {
+          postings.computeIfAbsent(entry.getKey(), term -> new ArrayList<>())
+              .add(new Posting(d, entry.getValue()));
+        }
+      }
+
+      String[] terms = postings.keySet().toArray(new String[0]);
+      float[] idfs = new float[terms.length];
+      int[][] postingDocs = new int[terms.length][];
+      float[][] postingFrequencies = new float[terms.length][];
+      int t = 0;
+      for (List<Posting> posting : postings.values()) {
+        int df = posting.size();
+        idfs[t] = (float) Math.log(1 + (n - df + 0.5) / (df + 0.5));
+        postingDocs[t] = new int[df];
+        postingFrequencies[t] = new float[df];
+        for (int i = 0; i < df; i++) {
+          postingDocs[t][i] = posting.get(i).doc();
+          postingFrequencies[t][i] = posting.get(i).frequency();
+        }
+        t++;
+      }
+      return new Snapshot(tourIds, titles, lengthNorms, terms, idfs, postingDocs, postingFrequencies);
+    }
+
+    /**
+     * @return the indexes of the terms the query term is a prefix of; past
+     *         MAX_EXPANSIONS, the exact term and then the terms with the most
+     *         documents, ties in term order.
+     */
+    int[] expansions(String term) {
+      int first = Arrays.binarySearch(terms, term);
+      if (first < 0) {
+        first = -first - 1;
+      }
+      // terms hold letters and digits only, so this sorts after every expansion
+      int end = -Arrays.binarySearch(terms, first, terms.length, term + Character.MAX_VALUE) - 1;
+      int count = end - first;
+      if (count <= MAX_EXPANSIONS) {
+        int[] all = new int[count];
+        for (int i = 0; i < count; i++) {
+          all[i] = first + i;
+        }
+        return all;
+      }
+      // most documents first; the bits of (MAX_VALUE - df) order like the
+      // value, and the exact term sorts before all of them
+      long[] ranked = new long[count];
+      for (int t = first; t < end; t++) {
+        int rank = terms[t].length() == term.length() ? 0 : Integer.MAX_VALUE - postingDocs[t].length;
+        ranked[t - first] = ((long) rank << 32) | t;
+      }
+      Arrays.sort(ranked);
+      int[] top = new int[MAX_EXPANSIONS];
+      for (int i = 0; i < MAX_EXPANSIONS; i++) {
+        top[i] = (int) ranked[i];
+      }
+      return top;
+    }
+
+    /**
+     * Keep, per document, the higher of its score so far and its BM25 score
+     * for term t.
+     */
+    void score(int t, float weight, float[] scores) {
+      int[] docs = postingDocs[t];
+      float[] frequencies = postingFrequencies[t];
+      float idf = idfs[t] * weight;
+      for (int i = 0; i < docs.length; i++) {
+        float tf = frequencies[i];
+        float score = idf * tf * (K1 + 1) / (tf + lengthNorms[docs[i]]);
+        if (score > scores[docs[i]]) {
+          scores[docs[i]] = score;
+        }
+      }
+    }
+  }
+}
@@ -3,28 +3,35 @@ package com.example.explorecalijpa.business;
 import java.util.Collections;
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.example.explorecalijpa.model.Difficulty;
 import com.example.explorecalijpa.model.Region;
 import com.example.explorecalijpa.model.Tour;
 import com.example.explorecalijpa.model.TourPackage;
+import com.example.explorecalijpa.repo.TourListing;
 import com.example.explorecalijpa.repo.TourPackageRepository;
 import com.example.explorecalijpa.repo.TourRepository;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
 @Transactional
+@Timed("service.invocations")
 public class TourService {
   private TourPackageRepository tourPackageRepository;
   private TourRepository tourRepository;
+  private ApplicationEventPublisher publisher;
 
-  public TourService(TourPackageRepository tourPackageRepository, TourRepository tourRepository) {
+  public TourService(TourPackageRepository tourPackageRepository, TourRepository tourRepository,
+      ApplicationEventPublisher publisher) {
     this.tourPackageRepository = tourPackageRepository;
     this.tourRepository = tourRepository;
+    this.publisher = publisher;
   }
 
   public Tour createTour(String tourPackageName, String title,
@@ -33,18 +40,20 @@ public class TourService {
     log.info("Create tour {} for package {}", title, tourPackageName);
     TourPackage tourPackage = tourPackageRepository.findByName(tourPackageName)
         .orElseThrow(() -> new RuntimeException("Tour Package not found for id:" + tourPackageName));
-    return tourRepository.save(new Tour(title, description, blurb,
+    Tour tour = tourRepository.save(new Tour(title, description, blurb,
         price, duration, bullets, keywords, tourPackage, difficulty, region));
+    publisher.publishEvent(new TourChangedEvent(tour.getId(), tour));
+    return tour;
   }
 
-  public List<Tour> lookupByDifficulty(Difficulty difficulty) {
+  public List<TourListing> lookupByDifficulty(Difficulty difficulty) {
     log.info("Lookup tours by difficulty {}", difficulty);
-    return tourRepository.findByDifficulty(difficulty);
+    return tourRepository.findListingByDifficulty(difficulty);
   }
 
-  public List<Tour> lookupByPackage(String tourPackageCode) {
+  public List<TourListing> lookupByPackage(String tourPackageCode) {
     log.info("Lookup tour by code {}", tourPackageCode);
-    return tourRepository.findByTourPackageCode(tourPackageCode);
+    return tourRepository.findListingByTourPackageCode(tourPackageCode);
   }
 
   public long total() {
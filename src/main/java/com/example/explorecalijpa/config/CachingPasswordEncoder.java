@@ -0,0 +1,150 @@
+package com.example.explorecalijpa.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * PasswordEncoder that remembers successful verifications for a short time,
+ * so a client sending the same Basic credentials on every request pays for
+ * one BCrypt verification per TTL instead of one per request.
+ *
+ * An entry is keyed by an HMAC-SHA256, under a random key drawn at startup,
+ * of the stored hash and the presented password; the password itself is
+ * never kept. Changing a password changes the stored hash, so its entries
+ * are never matched again. Failed verifications are not remembered and
+ * always go to the delegate. Bounded to {@code maxSize} entries, least
+ * recently used first out.
+ *
+ * Hits, misses and size are published under the standard Micrometer
+ * {@code cache.*} meters with {@code cache=credentials}.
+ */
+public class CachingPasswordEncoder implements PasswordEncoder, MeterBinder {
+
+  static final String CACHE_NAME = "credentials";
+
+  private static final String HMAC = "HmacSHA256";
+
+  private final PasswordEncoder delegate;
+  private final long ttlNanos;
+  private final LongSupplier ticker;
+  private final SecretKeySpec key;
+  private final LinkedHashMap<String, Long> verified;
+
+  private long hits;
+  private long misses;
+
+  public CachingPasswordEncoder(PasswordEncoder delegate, int maxSize, Duration ttl) {
+    this(delegate, maxSize, ttl, System::nanoTime);
+  }
+
+  CachingPasswordEncoder(PasswordEncoder delegate, int maxSize, Duration ttl, LongSupplier ticker) {
+    this.delegate = delegate;
+    this.ttlNanos = ttl.toNanos();
+    this.ticker = ticker;
+    byte[] secret = new byte[32];
+    new SecureRandom().nextBytes(secret);
+    this.key = new SecretKeySpec(secret, HMAC);
+    this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return delegate.encode(rawPassword);
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    if (rawPassword == null || encodedPassword == null) {
+      return delegate.matches(rawPassword, encodedPassword);
+    }
+    String digest = digest(rawPassword, encodedPassword);
+    synchronized (this) {
+      Long expiresAt = verified.get(digest);
+      if (expiresAt != null && expiresAt - ticker.getAsLong() > 0) {
+        hits++;
+        return true;
+      }
+      if (expiresAt != null) {
+        verified.remove(digest);
+      }
+      misses++;
+    }
+    boolean matches = delegate.matches(rawPassword, encodedPassword);
+    if (matches) {
+      synchronized (this) {
+        verified.put(digest, ticker.getAsLong() + ttlNanos);
+      }
+    }
+    return matches;
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    return delegate.upgradeEncoding(encodedPassword);
+  }
+
+  /**
+   * Forget all verifications.
+   */
+  public synchronized void clear() {
+    verified.clear();
+  }
+
+  synchronized int size() {
+    return verified.size();
+  }
+
+  private String digest(CharSequence rawPassword, String encodedPassword) {
+    try {
+      Mac mac = Mac.getInstance(HMAC);
+      mac.init(key);
+      mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+      // the separator cannot occur in an encoded password
+      mac.update((byte) 0);
+      return HexFormat.of().formatHex(mac.doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8)));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(HMAC + " is not available", e);
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("cache.gets", this, c -> c.read(true))
+        .tag("cache", CACHE_NAME).tag("result", "hit")
+        .description("The number of times cache lookup methods have returned a cached value.")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", this, c -> c.read(false))
+        .tag("cache", CACHE_NAME).tag("result", "miss")
+        .description("The number of times cache lookup methods have returned an uncached value.")
+        .register(registry);
+    Gauge.builder("cache.size", this, CachingPasswordEncoder::size)
+        .tag("cache", CACHE_NAME)
+        .description("The number of entries in this cache.")
+        .register(registry);
+  }
+
+  private synchronized double read(boolean hit) {
+    return hit ? hits : misses;
+  }
+}
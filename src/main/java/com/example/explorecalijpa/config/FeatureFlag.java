@@ -0,0 +1,37 @@
+package com.example.explorecalijpa.config;
+
+/**
+ * A resolved feature flag.
+ *
+ * @param name       the flag, without the {@code features.} prefix
+ * @param percentage share of the customers it is enabled for, 0 to 100
+ */
+public record FeatureFlag(String name, int percentage) {
+
+  /**
+   * @return true if the customer falls in the rolled out share. The same
+   *         customer always gets the same answer for a flag, and raising the
+   *         percentage only adds customers.
+   */
+  public boolean isEnabled(int customerId) {
+    if (percentage >= 100) {
+      return true;
+    }
+    return percentage > 0 && bucket(name, customerId) < percentage;
+  }
+
+  /**
+   * @return the customer's bucket for the flag, 0 to 99. The flag name is
+   *         mixed in so that different flags roll out to different customers.
+   */
+  static int bucket(String name, int customerId) {
+    // murmur3 finalizer
+    int h = customerId * 0x9E3779B9 ^ name.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return Integer.remainderUnsigned(h, 100);
+  }
+}
@@ -0,0 +1,39 @@
+package com.example.explorecalijpa.config;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/features}: GET lists the current feature flags, POST
+ * re-reads them from the Environment without waiting for the scheduled
+ * refresh.
+ *
+ * Security expectations (from SecurityConfig):
+ * - any authenticated user can GET
+ * - ADMIN can POST
+ */
+@Component
+@Endpoint(id = "features")
+public class FeatureFlagEndpoint {
+
+  private final FeatureFlagService featureFlagService;
+
+  public FeatureFlagEndpoint(FeatureFlagService featureFlagService) {
+    this.featureFlagService = featureFlagService;
+  }
+
+  @ReadOperation
+  public Map<String, FeatureFlag> flags() {
+    return featureFlagService.flags();
+  }
+
+  @WriteOperation
+  public Map<String, FeatureFlag> refresh() {
+    featureFlagService.refresh();
+    return featureFlagService.flags();
+  }
+}
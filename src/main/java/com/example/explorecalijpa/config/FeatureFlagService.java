@@ -1,29 +1,145 @@
 package com.example.explorecalijpa.config;
 
-import org.springframework.core.env.Environment;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.SystemEnvironmentPropertySource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
- * Service that exposes boolean feature flags backed by configuration
- * properties. Flags are read from keys with the prefix {@code features}.
+ * Service that exposes feature flags backed by configuration properties.
+ * Flags are read from keys with the prefix {@code features}.
+ *
+ * A flag is on ({@code true}, {@code on}, {@code yes}, {@code 1}), off
+ * ({@code false}, {@code off}, {@code no}, {@code 0}), as Spring converts a
+ * Boolean property, or a rollout percentage such as
+ * {@code 25%}, which enables the feature for that share of the customers,
+ * picked by a hash of the customer id and the flag name.
+ *
+ * The flags are resolved into an immutable snapshot, so a check is one map
+ * lookup. The snapshot is rebuilt from the Environment every
+ * {@code features.refresh-interval} and by a POST to the
+ * {@code /actuator/features} endpoint.
  */
 @Component
 public class FeatureFlagService {
 
-  private final Environment environment;
+  private static final Logger log = LoggerFactory.getLogger(FeatureFlagService.class);
+
+  static final String PREFIX = "features.";
+  private static final String ENV_PREFIX = "FEATURES_";
+  private static final Set<String> ON = Set.of("true", "on", "yes", "1");
+  private static final Set<String> OFF = Set.of("false", "off", "no", "0");
 
-  public FeatureFlagService(Environment environment) {
+  private final ConfigurableEnvironment environment;
+  private volatile Map<String, FeatureFlag> flags;
+
+  public FeatureFlagService(ConfigurableEnvironment environment) {
     this.environment = environment;
+    this.flags = resolve();
   }
 
   /**
    * Determine if the given feature is enabled. If the feature flag is not
-   * present it is considered disabled.
+   * present it is considered disabled, and so is a flag only rolled out to
+   * some of the customers.
    *
    * @param featureName name of the feature
    * @return true if enabled, otherwise false
    */
   public boolean isEnabled(String featureName) {
-    return environment.getProperty("features." + featureName, Boolean.class, false);
+    FeatureFlag flag = flags.get(featureName);
+    return flag != null && flag.percentage() == 100;
+  }
+
+  /**
+   * Determine if the given feature is enabled for a customer.
+   *
+   * @param featureName name of the feature
+   * @param customerId  the customer
+   * @return true if enabled for the customer, otherwise false
+   */
+  public boolean isEnabled(String featureName, int customerId) {
+    FeatureFlag flag = flags.get(featureName);
+    return flag != null && flag.isEnabled(customerId);
+  }
+
+  /**
+   * @return the current flags by name.
+   */
+  public Map<String, FeatureFlag> flags() {
+    return flags;
+  }
+
+  /**
+   * Re-read the flags from the Environment.
+   */
+  @Scheduled(initialDelayString = "${features.refresh-interval:PT30S}",
+      fixedDelayString = "${features.refresh-interval:PT30S}")
+  public void refresh() {
+    Map<String, FeatureFlag> refreshed = resolve();
+    if (!refreshed.equals(flags)) {
+      log.info("Feature flags changed: {}", refreshed);
+    }
+    flags = refreshed;
+  }
+
+  private Map<String, FeatureFlag> resolve() {
+    Map<String, FeatureFlag> resolved = new TreeMap<>();
+    for (PropertySource<?> source : environment.getPropertySources()) {
+      if (source instanceof EnumerablePropertySource<?> enumerable) {
+        for (String property : enumerable.getPropertyNames()) {
+          String name = name(source, property);
+          if (name != null && !name.equals("refresh-interval")) {
+            // the first source holding a flag wins, as in the Environment
+            resolved.computeIfAbsent(name, n -> parse(n, environment.getProperty(PREFIX + n)));
+          }
+        }
+      }
+    }
+    return Map.copyOf(resolved);
+  }
+
+  /**
+   * @return the flag name of a property, FEATURES_TOUR_RATINGS in the system
+   *         environment being features.tour-ratings; null for other
+   *         properties.
+   */
+  private static String name(PropertySource<?> source, String property) {
+    if (source instanceof SystemEnvironmentPropertySource) {
+      return property.startsWith(ENV_PREFIX)
+          ? property.substring(ENV_PREFIX.length()).toLowerCase(Locale.ROOT).replace('_', '-')
+          : null;
+    }
+    return property.startsWith(PREFIX) ? property.substring(PREFIX.length()) : null;
+  }
+
+  private static FeatureFlag parse(String name, String value) {
+    String trimmed = value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    if (ON.contains(trimmed)) {
+      return new FeatureFlag(name, 100);
+    }
+    if (trimmed.endsWith("%")) {
+      try {
+        int percentage = Integer.parseInt(trimmed.substring(0, trimmed.length() - 1).trim());
+        if (percentage >= 0 && percentage <= 100) {
+          return new FeatureFlag(name, percentage);
+        }
+      } catch (NumberFormatException e) {
+        // rejected below
+      }
+    }
+    if (!OFF.contains(trimmed)) {
+      log.warn("Feature flag {}={} is neither on, off nor a percentage; disabled", name, value);
+    }
+    return new FeatureFlag(name, 0);
   }
 }
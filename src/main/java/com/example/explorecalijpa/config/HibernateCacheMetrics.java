@@ -0,0 +1,67 @@
+package com.example.explorecalijpa.config;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Publishes the Hibernate second-level cache regions (see ehcache.xml) under
+ * the standard Micrometer {@code cache.*} meters, tagged with the region as
+ * {@code cache}, plus a {@code cache.hit.ratio} gauge per region. Read from
+ * the Hibernate statistics, so hibernate.generate_statistics must be on.
+ */
+@Component
+public class HibernateCacheMetrics implements MeterBinder {
+
+  static final List<String> REGIONS = List.of("tour", "tour-package", "default-query-results-region");
+
+  private final EntityManagerFactory entityManagerFactory;
+
+  public HibernateCacheMetrics(EntityManagerFactory entityManagerFactory) {
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    for (String region : REGIONS) {
+      FunctionCounter.builder("cache.gets", statistics, s -> count(s, region, CacheRegionStatistics::getHitCount))
+          .tag("cache", region).tag("result", "hit")
+          .description("The number of times cache lookup methods have returned a cached value.")
+          .register(registry);
+      FunctionCounter.builder("cache.gets", statistics, s -> count(s, region, CacheRegionStatistics::getMissCount))
+          .tag("cache", region).tag("result", "miss")
+          .description("The number of times cache lookup methods have returned an uncached value.")
+          .register(registry);
+      FunctionCounter.builder("cache.puts", statistics, s -> count(s, region, CacheRegionStatistics::getPutCount))
+          .tag("cache", region)
+          .description("The number of entries added to the cache.")
+          .register(registry);
+      Gauge.builder("cache.hit.ratio", statistics, s -> hitRatio(s, region))
+          .tag("cache", region)
+          .description("Hits over lookups since startup, NaN before the first lookup.")
+          .register(registry);
+    }
+  }
+
+  private static double count(Statistics statistics, String region, ToLongFunction<CacheRegionStatistics> counter) {
+    CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+    return regionStatistics == null ? 0 : counter.applyAsLong(regionStatistics);
+  }
+
+  static double hitRatio(Statistics statistics, String region) {
+    double hits = count(statistics, region, CacheRegionStatistics::getHitCount);
+    double lookups = hits + count(statistics, region, CacheRegionStatistics::getMissCount);
+    return lookups == 0 ? Double.NaN : hits / lookups;
+  }
+}
@@ -0,0 +1,157 @@
+package com.example.explorecalijpa.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+/**
+ * JDBC statement listener: dynamic proxies around a DataSource and the
+ * connections and statements it hands out, reporting every execution to
+ * the StatementMonitor with its SQL, time and bind parameter types. The
+ * bound values themselves are never kept.
+ *
+ * unwrap and isWrapperFor go to the wrapped objects, so pool metrics and
+ * anything else that unwraps the DataSource still find the pool.
+ */
+final class MonitoredJdbc {
+
+  private MonitoredJdbc() {
+  }
+
+  static DataSource wrap(DataSource dataSource, StatementMonitor monitor) {
+    return proxy(DataSource.class, new Handler(dataSource) {
+      @Override
+      Object invoke(Method method, Object[] args) throws Throwable {
+        Object result = call(method, args);
+        return method.getName().equals("getConnection") ? connection((Connection) result, monitor) : result;
+      }
+    });
+  }
+
+  private static Connection connection(Connection connection, StatementMonitor monitor) {
+    return proxy(Connection.class, new Handler(connection) {
+      @Override
+      Object invoke(Method method, Object[] args) throws Throwable {
+        Object result = call(method, args);
+        return switch (method.getName()) {
+          case "prepareStatement" -> proxy(PreparedStatement.class,
+              new StatementHandler((Statement) result, (String) args[0], monitor));
+          case "prepareCall" -> proxy(CallableStatement.class,
+              new StatementHandler((Statement) result, (String) args[0], monitor));
+          case "createStatement" -> proxy(Statement.class, new StatementHandler((Statement) result, null, monitor));
+          default -> result;
+        };
+      }
+    });
+  }
+
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(MonitoredJdbc.class.getClassLoader(), new Class<?>[] { type },
+        handler));
+  }
+
+  /**
+   * Passes calls to the target, with identity equality for the proxy.
+   */
+  private abstract static class Handler implements InvocationHandler {
+    final Object target;
+
+    Handler(Object target) {
+      this.target = target;
+    }
+
+    @Override
+    public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      return switch (method.getName()) {
+        case "equals" -> args.length == 1 ? proxy == args[0] : invoke(method, args);
+        case "hashCode" -> args == null ? System.identityHashCode(proxy) : invoke(method, args);
+        case "toString" -> args == null ? "Monitored" + target : invoke(method, args);
+        default -> invoke(method, args);
+      };
+    }
+
+    abstract Object invoke(Method method, Object[] args) throws Throwable;
+
+    final Object call(Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  /**
+   * Times the executions of a statement and tracks its bind parameters.
+   */
+  private static final class StatementHandler extends Handler {
+    private final StatementMonitor monitor;
+    private final Map<Integer, String> parameters = new TreeMap<>();
+    private String sql;
+    private int batchSize;
+
+    StatementHandler(Statement statement, String sql, StatementMonitor monitor) {
+      super(statement);
+      this.sql = sql;
+      this.monitor = monitor;
+    }
+
+    @Override
+    Object invoke(Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (name.startsWith("execute")) {
+        return execute(method, args);
+      }
+      if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+        parameters.put(index, parameterType(name, args[1]));
+      } else if (name.equals("clearParameters")) {
+        parameters.clear();
+      } else if (name.equals("addBatch")) {
+        batchSize++;
+        if (args != null && args.length == 1) {
+          sql = (String) args[0];
+        }
+      } else if (name.equals("clearBatch")) {
+        batchSize = 0;
+      }
+      return call(method, args);
+    }
+
+    private Object execute(Method method, Object[] args) throws Throwable {
+      String executed = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+      boolean batch = method.getName().equals("executeBatch") || method.getName().equals("executeLargeBatch");
+      long start = System.nanoTime();
+      try {
+        return call(method, args);
+      } finally {
+        monitor.executed(executed, List.copyOf(parameters.values()), batch ? batchSize : 0,
+            System.nanoTime() - start);
+        if (batch) {
+          batchSize = 0;
+        }
+      }
+    }
+
+    /**
+     * @return Int for setInt, the value's class for setObject, Null for a
+     *         null.
+     */
+    private static String parameterType(String setter, Object value) {
+      String type = setter.substring(3);
+      if (value == null) {
+        return "Null";
+      }
+      return type.equals("Object") ? value.getClass().getSimpleName() : type;
+    }
+  }
+}
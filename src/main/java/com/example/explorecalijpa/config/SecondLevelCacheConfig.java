@@ -0,0 +1,50 @@
+package com.example.explorecalijpa.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Gives every application context its own ehcache CacheManager for the
+ * Hibernate second-level cache, configured from hibernate.javax.cache.uri.
+ * The JCache provider hands out one manager per configuration URI and
+ * Hibernate closes it with its SessionFactory, so contexts sharing it, as the
+ * cached test contexts do, would find their regions closed as soon as one of
+ * them shuts down.
+ */
+@Configuration(proxyBeanMethods = false)
+public class SecondLevelCacheConfig {
+
+  @Bean
+  HibernatePropertiesCustomizer secondLevelCacheManager() {
+    return properties -> {
+      Object config = properties.get(ConfigSettings.CONFIG_URI);
+      if (config == null) {
+        return;
+      }
+      XmlConfiguration configuration;
+      try {
+        configuration = new XmlConfiguration(new ClassPathResource(config.toString()).getURL());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching
+          .getCachingProvider(EhcacheCachingProvider.class.getName());
+      CacheManager cacheManager = provider.getCacheManager(URI.create("urn:explorecali:" + UUID.randomUUID()),
+          configuration);
+      properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    };
+  }
+}
@@ -1,5 +1,8 @@
 package com.example.explorecalijpa.config;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -17,9 +20,13 @@ import org.springframework.security.web.SecurityFilterChain;
 @EnableMethodSecurity
 public class SecurityConfig {
 
+  // HTTP Basic verifies the password on every request; remember successful
+  // verifications briefly so that costs one BCrypt check per TTL
   @Bean
-  PasswordEncoder passwordEncoder() {
-    return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+  CachingPasswordEncoder passwordEncoder(
+      @Value("${security.credential-cache.max-size:10000}") int maxSize,
+      @Value("${security.credential-cache.ttl:1m}") Duration ttl) {
+    return new CachingPasswordEncoder(PasswordEncoderFactories.createDelegatingPasswordEncoder(), maxSize, ttl);
   }
 
   @Bean
@@ -58,6 +65,10 @@ public class SecurityConfig {
             .requestMatchers(HttpMethod.PATCH, "/tours/**", "/packages/**").hasRole("ADMIN")
             .requestMatchers(HttpMethod.DELETE, "/tours/**", "/packages/**").hasRole("ADMIN")
 
+            // refreshing the feature flags, resetting the statement statistics → ADMIN only
+            .requestMatchers(HttpMethod.POST, "/actuator/features").hasRole("ADMIN")
+            .requestMatchers(HttpMethod.DELETE, "/actuator/statements").hasRole("ADMIN")
+
             // everything else must be authenticated
             .anyRequest().authenticated())
 
@@ -0,0 +1,235 @@
+package com.example.explorecalijpa.config;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects every JDBC statement the application executes, as reported by
+ * the MonitoredJdbc proxies around the DataSource.
+ *
+ * Statements are kept per SQL string (Hibernate and JdbcTemplate bind
+ * parameters, so the SQL is already the shape of the query), with every
+ * {@code IN (?, ?, ...)} list written as {@code IN (...)} so lists of any
+ * size are one statement. At most {@code sql.monitor.max-statements}
+ * distinct ones are kept, a new one replacing the least executed. A
+ * statement slower than {@code sql.monitor.slow-threshold} is logged with
+ * the types of its bind parameters. Within an HTTP request (see
+ * StatementCountFilter) the statements are counted, and one SQL string run
+ * at least {@code sql.monitor.n-plus-one-threshold} times is logged and
+ * kept as an N+1 suspect.
+ */
+@Component
+public class StatementMonitor {
+
+  private static final Logger log = LoggerFactory.getLogger(StatementMonitor.class);
+
+  static final Comparator<StatementSummary> SLOWEST = Comparator
+      .comparingDouble(StatementSummary::meanMillis).reversed();
+  static final Comparator<StatementSummary> MOST_FREQUENT = Comparator
+      .comparingLong(StatementSummary::count).reversed();
+
+  // a list of bind parameters, whatever its length
+  private static final Pattern IN_LIST = Pattern.compile("(?i)\\b(in)\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+  private final long slowThresholdNanos;
+  private final int nPlusOneThreshold;
+  private final int maxStatements;
+  private final Map<String, Stats> statements = new ConcurrentHashMap<>();
+  private final Map<String, NPlusOneSuspect> suspects = new ConcurrentHashMap<>();
+  private final ThreadLocal<Map<String, Integer>> request = new ThreadLocal<>();
+  private final LongAdder executed = new LongAdder();
+
+  public StatementMonitor(@Value("${sql.monitor.slow-threshold:100ms}") Duration slowThreshold,
+      @Value("${sql.monitor.n-plus-one-threshold:10}") int nPlusOneThreshold,
+      @Value("${sql.monitor.max-statements:500}") int maxStatements) {
+    this.slowThresholdNanos = slowThreshold.toNanos();
+    this.nPlusOneThreshold = nPlusOneThreshold;
+    this.maxStatements = maxStatements;
+  }
+
+  /**
+   * Record an executed statement.
+   *
+   * @param sql        the SQL
+   * @param parameters the types of the bind parameters, in order
+   * @param batchSize  rows of a batch, 0 if not a batch
+   * @param nanos      execution time
+   */
+  void executed(String sql, List<String> parameters, int batchSize, long nanos) {
+    executed.increment();
+    String key = normalize(sql);
+    stats(key).record(nanos);
+    if (nanos >= slowThresholdNanos) {
+      log.warn("Slow statement ({} ms{}): {} parameters {}", nanos / 1_000_000,
+          batchSize > 0 ? ", batch of " + batchSize : "", key, parameters);
+    }
+    Map<String, Integer> current = request.get();
+    if (current != null) {
+      current.merge(key, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * @param sql the SQL
+   * @return the SQL with its IN lists of bind parameters collapsed.
+   */
+  static String normalize(String sql) {
+    if (sql == null) {
+      return "";
+    }
+    return IN_LIST.matcher(sql).replaceAll("$1 (...)");
+  }
+
+  private Stats stats(String key) {
+    Stats stats = statements.get(key);
+    if (stats != null) {
+      return stats;
+    }
+    synchronized (statements) {
+      if (statements.size() >= maxStatements && !statements.containsKey(key)) {
+        statements.values().stream().min(Comparator.comparingLong(Stats::count))
+            .ifPresent(leastUsed -> statements.remove(leastUsed.sql, leastUsed));
+      }
+      return statements.computeIfAbsent(key, Stats::new);
+    }
+  }
+
+  /**
+   * Start counting the statements of the current thread's request.
+   */
+  public void beginRequest() {
+    request.set(new HashMap<>());
+  }
+
+  /**
+   * Stop counting the statements of the current thread's request, and log
+   * the N+1 suspects among them.
+   *
+   * @param method the HTTP method
+   * @param uri    the URI template of the request
+   * @return the number of statements the request executed
+   */
+  public int endRequest(String method, String uri) {
+    Map<String, Integer> current = request.get();
+    request.remove();
+    if (current == null) {
+      return 0;
+    }
+    int count = 0;
+    for (Map.Entry<String, Integer> e : current.entrySet()) {
+      int times = e.getValue();
+      count += times;
+      if (times >= nPlusOneThreshold) {
+        log.warn("Possible N+1: {} {} ran {} times: {}", method, uri, times, e.getKey());
+        String key = method + " " + uri + "\n" + e.getKey();
+        if (suspects.containsKey(key) || suspects.size() < maxStatements) {
+          suspects.merge(key, new NPlusOneSuspect(method, uri, e.getKey(), times, 1), NPlusOneSuspect::plus);
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the number of statements executed since startup or the last
+   *         reset, by all threads.
+   */
+  public long executedCount() {
+    return executed.sum();
+  }
+
+  /**
+   * @return the first {@code limit} statements in the order.
+   */
+  public List<StatementSummary> top(Comparator<StatementSummary> order, int limit) {
+    return statements.values().stream().map(Stats::summary).sorted(order).limit(limit).toList();
+  }
+
+  /**
+   * @return the N+1 suspects, most repetitions first.
+   */
+  public List<NPlusOneSuspect> suspects() {
+    return suspects.values().stream()
+        .sorted(Comparator.comparingInt(NPlusOneSuspect::maxRepetitions).reversed())
+        .toList();
+  }
+
+  /**
+   * Forget all statements and suspects.
+   */
+  public void reset() {
+    statements.clear();
+    suspects.clear();
+    executed.reset();
+  }
+
+  /**
+   * Execution statistics of one SQL string.
+   */
+  private static final class Stats {
+    private final String sql;
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    Stats(String sql) {
+      this.sql = sql;
+    }
+
+    synchronized void record(long nanos) {
+      count++;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    synchronized long count() {
+      return count;
+    }
+
+    synchronized StatementSummary summary() {
+      return new StatementSummary(sql, count, totalNanos / 1e6, count == 0 ? 0 : totalNanos / 1e6 / count,
+          maxNanos / 1e6);
+    }
+  }
+
+  /**
+   * Execution statistics of one SQL string.
+   *
+   * @param sql         the SQL
+   * @param count       times executed
+   * @param totalMillis total execution time
+   * @param meanMillis  mean execution time
+   * @param maxMillis   longest execution time
+   */
+  public record StatementSummary(String sql, long count, double totalMillis, double meanMillis,
+      double maxMillis) {
+  }
+
+  /**
+   * One SQL string run repeatedly within a request to an endpoint.
+   *
+   * @param method         the HTTP method
+   * @param uri            the URI template
+   * @param sql            the repeated SQL
+   * @param maxRepetitions most times it ran in one request
+   * @param requests       requests in which it ran at least the threshold
+   */
+  public record NPlusOneSuspect(String method, String uri, String sql, int maxRepetitions, long requests) {
+
+    NPlusOneSuspect plus(NPlusOneSuspect other) {
+      return new NPlusOneSuspect(method, uri, sql, Math.max(maxRepetitions, other.maxRepetitions),
+          requests + other.requests);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.example.explorecalijpa.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Puts the MonitoredJdbc statement listener around the DataSource unless
+ * {@code sql.monitor.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sql.monitor.enabled", matchIfMissing = true)
+public class StatementMonitorConfig {
+
+  @Bean
+  static BeanPostProcessor monitoredDataSourcePostProcessor(ObjectProvider<StatementMonitor> statementMonitor) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource dataSource
+            ? MonitoredJdbc.wrap(dataSource, statementMonitor.getObject())
+            : bean;
+      }
+    };
+  }
+}
@@ -0,0 +1,76 @@
+package com.example.explorecalijpa.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * {@code /actuator/statements}: GET lists the slowest (by mean time) and
+ * the most frequent JDBC statements from the StatementMonitor, top
+ * {@code limit} of each (default 10), the N+1 suspects, and the Hibernate
+ * statistics. DELETE resets all of them.
+ *
+ * Security expectations (from SecurityConfig):
+ * - any authenticated user can GET
+ * - ADMIN can DELETE
+ */
+@Component
+@Endpoint(id = "statements")
+public class StatementsEndpoint {
+
+  private static final int DEFAULT_LIMIT = 10;
+
+  private final StatementMonitor statementMonitor;
+  private final EntityManagerFactory entityManagerFactory;
+
+  public StatementsEndpoint(StatementMonitor statementMonitor, EntityManagerFactory entityManagerFactory) {
+    this.statementMonitor = statementMonitor;
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  @ReadOperation
+  public Map<String, Object> statements(@Nullable Integer limit) {
+    int top = limit == null ? DEFAULT_LIMIT : Math.max(limit, 1);
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("executed", statementMonitor.executedCount());
+    report.put("slowest", statementMonitor.top(StatementMonitor.SLOWEST, top));
+    report.put("mostFrequent", statementMonitor.top(StatementMonitor.MOST_FREQUENT, top));
+    report.put("nPlusOneSuspects", statementMonitor.suspects());
+    report.put("hibernate", hibernate(statistics()));
+    return report;
+  }
+
+  @DeleteOperation
+  public void reset() {
+    statementMonitor.reset();
+    statistics().clear();
+  }
+
+  private Statistics statistics() {
+    return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  private static Map<String, Object> hibernate(Statistics statistics) {
+    Map<String, Object> hibernate = new LinkedHashMap<>();
+    hibernate.put("preparedStatements", statistics.getPrepareStatementCount());
+    hibernate.put("queries", statistics.getQueryExecutionCount());
+    hibernate.put("slowestQueryMillis", statistics.getQueryExecutionMaxTime());
+    hibernate.put("slowestQuery", statistics.getQueryExecutionMaxTimeQueryString());
+    hibernate.put("entityLoads", statistics.getEntityLoadCount());
+    // fetches are lazy associations initialized one by one: the N+1 shape
+    hibernate.put("entityFetches", statistics.getEntityFetchCount());
+    hibernate.put("collectionFetches", statistics.getCollectionFetchCount());
+    hibernate.put("secondLevelCacheHits", statistics.getSecondLevelCacheHitCount());
+    hibernate.put("secondLevelCacheMisses", statistics.getSecondLevelCacheMissCount());
+    return hibernate;
+  }
+}
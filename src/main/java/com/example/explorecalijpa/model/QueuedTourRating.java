@@ -0,0 +1,81 @@
+package com.example.explorecalijpa.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * A tour rating accepted in write-behind mode and not yet written as a
+ * TourRating: the outbox the RatingWriteBehind writer drains. Kept in the
+ * database so accepted ratings survive a restart.
+ */
+@Entity
+@Table(name = "tour_rating_outbox")
+public class QueuedTourRating {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "tour_id", nullable = false)
+  private int tourId;
+
+  @Column(name = "customer_id", nullable = false)
+  private int customerId;
+
+  @Column(nullable = false)
+  private int score;
+
+  @Column(length = 100)
+  private String comment;
+
+  @Column(nullable = false)
+  private int attempts;
+
+  protected QueuedTourRating() {
+  }
+
+  /**
+   * Queue a new rating.
+   *
+   * @param tourId     tour identifier
+   * @param customerId customer identifier
+   * @param score      score of the rating
+   * @param comment    optional comment
+   */
+  public QueuedTourRating(int tourId, int customerId, int score, String comment) {
+    this.tourId = tourId;
+    this.customerId = customerId;
+    this.score = score;
+    this.comment = comment;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public int getTourId() {
+    return tourId;
+  }
+
+  public int getCustomerId() {
+    return customerId;
+  }
+
+  public int getScore() {
+    return score;
+  }
+
+  public String getComment() {
+    return comment;
+  }
+
+  /**
+   * @return number of failed attempts to write the rating.
+   */
+  public int getAttempts() {
+    return attempts;
+  }
+}
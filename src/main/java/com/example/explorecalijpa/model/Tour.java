@@ -4,12 +4,27 @@ import jakarta.persistence.*;
 
 import java.util.Objects;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.LazyGroup;
+import org.springframework.data.annotation.AccessType;
+import org.springframework.data.annotation.AccessType.Type;
+
 /**
  * The Tour contains all attributes of an Explore California Tour.
  *
+ * The long text columns (description, blurb, bullets) are loaded lazily and
+ * together, on the first access to any of them; this relies on the bytecode
+ * enhancement of the build. The enhancement also tracks which attributes
+ * change, so the fields are only written through the setters, also by
+ * Spring Data REST.
+ *
  * Created by Mary Ellen Bowman
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "tour")
+@AccessType(Type.PROPERTY)
 public class Tour {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -19,9 +34,13 @@ public class Tour {
     private String title;
 
     @Column(length = 2000)
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("text")
     private String description;
 
     @Column(length = 2000)
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("text")
     private String blurb;
 
     @Column
@@ -31,13 +50,15 @@ public class Tour {
     private String duration;
 
     @Column(length = 2000)
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("text")
     private String bullets;
 
     @Column
     private String keywords;
 
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="tour_package_code")
     private TourPackage tourPackage;
 
@@ -73,42 +94,82 @@ public class Tour {
         return title;
     }
 
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
     public String getDescription() {
         return description;
     }
 
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
     public String getBlurb() {
         return blurb;
     }
 
+    public void setBlurb(String blurb) {
+        this.blurb = blurb;
+    }
+
     public Integer getPrice() {
         return price;
     }
 
+    public void setPrice(Integer price) {
+        this.price = price;
+    }
+
     public String getDuration() {
         return duration;
     }
 
+    public void setDuration(String duration) {
+        this.duration = duration;
+    }
+
     public String getBullets() {
         return bullets;
     }
 
+    public void setBullets(String bullets) {
+        this.bullets = bullets;
+    }
+
     public String getKeywords() {
         return keywords;
     }
 
+    public void setKeywords(String keywords) {
+        this.keywords = keywords;
+    }
+
     public TourPackage getTourPackage() {
         return tourPackage;
     }
 
+    public void setTourPackage(TourPackage tourPackage) {
+        this.tourPackage = tourPackage;
+    }
+
     public Difficulty getDifficulty() {
         return difficulty;
     }
 
+    public void setDifficulty(Difficulty difficulty) {
+        this.difficulty = difficulty;
+    }
+
     public Region getRegion() {
         return region;
     }
 
+    public void setRegion(Region region) {
+        this.region = region;
+    }
+
     @Override
     public String toString() {
         return "Tour{" +
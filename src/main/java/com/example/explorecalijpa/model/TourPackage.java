@@ -1,4 +1,5 @@
 package com.example.explorecalijpa.model;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
@@ -6,13 +7,24 @@ import jakarta.persistence.Table;
 
 import java.util.Objects;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.data.annotation.AccessType;
+import org.springframework.data.annotation.AccessType.Type;
+
 /**
  * A Classification of Tours.
  *
+ * Written through its setters, also by Spring Data REST, so the bytecode
+ * enhancement tracks the change.
+ *
  * Created by Mary Ellen Bowman
  */
 @Table(name="tour_package")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "tour-package")
+@AccessType(Type.PROPERTY)
 public class TourPackage {
     @Id
     private String code;
@@ -36,6 +48,10 @@ public class TourPackage {
         return name;
     }
 
+    public void setName(String name) {
+        this.name = name;
+    }
+
     @Override
     public String toString() {
         return "TourPackage{" +
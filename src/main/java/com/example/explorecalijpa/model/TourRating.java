@@ -2,6 +2,8 @@ package com.example.explorecalijpa.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 
 /**
@@ -17,8 +19,11 @@ public class TourRating {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Integer id;
 
-  @ManyToOne
+  // lazy: rating reads only need the tour id, not its long text columns
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "tour_id")
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
   private Tour tour;
 
   @Column(name = "customer_id")
@@ -27,7 +32,7 @@ public class TourRating {
   @Column(nullable = false)
   private Integer score;
 
-  @Column
+  @Column(length = 100)
   private String comment;
 
   protected TourRating() {
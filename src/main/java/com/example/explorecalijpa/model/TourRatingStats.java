@@ -0,0 +1,134 @@
+package com.example.explorecalijpa.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Running aggregate of all the ratings of a Tour: sum, count and a histogram
+ * of the scores 0-5. Kept current by the TourRatingService on every rating
+ * write so that readers never have to group the raw ratings.
+ */
+@Entity
+@Table(name = "tour_rating_stats")
+public class TourRatingStats {
+  @Id
+  @Column(name = "tour_id")
+  private Integer tourId;
+
+  @Column(name = "score_sum", nullable = false)
+  private long scoreSum;
+
+  @Column(name = "review_count", nullable = false)
+  private long reviewCount;
+
+  @Column(name = "score_0", nullable = false)
+  private long score0;
+
+  @Column(name = "score_1", nullable = false)
+  private long score1;
+
+  @Column(name = "score_2", nullable = false)
+  private long score2;
+
+  @Column(name = "score_3", nullable = false)
+  private long score3;
+
+  @Column(name = "score_4", nullable = false)
+  private long score4;
+
+  @Column(name = "score_5", nullable = false)
+  private long score5;
+
+  @Column(nullable = false)
+  private long version;
+
+  protected TourRatingStats() {
+  }
+
+  /**
+   * Create empty statistics for a tour.
+   *
+   * @param tourId the tour identifier
+   */
+  public TourRatingStats(Integer tourId) {
+    this.tourId = tourId;
+  }
+
+  /**
+   * Apply delta ratings of the given score in memory, as
+   * TourRatingStatsRepository.adjust does in the database.
+   *
+   * @param score score of the ratings
+   * @param delta number of ratings added (positive) or removed (negative)
+   * @return this
+   */
+  public TourRatingStats adjust(int score, long delta) {
+    scoreSum += score * delta;
+    reviewCount += delta;
+    switch (score) {
+      case 0 -> score0 += delta;
+      case 1 -> score1 += delta;
+      case 2 -> score2 += delta;
+      case 3 -> score3 += delta;
+      case 4 -> score4 += delta;
+      case 5 -> score5 += delta;
+      default -> {
+        // outside the histogram range, only sum and count are kept
+      }
+    }
+    return this;
+  }
+
+  public Integer getTourId() {
+    return tourId;
+  }
+
+  public long getScoreSum() {
+    return scoreSum;
+  }
+
+  public long getReviewCount() {
+    return reviewCount;
+  }
+
+  /**
+   * @return the average score, or null when the tour has no ratings.
+   */
+  public Double getAverage() {
+    return average(scoreSum, reviewCount);
+  }
+
+  /**
+   * @return the average of the scores with the sum and count, or null when
+   *         there are none.
+   */
+  public static Double average(long scoreSum, long reviewCount) {
+    return reviewCount == 0 ? null : (double) scoreSum / reviewCount;
+  }
+
+  /**
+   * @return number of ratings per score, indexed by score 0-5.
+   */
+  public long[] getHistogram() {
+    return new long[] { score0, score1, score2, score3, score4, score5 };
+  }
+
+  /**
+   * @return number of changes to the statistics, bumped by every
+   *         TourRatingStatsRepository.adjust.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public String toString() {
+    return "TourRatingStats{" +
+        "tourId=" + tourId +
+        ", scoreSum=" + scoreSum +
+        ", reviewCount=" + reviewCount +
+        '}';
+  }
+}
@@ -0,0 +1,23 @@
+package com.example.explorecalijpa.repo;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The database behind the repositories, for the statements written in its
+ * own dialect.
+ */
+final class DatabaseProduct {
+
+  private DatabaseProduct() {
+  }
+
+  /**
+   * @param jdbcTemplate template of the data source
+   * @return true for MySQL, false for H2
+   */
+  static boolean isMysql(JdbcTemplate jdbcTemplate) {
+    return jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+        con.getMetaData().getDatabaseProductName().startsWith("MySQL"));
+  }
+}
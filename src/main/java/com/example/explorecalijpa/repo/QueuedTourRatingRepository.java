@@ -0,0 +1,43 @@
+package com.example.explorecalijpa.repo;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import com.example.explorecalijpa.model.QueuedTourRating;
+
+/**
+ * The outbox of the tour ratings accepted in write-behind mode.
+ */
+@RepositoryRestResource(exported = false)
+public interface QueuedTourRatingRepository extends JpaRepository<QueuedTourRating, Long>,
+    QueuedTourRatingRepositoryCustom {
+
+  /**
+   * @param maxAttempts attempts after which a rating is no longer written
+   * @param pageable    the batch size, must be the first page
+   * @return the oldest queued ratings still to be written
+   */
+  List<QueuedTourRating> findByAttemptsLessThanOrderById(int maxAttempts, Pageable pageable);
+
+  /**
+   * @param maxAttempts attempts after which a rating is no longer written
+   * @return number of queued ratings still to be written
+   */
+  long countByAttemptsLessThan(int maxAttempts);
+
+  /**
+   * Count a failed attempt to write a queued rating. Must run in a
+   * transaction.
+   *
+   * @param id the queued rating
+   * @return number of rows updated
+   */
+  @Modifying
+  @Query("update QueuedTourRating q set q.attempts = q.attempts + 1 where q.id = :id")
+  int incrementAttempts(long id);
+}
@@ -0,0 +1,22 @@
+package com.example.explorecalijpa.repo;
+
+import java.util.List;
+
+import com.example.explorecalijpa.model.QueuedTourRating;
+
+/**
+ * Bulk insert of the QueuedTourRatingRepository that bypasses the
+ * persistence context.
+ */
+public interface QueuedTourRatingRepositoryCustom {
+
+  /**
+   * Queue the ratings as one JDBC batch. The (tour_id, customer_id) unique
+   * key of the outbox refuses a rating already queued.
+   *
+   * @param ratings the ratings
+   * @throws org.springframework.dao.DuplicateKeyException if one of the
+   *         ratings is already queued, or listed twice.
+   */
+  void insertAll(List<QueuedTourRating> ratings);
+}
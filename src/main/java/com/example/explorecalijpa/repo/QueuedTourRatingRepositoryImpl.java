@@ -0,0 +1,33 @@
+package com.example.explorecalijpa.repo;
+
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.explorecalijpa.model.QueuedTourRating;
+
+/**
+ * JDBC implementation of the outbox insert. The outbox ids come from the
+ * database (IDENTITY) and are not needed when queuing, so the rows go out as
+ * one batch instead of one persist and id read-back each.
+ */
+class QueuedTourRatingRepositoryImpl implements QueuedTourRatingRepositoryCustom {
+
+  private final JdbcTemplate jdbcTemplate;
+
+  QueuedTourRatingRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void insertAll(List<QueuedTourRating> ratings) {
+    jdbcTemplate.batchUpdate(
+        "INSERT INTO tour_rating_outbox (tour_id, customer_id, score, comment) VALUES (?, ?, ?, ?)",
+        ratings, ratings.size(), (ps, rating) -> {
+          ps.setInt(1, rating.getTourId());
+          ps.setInt(2, rating.getCustomerId());
+          ps.setInt(3, rating.getScore());
+          ps.setString(4, rating.getComment());
+        });
+  }
+}
@@ -0,0 +1,22 @@
+package com.example.explorecalijpa.repo;
+
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+
+/**
+ * The filterable columns of a tour, read without its text columns or its
+ * TourPackage.
+ */
+public interface TourFacetView {
+  Integer getId();
+
+  String getTitle();
+
+  Integer getPrice();
+
+  Difficulty getDifficulty();
+
+  Region getRegion();
+
+  String getTourPackageCode();
+}
@@ -0,0 +1,26 @@
+package com.example.explorecalijpa.repo;
+
+import org.springframework.data.rest.core.config.Projection;
+
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+import com.example.explorecalijpa.model.Tour;
+
+/**
+ * The columns of a tour shown in lists, without the long text columns. Also
+ * the excerpt of the Spring Data REST tour collections.
+ */
+@Projection(name = "listing", types = Tour.class)
+public interface TourListing {
+  Integer getId();
+
+  String getTitle();
+
+  Integer getPrice();
+
+  String getDuration();
+
+  Difficulty getDifficulty();
+
+  Region getRegion();
+}
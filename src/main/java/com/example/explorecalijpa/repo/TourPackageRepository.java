@@ -4,9 +4,13 @@ import com.example.explorecalijpa.model.TourPackage;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import jakarta.persistence.QueryHint;
+
 import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
 /*
@@ -15,5 +19,6 @@ import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 @RepositoryRestResource(path = "packages", collectionResourceRel = "packages")
 @Tag(name = "Tour Package", description = "The Tour Package API")
 public interface TourPackageRepository extends JpaRepository<TourPackage, String> {
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
   Optional<TourPackage> findByName(String name);
 }
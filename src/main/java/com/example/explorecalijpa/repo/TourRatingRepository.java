@@ -1,15 +1,21 @@
 package com.example.explorecalijpa.repo;
 
 import com.example.explorecalijpa.model.TourRating;
-import edu.ensign.cs460.recommendation.TourSummary;
+import edu.ensign.cs460.recommendation.CustomerScore;
+import edu.ensign.cs460.recommendation.RatedTour;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Tour Rating Repository Interface
@@ -17,16 +23,69 @@ import java.util.Optional;
  * Created by Mary Ellen Bowman
  */
 @RepositoryRestResource(exported = false)
-public interface TourRatingRepository extends JpaRepository<TourRating, Integer>, CrudRepository<TourRating, Integer> {
+public interface TourRatingRepository extends JpaRepository<TourRating, Integer>, CrudRepository<TourRating, Integer>,
+    TourRatingRepositoryCustom {
 
   /**
    * Lookup all the TourRatings for a tour.
    *
+   * Compares the foreign key column; the derived query would join tour to
+   * reach its id and scan tour_rating.
+   *
    * @param tourId the tour Identifier
    * @return a List of any found TourRatings
    */
+  @Query("select r from TourRating r where r.tour.id = ?1")
   List<TourRating> findByTourId(Integer tourId);
 
+  /**
+   * Lookup a page of the ratings of a tour by keyset: the ratings with an id
+   * greater than afterId, in id order, served by the (tour_id, id) index.
+   *
+   * @param tourId   the tour Identifier
+   * @param afterId  id of the last rating of the previous page, 0 for the
+   *                 first page
+   * @param pageable the page size, must be the first page
+   * @return the ratings of the page
+   */
+  @Query("""
+      select r.id as id, r.tour.id as tourId, r.customerId as customerId, r.score as score, r.comment as comment
+      from TourRating r
+      where r.tour.id = :tourId and r.id > :afterId
+      order by r.id
+      """)
+  List<TourRatingView> findPageByTourId(Integer tourId, Integer afterId, Pageable pageable);
+
+  /**
+   * Stream the ratings of a tour through a database cursor. Must be consumed
+   * inside a transaction and closed.
+   *
+   * @param tourId the tour Identifier
+   * @return the ratings of the tour, in insertion order
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query("""
+      select r.id as id, r.tour.id as tourId, r.customerId as customerId, r.score as score, r.comment as comment
+      from TourRating r
+      where r.tour.id = :tourId
+      order by r.id
+      """)
+  Stream<TourRatingView> streamByTourId(Integer tourId);
+
+  /**
+   * Stream all the ratings through a database cursor. Must be consumed
+   * inside a transaction and closed.
+   *
+   * @return all the ratings, in insertion order
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query("""
+      select r.id as id, r.tour.id as tourId, r.customerId as customerId, r.score as score, r.comment as comment
+      from TourRating r
+      order by r.id
+      """)
+  Stream<TourRatingView> streamAll();
+
   /**
    * Lookup a TourRating by the TourId and Customer Id.
    *
@@ -36,30 +95,35 @@ public interface TourRatingRepository extends JpaRepository<TourRating, Integer>
    */
   Optional<TourRating> findByTourIdAndCustomerId(Integer tourId, Integer customerId);
 
+  /**
+   * Lookup which of the given customers already rated a tour.
+   *
+   * @param tourId      the tour Identifier
+   * @param customerIds the customer Identifiers
+   * @return the customers of the list with a rating of the tour
+   */
+  @Query("select r.customerId from TourRating r where r.tour.id = :tourId and r.customerId in :customerIds")
+  List<Integer> findRatedCustomers(int tourId, Collection<Integer> customerIds);
+
   // ---------- Recommendation queries (for the lab) ----------
 
-  @Query("""
-      select tr.tour.id as tourId,
-             tr.tour.title as title,
-             avg(tr.score) as avgScore,
-             count(tr.id) as reviewCount
-      from TourRating tr
-      group by tr.tour.id, tr.tour.title
-      order by avg(tr.score) desc, count(tr.id) desc, tr.tour.title asc
-      """)
-  List<TourSummary> findTopTours(Pageable pageable);
+  /**
+   * Stream the (customer, tour) pair of every rating. Must be consumed inside
+   * a transaction and closed.
+   *
+   * @return the rated tours of all customers
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query("select r.customerId as customerId, r.tour.id as tourId from TourRating r")
+  Stream<RatedTour> streamRatedTours();
 
-  @Query("""
-      select tr.tour.id as tourId,
-             tr.tour.title as title,
-             avg(tr.score) as avgScore,
-             count(tr.id) as reviewCount
-      from TourRating tr
-      where tr.tour.id not in (
-          select r.tour.id from TourRating r where r.customerId = :customerId
-      )
-      group by tr.tour.id, tr.tour.title
-      order by avg(tr.score) desc, count(tr.id) desc, tr.tour.title asc
-      """)
-  List<TourSummary> findRecommendedForCustomer(int customerId, Pageable pageable);
+  /**
+   * Stream the (customer, tour, score) triple of every rating. Must be
+   * consumed inside a transaction and closed.
+   *
+   * @return the scores of all customers
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query("select r.customerId as customerId, r.tour.id as tourId, r.score as score from TourRating r")
+  Stream<CustomerScore> streamScores();
 }
@@ -0,0 +1,43 @@
+package com.example.explorecalijpa.repo;
+
+import java.util.List;
+
+/**
+ * Bulk and upsert writes of the TourRatingRepository that bypass the
+ * persistence context.
+ */
+public interface TourRatingRepositoryCustom {
+
+  /**
+   * Insert one rating per customer, all with the same score, as chunked JDBC
+   * batches. Does not check for duplicates.
+   *
+   * @param tourId      the tour identifier
+   * @param score       score of every rating
+   * @param customerIds the customer identifiers
+   */
+  void insertAll(int tourId, int score, List<Integer> customerIds);
+
+  /**
+   * Insert the ratings as chunked JDBC batches. Does not check for
+   * duplicates.
+   *
+   * @param rows the ratings
+   */
+  void insertAll(List<TourRatingRow> rows);
+
+  /**
+   * Insert the rating of a customer for a tour, or replace its score and
+   * comment if there is one, in a single statement on H2 and a locking read
+   * and a write on MySQL. Concurrent upserts of the same pair are serialized
+   * by the (tour_id, customer_id) unique key, so exactly one of them creates
+   * the row.
+   *
+   * @param tourId     the tour identifier
+   * @param customerId the customer identifier
+   * @param score      score of the rating
+   * @param comment    optional comment
+   * @return whether the rating was created and the score it replaced
+   */
+  TourRatingUpsert upsert(int tourId, int customerId, Integer score, String comment);
+}
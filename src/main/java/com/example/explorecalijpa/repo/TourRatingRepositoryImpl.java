@@ -0,0 +1,131 @@
+package com.example.explorecalijpa.repo;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * JDBC implementation of the bulk TourRating writes.
+ *
+ * TourRating ids come from the database (IDENTITY), which stops Hibernate
+ * from batching inserts because it must read back every generated id. The
+ * bulk path never needs the ids, so it inserts the rows directly and lets
+ * the driver send them in batches of {@link #BATCH_SIZE}. MySQL Connector/J
+ * still executes a batch one statement at a time unless the URL sets
+ * rewriteBatchedStatements=true, as docker-compose.yml does.
+ *
+ * On H2 the upsert is one statement, a MERGE ... KEY read through OLD TABLE
+ * for the replaced score. MySQL cannot return the replaced score of an
+ * INSERT ... ON DUPLICATE KEY UPDATE without a session variable, so there
+ * the row is locked with SELECT ... FOR UPDATE and then updated, or inserted
+ * if there is none. A concurrent first rating of the same pair then fails on
+ * the unique key and the retry finds and locks its row. Both run in the
+ * caller's transaction.
+ */
+class TourRatingRepositoryImpl implements TourRatingRepositoryCustom {
+
+  static final int BATCH_SIZE = 500;
+
+  // a concurrent insert of the same pair can beat the MERGE or INSERT, the retry then updates
+  private static final int UPSERT_ATTEMPTS = 3;
+
+  private static final String H2_UPSERT = """
+      SELECT score FROM OLD TABLE (
+        MERGE INTO tour_rating (tour_id, customer_id, score, comment) KEY (tour_id, customer_id)
+        VALUES (?, ?, ?, ?))
+      """;
+
+  private static final String LOCK =
+      "SELECT score FROM tour_rating WHERE tour_id = ? AND customer_id = ? FOR UPDATE";
+
+  private static final String UPDATE =
+      "UPDATE tour_rating SET score = ?, comment = ? WHERE tour_id = ? AND customer_id = ?";
+
+  private static final String INSERT =
+      "INSERT INTO tour_rating (tour_id, customer_id, score, comment) VALUES (?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private volatile Boolean mysql;
+
+  TourRatingRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void insertAll(int tourId, int score, List<Integer> customerIds) {
+    jdbcTemplate.batchUpdate("INSERT INTO tour_rating (tour_id, customer_id, score) VALUES (?, ?, ?)",
+        customerIds, BATCH_SIZE, (ps, customerId) -> {
+          ps.setInt(1, tourId);
+          ps.setInt(2, customerId);
+          ps.setInt(3, score);
+        });
+  }
+
+  @Override
+  public void insertAll(List<TourRatingRow> rows) {
+    jdbcTemplate.batchUpdate(INSERT, rows, BATCH_SIZE, (ps, row) -> {
+          ps.setInt(1, row.tourId());
+          ps.setInt(2, row.customerId());
+          ps.setInt(3, row.score());
+          ps.setString(4, row.comment());
+        });
+  }
+
+  @Override
+  public TourRatingUpsert upsert(int tourId, int customerId, Integer score, String comment) {
+    boolean lock = isMysql();
+    for (int attempt = 1;; attempt++) {
+      try {
+        return lock ? lockAndWrite(tourId, customerId, score, comment) : merge(tourId, customerId, score, comment);
+      } catch (DuplicateKeyException e) {
+        if (attempt == UPSERT_ATTEMPTS) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  private TourRatingUpsert merge(int tourId, int customerId, Integer score, String comment) {
+    return jdbcTemplate.query(H2_UPSERT, ps -> bind(ps, tourId, customerId, score, comment),
+        rs -> rs.next() ? new TourRatingUpsert(false, rs.getObject(1, Integer.class))
+            : new TourRatingUpsert(true, null));
+  }
+
+  private TourRatingUpsert lockAndWrite(int tourId, int customerId, Integer score, String comment) {
+    List<Integer> previous = jdbcTemplate.query(LOCK, (rs, row) -> rs.getObject(1, Integer.class),
+        tourId, customerId);
+    if (previous.isEmpty()) {
+      jdbcTemplate.update(INSERT, ps -> bind(ps, tourId, customerId, score, comment));
+      return new TourRatingUpsert(true, null);
+    }
+    jdbcTemplate.update(UPDATE, new Object[] { score, comment, tourId, customerId },
+        new int[] { Types.INTEGER, Types.VARCHAR, Types.INTEGER, Types.INTEGER });
+    return new TourRatingUpsert(false, previous.get(0));
+  }
+
+  private static void bind(PreparedStatement ps, int tourId, int customerId, Integer score, String comment)
+      throws SQLException {
+    ps.setInt(1, tourId);
+    ps.setInt(2, customerId);
+    if (score == null) {
+      ps.setNull(3, Types.INTEGER);
+    } else {
+      ps.setInt(3, score);
+    }
+    ps.setString(4, comment);
+  }
+
+  private boolean isMysql() {
+    Boolean result = mysql;
+    if (result == null) {
+      result = DatabaseProduct.isMysql(jdbcTemplate);
+      mysql = result;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,12 @@
+package com.example.explorecalijpa.repo;
+
+/**
+ * A new tour_rating row for the bulk inserts.
+ *
+ * @param tourId     the tour identifier
+ * @param customerId the customer identifier
+ * @param score      score of the rating
+ * @param comment    optional comment
+ */
+public record TourRatingRow(int tourId, int customerId, int score, String comment) {
+}
@@ -0,0 +1,68 @@
+package com.example.explorecalijpa.repo;
+
+import com.example.explorecalijpa.model.TourRatingStats;
+import edu.ensign.cs460.recommendation.VersionedTourSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tour Rating Statistics Repository Interface.
+ *
+ * One row per rated tour, maintained incrementally by the TourRatingService.
+ */
+@RepositoryRestResource(exported = false)
+public interface TourRatingStatsRepository extends JpaRepository<TourRatingStats, Integer>,
+    TourRatingStatsRepositoryCustom {
+
+  /**
+   * Read the rating totals of many tours in one query.
+   *
+   * @param tourIds the tour identifiers
+   * @return the totals of the given tours that have statistics
+   */
+  @Query("""
+      select s.tourId as tourId, s.scoreSum as scoreSum, s.reviewCount as reviewCount
+      from TourRatingStats s
+      where s.tourId in :tourIds
+      """)
+  List<TourRatingTotals> findTotals(Collection<Integer> tourIds);
+
+  // ---------- Recommendation queries ----------
+
+  /**
+   * Read the summary of a tour, also once its last rating is gone, so the
+   * version of the removal is known.
+   *
+   * @param tourId the tour identifier
+   * @return the summary, a review count of 0 and no average if the tour has
+   *         no ratings left, empty if it never had any
+   */
+  @Query("""
+      select s.tourId as tourId,
+             t.title as title,
+             case when s.reviewCount > 0 then cast(s.scoreSum as Double) / s.reviewCount end as avgScore,
+             s.reviewCount as reviewCount,
+             s.version as version
+      from TourRatingStats s join Tour t on t.id = s.tourId
+      where s.tourId = :tourId
+      """)
+  Optional<VersionedTourSummary> findSummary(int tourId);
+
+  @Query("""
+      select s.tourId as tourId,
+             t.title as title,
+             cast(s.scoreSum as Double) / s.reviewCount as avgScore,
+             s.reviewCount as reviewCount,
+             s.version as version
+      from TourRatingStats s join Tour t on t.id = s.tourId
+      where s.reviewCount > 0
+      order by cast(s.scoreSum as Double) / s.reviewCount desc, s.reviewCount desc, t.title asc
+      """)
+  List<VersionedTourSummary> findTopTours(Pageable pageable);
+}
@@ -0,0 +1,20 @@
+package com.example.explorecalijpa.repo;
+
+/**
+ * Upsert of the TourRatingStatsRepository that bypasses the persistence
+ * context.
+ */
+public interface TourRatingStatsRepositoryCustom {
+
+  /**
+   * Add (or remove) ratings to the statistics of a tour, creating its row on
+   * the first rating, in a single statement. Concurrent adjustments of the
+   * same tour are serialized by the tour_id primary key, so exactly one of
+   * them creates the row and none is lost.
+   *
+   * @param tourId the tour identifier
+   * @param counts number of ratings added (positive) or removed (negative)
+   *               per score 0-5
+   */
+  void adjust(int tourId, long[] counts);
+}
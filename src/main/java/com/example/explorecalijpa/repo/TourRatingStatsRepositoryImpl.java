@@ -0,0 +1,97 @@
+package com.example.explorecalijpa.repo;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * JDBC implementation of the TourRatingStats upsert, one statement in the
+ * dialect of the database: H2's MERGE ... USING, MySQL's INSERT ... ON
+ * DUPLICATE KEY UPDATE. Every upsert bumps the version of the row.
+ */
+class TourRatingStatsRepositoryImpl implements TourRatingStatsRepositoryCustom {
+
+  // a concurrent insert of the same tour can beat the H2 MERGE, the retry then updates
+  private static final int UPSERT_ATTEMPTS = 3;
+
+  static final String H2_ADJUST = """
+      MERGE INTO tour_rating_stats s
+      USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT),
+          CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT)))
+        AS d (tour_id, score_sum, review_count, score_0, score_1, score_2, score_3, score_4, score_5)
+      ON s.tour_id = d.tour_id
+      WHEN MATCHED THEN UPDATE SET
+        score_sum = s.score_sum + d.score_sum, review_count = s.review_count + d.review_count,
+        score_0 = s.score_0 + d.score_0, score_1 = s.score_1 + d.score_1, score_2 = s.score_2 + d.score_2,
+        score_3 = s.score_3 + d.score_3, score_4 = s.score_4 + d.score_4, score_5 = s.score_5 + d.score_5,
+        version = s.version + 1
+      WHEN NOT MATCHED THEN INSERT
+        (tour_id, score_sum, review_count, score_0, score_1, score_2, score_3, score_4, score_5, version)
+        VALUES (d.tour_id, d.score_sum, d.review_count, d.score_0, d.score_1, d.score_2, d.score_3,
+          d.score_4, d.score_5, 1)
+      """;
+
+  private static final String MYSQL_ADJUST = """
+      INSERT INTO tour_rating_stats
+        (tour_id, score_sum, review_count, score_0, score_1, score_2, score_3, score_4, score_5, version)
+      VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 1)
+      ON DUPLICATE KEY UPDATE
+        score_sum = score_sum + VALUES(score_sum), review_count = review_count + VALUES(review_count),
+        score_0 = score_0 + VALUES(score_0), score_1 = score_1 + VALUES(score_1),
+        score_2 = score_2 + VALUES(score_2), score_3 = score_3 + VALUES(score_3),
+        score_4 = score_4 + VALUES(score_4), score_5 = score_5 + VALUES(score_5),
+        version = version + 1
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private volatile Boolean mysql;
+
+  TourRatingStatsRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void adjust(int tourId, long[] counts) {
+    if (isMysql()) {
+      jdbcTemplate.update(MYSQL_ADJUST, ps -> bind(ps, tourId, counts));
+      return;
+    }
+    for (int attempt = 1;; attempt++) {
+      try {
+        jdbcTemplate.update(H2_ADJUST, ps -> bind(ps, tourId, counts));
+        return;
+      } catch (DuplicateKeyException e) {
+        if (attempt == UPSERT_ATTEMPTS) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  private static void bind(PreparedStatement ps, int tourId, long[] counts) throws SQLException {
+    long scoreSum = 0;
+    long reviewCount = 0;
+    for (int score = 0; score < counts.length; score++) {
+      scoreSum += score * counts[score];
+      reviewCount += counts[score];
+    }
+    ps.setLong(1, tourId);
+    ps.setLong(2, scoreSum);
+    ps.setLong(3, reviewCount);
+    for (int score = 0; score < 6; score++) {
+      ps.setLong(4 + score, score < counts.length ? counts[score] : 0);
+    }
+  }
+
+  private boolean isMysql() {
+    Boolean result = mysql;
+    if (result == null) {
+      result = DatabaseProduct.isMysql(jdbcTemplate);
+      mysql = result;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,21 @@
+package com.example.explorecalijpa.repo;
+
+import com.example.explorecalijpa.model.TourRatingStats;
+
+/**
+ * Sum and count of the ratings of a tour, read without loading any entity.
+ */
+public interface TourRatingTotals {
+  Integer getTourId();
+
+  Long getScoreSum();
+
+  Long getReviewCount();
+
+  /**
+   * @return the average score, or null when the tour has no ratings.
+   */
+  default Double getAverage() {
+    return TourRatingStats.average(getScoreSum(), getReviewCount());
+  }
+}
@@ -0,0 +1,11 @@
+package com.example.explorecalijpa.repo;
+
+/**
+ * Outcome of upserting the rating of a customer for a tour.
+ *
+ * @param created       true if the rating was inserted, false if it replaced
+ *                      an existing one
+ * @param previousScore score of the replaced rating, null if created
+ */
+public record TourRatingUpsert(boolean created, Integer previousScore) {
+}
@@ -0,0 +1,17 @@
+package com.example.explorecalijpa.repo;
+
+/**
+ * The columns of a rating, read without hydrating the TourRating entity or
+ * its Tour.
+ */
+public interface TourRatingView {
+  Integer getId();
+
+  Integer getTourId();
+
+  Integer getCustomerId();
+
+  Integer getScore();
+
+  String getComment();
+}
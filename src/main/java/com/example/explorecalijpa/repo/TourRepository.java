@@ -1,16 +1,72 @@
 package com.example.explorecalijpa.repo;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 
 import com.example.explorecalijpa.model.Difficulty;
 import com.example.explorecalijpa.model.Tour;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.persistence.QueryHint;
 
+@RepositoryRestResource(excerptProjection = TourListing.class)
 @Tag(name = "Tours", description = "The Tour API")
 public interface TourRepository extends JpaRepository<Tour, Integer> {
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
   List<Tour> findByDifficulty(Difficulty diff);
+
+  /**
+   * Compares the foreign key column; the derived query would join
+   * tour_package to reach its code and scan tour.
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  @Query("select t from Tour t where t.tourPackage.code = :code")
   List<Tour> findByTourPackageCode(String code);
-}
\ No newline at end of file
+
+  @RestResource(exported = false)
+  List<TourListing> findListingByDifficulty(Difficulty diff);
+
+  @RestResource(exported = false)
+  @Query("""
+      select t.id as id, t.title as title, t.price as price, t.duration as duration,
+        t.difficulty as difficulty, t.region as region
+      from Tour t
+      where t.tourPackage.code = :code
+      """)
+  List<TourListing> findListingByTourPackageCode(String code);
+
+  /**
+   * The existence check of every rating operation, answered from the query
+   * cache until the tour table changes.
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  boolean existsById(Integer id);
+
+  @RestResource(exported = false)
+  @Query("select t.id from Tour t where t.id in :ids")
+  List<Integer> findExistingIds(Collection<Integer> ids);
+
+  @RestResource(exported = false)
+  @Query("""
+      select t.id as id, t.title as title, t.price as price, t.difficulty as difficulty,
+        t.region as region, t.tourPackage.code as tourPackageCode
+      from Tour t
+      """)
+  List<TourFacetView> findAllFacets();
+
+  @RestResource(exported = false)
+  @Query("""
+      select t.id as id, t.title as title, t.keywords as keywords, t.description as description,
+        t.blurb as blurb, t.bullets as bullets
+      from Tour t
+      """)
+  List<TourTextView> findAllText();
+}
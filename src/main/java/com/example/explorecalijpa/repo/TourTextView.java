@@ -0,0 +1,19 @@
+package com.example.explorecalijpa.repo;
+
+/**
+ * The searchable text of a tour, read in one query instead of loading the
+ * lazy text columns of every Tour separately.
+ */
+public interface TourTextView {
+  Integer getId();
+
+  String getTitle();
+
+  String getKeywords();
+
+  String getDescription();
+
+  String getBlurb();
+
+  String getBullets();
+}
@@ -1,7 +1,11 @@
 package com.example.explorecalijpa.web;
 
+import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
@@ -14,6 +18,10 @@ import jakarta.validation.ConstraintViolationException;
 
 @ControllerAdvice
 public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+
+  // one rating per customer and tour (V1.7), one queued rating per customer and tour (V1.9)
+  private static final List<String> UNIQUE_RATING_KEYS = List.of("uk_tour_rating_tour_customer",
+      "uk_tour_rating_outbox_tour_customer");
   
   /**
    * Leverage Exception Handler frameworf for id not found Exception.
@@ -44,6 +52,36 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     return  createResponseEntity(pd, null, HttpStatus.BAD_REQUEST, request);
   }
   
+  /**
+   * Writes rejected by a database constraint: 409 for a second rating of the
+   * same tour by a customer, 400 for the others (missing or unknown values,
+   * values too long).
+   *
+   * @param ex      DataIntegrityViolationException
+   * @param request WebRequest
+   * @return http response
+   */
+  @ExceptionHandler(DataIntegrityViolationException.class)
+  public final ResponseEntity<Object> handleDataIntegrityViolationException(
+      DataIntegrityViolationException ex, WebRequest request) {
+
+    if (ex instanceof DuplicateKeyException || violatesUniqueRating(ex)) {
+      ProblemDetail pd = ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, "Conflicts with existing data");
+      return createResponseEntity(pd, null, HttpStatus.CONFLICT, request);
+    }
+    ProblemDetail pd = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, "Violates a data constraint");
+    return createResponseEntity(pd, null, HttpStatus.BAD_REQUEST, request);
+  }
+
+  /**
+   * The drivers name the violated constraint in the message, H2 and MySQL
+   * alike.
+   */
+  private static boolean violatesUniqueRating(DataIntegrityViolationException ex) {
+    String message = (ex.getMessage() + " " + ex.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+    return UNIQUE_RATING_KEYS.stream().anyMatch(message::contains);
+  }
+
   /**
    * Leverage Exception Handler frameworf for unexpected Exceptions.
    * 
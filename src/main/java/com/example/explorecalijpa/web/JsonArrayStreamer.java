@@ -0,0 +1,44 @@
+package com.example.explorecalijpa.web;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a JSON array element by element as a producer emits them, so the
+ * response never holds more than the generator's buffer.
+ */
+final class JsonArrayStreamer {
+
+  private JsonArrayStreamer() {
+  }
+
+  /**
+   * @param objectMapper serializes the elements
+   * @param producer     emits every element to the given consumer; nothing
+   *                     is written if it fails before the first elements
+   *                     fill the buffer, so errors still map to a status
+   * @return the response body
+   */
+  static StreamingResponseBody stream(ObjectMapper objectMapper, Consumer<Consumer<Object>> producer) {
+    return out -> {
+      JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+      json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      json.writeStartArray();
+      producer.accept(element -> {
+        try {
+          json.writeObject(element);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      json.writeEndArray();
+      json.close();
+    };
+  }
+}
@@ -0,0 +1,71 @@
+package com.example.explorecalijpa.web;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.example.explorecalijpa.business.DataVersions;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves GET /packages, the Spring Data REST collection, from the
+ * VersionedResponseCache. Runs after the security filters, so only
+ * authorized requests are answered.
+ *
+ * The links in the body are absolute, so responses are stored per request
+ * URL (after the forwarded headers are applied) and Accept header.
+ */
+@Component
+public class PackagesResponseCacheFilter extends OncePerRequestFilter {
+
+  static final String PATH = "/packages";
+
+  private final VersionedResponseCache responseCache;
+
+  public PackagesResponseCacheFilter(VersionedResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !"GET".equals(request.getMethod())
+        || !PATH.equals(request.getRequestURI().substring(request.getContextPath().length()));
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    String etag = responseCache.etag(DataVersions.PACKAGES);
+    if (VersionedResponseCache.notModified(request, etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      response.setHeader(HttpHeaders.ETAG, etag);
+      response.setHeader(HttpHeaders.CACHE_CONTROL, VersionedResponseCache.CACHE_CONTROL);
+      return;
+    }
+    String query = request.getQueryString();
+    String key = request.getRequestURL() + (query == null ? "" : "?" + query)
+        + " " + request.getHeader(HttpHeaders.ACCEPT);
+    VersionedResponseCache.CachedResponse cached = responseCache.lookup(key, etag);
+    if (cached != null) {
+      responseCache.write(cached, request, response);
+      return;
+    }
+
+    ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+    chain.doFilter(request, wrapper);
+    if (wrapper.getStatus() == HttpServletResponse.SC_OK && wrapper.getContentType() != null) {
+      responseCache.store(key, DataVersions.PACKAGES, etag, wrapper.getContentType(),
+          wrapper.getContentAsByteArray());
+      wrapper.setHeader(HttpHeaders.ETAG, etag);
+      wrapper.setHeader(HttpHeaders.CACHE_CONTROL, VersionedResponseCache.CACHE_CONTROL);
+    }
+    wrapper.copyBodyToResponse();
+  }
+}
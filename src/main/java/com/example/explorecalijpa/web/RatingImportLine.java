@@ -0,0 +1,41 @@
+package com.example.explorecalijpa.web;
+
+/**
+ * One record of a ratings import, as read from an NDJSON or CSV line.
+ *
+ * @param tourId     tour identifier
+ * @param customerId customer identifier
+ * @param score      score of the rating
+ * @param comment    optional comment
+ */
+public record RatingImportLine(Integer tourId, Integer customerId, Integer score, String comment) {
+
+  /**
+   * Parse a {@code tourId,customerId,score,comment} CSV line. The comment may
+   * be quoted and contain commas.
+   *
+   * @param line the CSV line
+   * @return the record
+   * @throws IllegalArgumentException if the line is malformed
+   */
+  static RatingImportLine fromCsv(String line) {
+    String[] fields = line.split(",", 4);
+    if (fields.length < 3) {
+      throw new IllegalArgumentException("expected tourId,customerId,score[,comment]");
+    }
+    String comment = fields.length == 4 ? fields[3].strip() : "";
+    if (comment.length() >= 2 && comment.startsWith("\"") && comment.endsWith("\"")) {
+      comment = comment.substring(1, comment.length() - 1).replace("\"\"", "\"");
+    }
+    return new RatingImportLine(integer("tourId", fields[0]), integer("customerId", fields[1]),
+        integer("score", fields[2]), comment.isEmpty() ? null : comment);
+  }
+
+  private static Integer integer(String name, String value) {
+    try {
+      return value.isBlank() ? null : Integer.valueOf(value.strip());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(name + ": not a number");
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.example.explorecalijpa.web;
+
+import java.util.List;
+
+import com.example.explorecalijpa.business.RatingImportResult;
+
+/**
+ * Result of one chunk of a ratings import, one line of the import response.
+ *
+ * @param chunk     chunk number, from 1
+ * @param firstLine first line of the chunk
+ * @param lastLine  last line of the chunk
+ * @param imported  number of ratings created
+ * @param rejected  the records that were not imported
+ * @param error     why the chunk was rolled back, null if it committed
+ */
+public record RatingImportReport(int chunk, long firstLine, long lastLine, int imported,
+    List<RatingImportResult.Rejected> rejected, String error) {
+}
@@ -0,0 +1,59 @@
+package com.example.explorecalijpa.web;
+
+import java.io.IOException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.example.explorecalijpa.config.StatementMonitor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Counts the JDBC statements of each HTTP request into the
+ * {@code http.server.requests.statements} summary, tagged with method and
+ * uri like {@code http.server.requests}, and has the StatementMonitor log
+ * N+1 suspects. Statements run by a streamed response body on another
+ * thread are not counted. Off with the StatementMonitor
+ * ({@code sql.monitor.enabled=false}).
+ */
+@Component
+@ConditionalOnProperty(name = "sql.monitor.enabled", matchIfMissing = true)
+public class StatementCountFilter extends OncePerRequestFilter {
+
+  static final String METRIC = "http.server.requests.statements";
+
+  private final StatementMonitor statementMonitor;
+  private final MeterRegistry registry;
+
+  public StatementCountFilter(StatementMonitor statementMonitor, MeterRegistry registry) {
+    this.statementMonitor = statementMonitor;
+    this.registry = registry;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    statementMonitor.beginRequest();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+      String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+      int statements = statementMonitor.endRequest(request.getMethod(), uri);
+      DistributionSummary.builder(METRIC)
+          .tag("method", request.getMethod())
+          .tag("uri", uri)
+          .description("JDBC statements executed per request.")
+          .register(registry)
+          .record(statements);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.example.explorecalijpa.web;
+
+import java.util.Set;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.explorecalijpa.business.TourCatalog;
+import com.example.explorecalijpa.business.TourFilter;
+import com.example.explorecalijpa.business.TourFilterResult;
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+
+import io.swagger.v3.oas.annotations.Operation;
+
+/**
+ * Faceted filtering of the tours, served from the TourCatalog. Repeat a
+ * parameter to select several values of a facet.
+ *
+ * Security expectations (from SecurityConfig):
+ * - USER can GET (reads)
+ */
+@RestController
+@RequestMapping("/tours/filter")
+@Validated
+public class TourFilterController {
+
+  private static final Logger log = LoggerFactory.getLogger(TourFilterController.class);
+
+  private final TourCatalog tourCatalog;
+
+  public TourFilterController(TourCatalog tourCatalog) {
+    this.tourCatalog = tourCatalog;
+  }
+
+  @GetMapping
+  @Operation(summary = "Filter Tours by difficulty, region, package and price, with facet counts")
+  public TourFilterResult filter(
+      @RequestParam(name = "difficulty", required = false) Set<Difficulty> difficulties,
+      @RequestParam(name = "region", required = false) Set<Region> regions,
+      @RequestParam(name = "package", required = false) Set<String> tourPackageCodes,
+      @RequestParam(name = "minPrice", required = false) @Min(0) Integer minPrice,
+      @RequestParam(name = "maxPrice", required = false) @Min(0) Integer maxPrice,
+      @RequestParam(name = "offset", defaultValue = "0") @Min(0) int offset,
+      @RequestParam(name = "limit", defaultValue = "20") @Min(1) @Max(100) int limit) {
+    log.info("GET /tours/filter difficulty={} region={} package={} price={}..{}", difficulties, regions,
+        tourPackageCodes, minPrice, maxPrice);
+    return tourCatalog.filter(new TourFilter(difficulties, regions, tourPackageCodes, minPrice, maxPrice),
+        offset, limit);
+  }
+}
@@ -1,15 +1,26 @@
 package com.example.explorecalijpa.web;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -22,10 +33,17 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.example.explorecalijpa.business.DataVersions;
+import com.example.explorecalijpa.business.RatingWriteBehind;
+import com.example.explorecalijpa.business.ScoreDistribution;
 import com.example.explorecalijpa.business.TourRatingService;
 import com.example.explorecalijpa.config.FeatureFlagService;
 import com.example.explorecalijpa.model.TourRating;
+import com.example.explorecalijpa.repo.TourRatingView;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.swagger.v3.oas.annotations.Operation;
 
@@ -44,11 +62,24 @@ public class TourRatingController {
 
   private final TourRatingService tourRatingService;
   private final FeatureFlagService featureFlagService;
+  private final ObjectMapper objectMapper;
+  private final ObjectProvider<RatingWriteBehind> writeBehind;
+  private final VersionedResponseCache responseCache;
+  private final int defaultPageSize;
+  private final int maxPageSize;
 
   public TourRatingController(TourRatingService tourRatingService,
-      FeatureFlagService featureFlagService) {
+      FeatureFlagService featureFlagService, ObjectMapper objectMapper,
+      ObjectProvider<RatingWriteBehind> writeBehind, VersionedResponseCache responseCache,
+      @Value("${ratings.page.default-size:100}") int defaultPageSize,
+      @Value("${ratings.page.max-size:1000}") int maxPageSize) {
     this.tourRatingService = tourRatingService;
     this.featureFlagService = featureFlagService;
+    this.objectMapper = objectMapper;
+    this.writeBehind = writeBehind;
+    this.responseCache = responseCache;
+    this.defaultPageSize = Math.min(defaultPageSize, maxPageSize);
+    this.maxPageSize = maxPageSize;
   }
 
   /** Guard: ensures ratings endpoints are enabled via feature flag. */
@@ -58,60 +89,143 @@ public class TourRatingController {
     }
   }
 
+  /**
+   * Opaque continuation token: the tour and the id of the last rating of a
+   * page, base64url encoded.
+   */
+  private static String encodeCursor(int tourId, int lastId) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString((tourId + ":" + lastId).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static int decodeCursor(int tourId, String cursor) {
+    try {
+      String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+      if (parts.length == 2 && Integer.parseInt(parts[0]) == tourId) {
+        return Integer.parseInt(parts[1]);
+      }
+    } catch (IllegalArgumentException e) {
+      // not base64 or not numbers, rejected below
+    }
+    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+  }
+
   // --------- READS (USER allowed) ---------
 
+  /**
+   * All the ratings of a tour without size and cursor, as before paging;
+   * one page with either, the next page in the Link header.
+   */
   @GetMapping
-  @Operation(summary = "Lookup All Ratings for a Tour")
-  public List<RatingDto> getAllRatingsForTour(@PathVariable("tourId") int tourId) {
+  @Operation(summary = "Lookup All Ratings for a Tour, or a Page of them with size or cursor; "
+      + "the next page is in the Link header")
+  public ResponseEntity<List<RatingDto>> getAllRatingsForTour(@PathVariable("tourId") int tourId,
+      @RequestParam(name = "size", required = false) Integer size,
+      @RequestParam(name = "cursor", required = false) String cursor) {
+    checkRatingsEnabled();
+    log.info("GET /tours/{}/ratings size={} cursor={}", tourId, size, cursor);
+    if (size == null && cursor == null) {
+      List<RatingDto> all = new ArrayList<>();
+      tourRatingService.streamRatings(tourId, r -> all.add(new RatingDto(r)));
+      return ResponseEntity.ok(all);
+    }
+    int pageSize = size == null ? defaultPageSize : Math.min(Math.max(size, 1), maxPageSize);
+    int afterId = cursor == null ? 0 : decodeCursor(tourId, cursor);
+    // one extra row tells whether there is a next page
+    List<TourRatingView> ratings = tourRatingService.lookupRatings(tourId, afterId, pageSize + 1);
+    List<RatingDto> page = ratings.stream().limit(pageSize).map(RatingDto::new).toList();
+    if (ratings.size() <= pageSize) {
+      return ResponseEntity.ok(page);
+    }
+    String next = ServletUriComponentsBuilder.fromCurrentRequest()
+        .replaceQueryParam("size", pageSize)
+        .replaceQueryParam("cursor", encodeCursor(tourId, ratings.get(pageSize - 1).getId()))
+        .toUriString();
+    return ResponseEntity.ok()
+        .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+        .body(page);
+  }
+
+  @GetMapping(params = "stream=true", produces = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(summary = "Lookup All Ratings for a Tour, streamed from a database cursor")
+  public StreamingResponseBody streamAllRatingsForTour(@PathVariable("tourId") int tourId) {
     checkRatingsEnabled();
-    log.info("GET /tours/{}/ratings", tourId);
-    List<TourRating> tourRatings = tourRatingService.lookupRatings(tourId);
-    return tourRatings.stream().map(RatingDto::new).toList();
+    log.info("GET /tours/{}/ratings?stream=true", tourId);
+    return JsonArrayStreamer.stream(objectMapper, sink -> tourRatingService.streamRatings(tourId,
+        r -> sink.accept(new RatingDto(r))));
   }
 
+  /**
+   * {"average": score}, served from the response cache until a rating of
+   * the tour changes; 304 on a current If-None-Match.
+   */
   @GetMapping("/average")
   @Operation(summary = "Get Average Score for a Tour")
-  public Map<String, Double> getAverage(@PathVariable("tourId") int tourId) {
+  public ResponseEntity<byte[]> getAverage(@PathVariable("tourId") int tourId, HttpServletRequest request) {
     checkRatingsEnabled();
     log.info("GET /tours/{}/ratings/average", tourId);
-    return Map.of("average", tourRatingService.getAverageScore(tourId));
+    return responseCache.json(request, DataVersions.tourRatings(tourId),
+        () -> Map.of("average", tourRatingService.getAverageScore(tourId)));
+  }
+
+  @GetMapping("/distribution")
+  @Operation(summary = "Get the Score Distribution of a Tour")
+  public ScoreDistribution getScoreDistribution(@PathVariable("tourId") int tourId) {
+    checkRatingsEnabled();
+    log.info("GET /tours/{}/ratings/distribution", tourId);
+    return tourRatingService.getScoreDistribution(tourId);
   }
 
   // --------- WRITES (ADMIN required) ---------
 
+  /**
+   * Create a rating. In write-behind mode the rating is queued and 202
+   * Accepted returned, 409 if it is already queued, 503 with Retry-After when
+   * the queue is full. The tour and earlier ratings are only checked when
+   * the queue is written, so no SELECT runs per request.
+   */
   @PostMapping
-  @ResponseStatus(HttpStatus.CREATED)
   @Operation(summary = "Create a Rating for a Tour")
-  public RatingDto createTourRating(@PathVariable("tourId") int tourId,
+  public ResponseEntity<RatingDto> createTourRating(@PathVariable("tourId") int tourId,
       @Valid @RequestBody RatingDto ratingDto) {
     checkRatingsEnabled();
     log.info("POST /tours/{}/ratings  body={}", tourId, ratingDto);
+    RatingWriteBehind queue = writeBehind.getIfAvailable();
+    if (queue != null) {
+      if (ratingDto.getScore() == null) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "score must not be null");
+      }
+      if (!queue.offer(tourId, ratingDto.getCustomerId(), ratingDto.getScore(), ratingDto.getComment())) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+      }
+      return ResponseEntity.accepted().body(ratingDto);
+    }
     TourRating rating = tourRatingService.createNew(
         tourId,
         ratingDto.getCustomerId(),
         ratingDto.getScore(),
         ratingDto.getComment());
-    return new RatingDto(rating);
+    return ResponseEntity.status(HttpStatus.CREATED).body(new RatingDto(rating));
   }
 
   @PutMapping
-  @ResponseStatus(HttpStatus.OK)
-  @Operation(summary = "Update a Rating (PUT)")
-  public void updateWithPut(@PathVariable("tourId") int tourId,
+  @Operation(summary = "Create or Replace a Rating (PUT)")
+  public ResponseEntity<Void> updateWithPut(@PathVariable("tourId") int tourId,
       @Valid @RequestBody RatingDto ratingDto) {
     checkRatingsEnabled();
     log.info("PUT /tours/{}/ratings  body={}", tourId, ratingDto);
-    tourRatingService.update(
+    boolean created = tourRatingService.update(
         tourId,
         ratingDto.getCustomerId(),
         ratingDto.getScore(),
         ratingDto.getComment());
+    return ResponseEntity.status(created ? HttpStatus.CREATED : HttpStatus.OK).build();
   }
 
   @PatchMapping
   @Operation(summary = "Partially Update a Rating (PATCH)")
   public RatingDto updateWithPatch(@PathVariable("tourId") int tourId,
-      @RequestBody RatingDto ratingDto) {
+      @Valid @RequestBody RatingDto ratingDto) {
     checkRatingsEnabled();
     log.info("PATCH /tours/{}/ratings  body={}", tourId, ratingDto);
     // Your RatingDto likely has nullable getters (no Optional methods).
@@ -138,7 +252,7 @@ public class TourRatingController {
   @ResponseStatus(HttpStatus.CREATED)
   @Operation(summary = "Give Many Tours Same Score")
   public void createManyTourRatings(@PathVariable("tourId") int tourId,
-      @RequestParam("score") int score,
+      @RequestParam("score") @Min(0) @Max(5) int score,
       @RequestBody List<Integer> customers) {
     checkRatingsEnabled();
     log.info("POST /tours/{}/ratings/batch score={} customers={}", tourId, score, customers);
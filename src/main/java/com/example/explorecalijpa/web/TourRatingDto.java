@@ -0,0 +1,18 @@
+package com.example.explorecalijpa.web;
+
+import com.example.explorecalijpa.repo.TourRatingView;
+
+/**
+ * A rating together with its tour, for listings across tours.
+ *
+ * @param tourId     tour identifier
+ * @param customerId customer identifier
+ * @param score      score of the rating
+ * @param comment    optional comment
+ */
+public record TourRatingDto(Integer tourId, Integer customerId, Integer score, String comment) {
+
+  static TourRatingDto of(TourRatingView view) {
+    return new TourRatingDto(view.getTourId(), view.getCustomerId(), view.getScore(), view.getComment());
+  }
+}
@@ -0,0 +1,195 @@
+package com.example.explorecalijpa.web;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.explorecalijpa.business.RatingImport;
+import com.example.explorecalijpa.business.RatingImportResult;
+import com.example.explorecalijpa.business.TourRatingService;
+import com.example.explorecalijpa.config.FeatureFlagService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.swagger.v3.oas.annotations.Operation;
+
+/**
+ * Streaming bulk import of tour ratings.
+ *
+ * The body is read line by line and imported in chunks, each chunk in its
+ * own transaction, and one RatingImportReport per chunk is streamed back as
+ * NDJSON. Only one chunk is held in memory at a time.
+ *
+ * Security expectations (from SecurityConfig):
+ * - ADMIN required for POST (writes)
+ */
+@RestController
+@RequestMapping("/tours/ratings")
+@Validated
+public class TourRatingImportController {
+
+  private static final Logger log = LoggerFactory.getLogger(TourRatingImportController.class);
+
+  static final String TEXT_CSV_VALUE = "text/csv";
+
+  private final TourRatingService tourRatingService;
+  private final FeatureFlagService featureFlagService;
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
+
+  public TourRatingImportController(TourRatingService tourRatingService,
+      FeatureFlagService featureFlagService, ObjectMapper objectMapper, Validator validator) {
+    this.tourRatingService = tourRatingService;
+    this.featureFlagService = featureFlagService;
+    this.objectMapper = objectMapper;
+    this.validator = validator;
+  }
+
+  @PostMapping(value = "/import", consumes = { MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE },
+      produces = MediaType.APPLICATION_NDJSON_VALUE)
+  @Operation(summary = "Import Ratings from NDJSON or CSV (tourId,customerId,score,comment)")
+  public StreamingResponseBody importRatings(
+      @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+      @RequestParam(name = "chunkSize", defaultValue = "1000") @Min(1) @Max(5000) int chunkSize,
+      InputStream body) {
+    if (!featureFlagService.isEnabled("tour-ratings")) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Tour ratings feature disabled");
+    }
+    boolean csv = !MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType);
+    log.info("POST /tours/ratings/import format={} chunkSize={}", csv ? "csv" : "ndjson", chunkSize);
+    return out -> {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+      Chunk chunk = new Chunk(1);
+      long line = 0;
+      String text;
+      while ((text = reader.readLine()) != null) {
+        line++;
+        if (text.isBlank() || (csv && line == 1 && text.startsWith("tourId"))) {
+          continue;
+        }
+        chunk.add(line, text, csv);
+        if (chunk.size() == chunkSize) {
+          if (!chunk.commit(out)) {
+            return;
+          }
+          chunk = new Chunk(chunk.number + 1);
+        }
+      }
+      if (chunk.size() > 0) {
+        chunk.commit(out);
+      }
+    };
+  }
+
+  /**
+   * The records of one chunk, validated as they are added.
+   */
+  private final class Chunk {
+    private final int number;
+    private final List<RatingImport> valid = new ArrayList<>();
+    private final List<RatingImportResult.Rejected> rejected = new ArrayList<>();
+    private long firstLine;
+    private long lastLine;
+
+    Chunk(int number) {
+      this.number = number;
+    }
+
+    int size() {
+      return valid.size() + rejected.size();
+    }
+
+    void add(long line, String text, boolean csv) {
+      if (size() == 0) {
+        firstLine = line;
+      }
+      lastLine = line;
+      RatingImportLine record;
+      try {
+        record = csv ? RatingImportLine.fromCsv(text) : objectMapper.readValue(text, RatingImportLine.class);
+      } catch (IllegalArgumentException | JsonProcessingException e) {
+        rejected.add(new RatingImportResult.Rejected(line, "Malformed record: " + e.getMessage()));
+        return;
+      }
+      String violations = validate(record);
+      if (violations != null) {
+        rejected.add(new RatingImportResult.Rejected(line, violations));
+      } else {
+        valid.add(new RatingImport(line, record.tourId(), record.customerId(), record.score(),
+            record.comment()));
+      }
+    }
+
+    /**
+     * Import the valid records and write the chunk report.
+     *
+     * @return false if the chunk failed and the import must stop
+     */
+    boolean commit(OutputStream out) throws IOException {
+      RatingImportReport report;
+      try {
+        RatingImportResult result = tourRatingService.importRatings(valid);
+        List<RatingImportResult.Rejected> all = new ArrayList<>(rejected);
+        all.addAll(result.rejected());
+        all.sort((a, b) -> Long.compare(a.line(), b.line()));
+        report = new RatingImportReport(number, firstLine, lastLine, result.imported(), all, null);
+      } catch (RuntimeException e) {
+        log.warn("Import of chunk {} failed", number, e);
+        report = new RatingImportReport(number, firstLine, lastLine, 0, rejected, e.getMessage());
+      }
+      out.write(objectMapper.writeValueAsBytes(report));
+      out.write('\n');
+      out.flush();
+      return report.error() == null;
+    }
+  }
+
+  /**
+   * Apply the RatingDto rules, plus a required tour and score.
+   *
+   * @return the violations, null if the record is valid
+   */
+  private String validate(RatingImportLine record) {
+    List<String> violations = new ArrayList<>();
+    if (record.tourId() == null) {
+      violations.add("tourId: must not be null");
+    }
+    if (record.score() == null) {
+      violations.add("score: must not be null");
+    }
+    Set<ConstraintViolation<RatingDto>> dtoViolations = validator.validate(
+        new RatingDto(record.score(), record.comment(), record.customerId()));
+    violations.addAll(dtoViolations.stream()
+        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+        .sorted()
+        .collect(Collectors.toList()));
+    return violations.isEmpty() ? null : String.join(", ", violations);
+  }
+}
@@ -0,0 +1,76 @@
+package com.example.explorecalijpa.web;
+
+import java.util.List;
+import java.util.Map;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.explorecalijpa.business.TourRatingService;
+import com.example.explorecalijpa.config.FeatureFlagService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.swagger.v3.oas.annotations.Operation;
+
+/**
+ * Rating endpoints across all tours.
+ *
+ * Security expectations (from SecurityConfig):
+ * - USER can GET (reads)
+ */
+@RestController
+@RequestMapping("/tours/ratings")
+@Validated
+public class TourRatingsController {
+
+  private static final Logger log = LoggerFactory.getLogger(TourRatingsController.class);
+
+  private final TourRatingService tourRatingService;
+  private final FeatureFlagService featureFlagService;
+  private final ObjectMapper objectMapper;
+
+  public TourRatingsController(TourRatingService tourRatingService,
+      FeatureFlagService featureFlagService, ObjectMapper objectMapper) {
+    this.tourRatingService = tourRatingService;
+    this.featureFlagService = featureFlagService;
+    this.objectMapper = objectMapper;
+  }
+
+  /** Guard: ensures ratings endpoints are enabled via feature flag. */
+  private void checkRatingsEnabled() {
+    if (!featureFlagService.isEnabled("tour-ratings")) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Tour ratings feature disabled");
+    }
+  }
+
+  @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(summary = "Lookup All Ratings of all Tours, streamed")
+  public StreamingResponseBody getAllRatings() {
+    checkRatingsEnabled();
+    log.info("GET /tours/ratings");
+    return JsonArrayStreamer.stream(objectMapper,
+        sink -> tourRatingService.streamAll(r -> sink.accept(TourRatingDto.of(r))));
+  }
+
+  @GetMapping("/averages")
+  @Operation(summary = "Get Average Scores for many Tours")
+  public Map<Integer, Double> getAverages(
+      @RequestParam("ids") @NotEmpty @Size(max = 1000) List<Integer> tourIds) {
+    checkRatingsEnabled();
+    log.info("GET /tours/ratings/averages ids={}", tourIds);
+    return tourRatingService.getAverageScores(tourIds);
+  }
+}
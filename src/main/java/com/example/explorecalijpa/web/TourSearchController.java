@@ -0,0 +1,53 @@
+package com.example.explorecalijpa.web;
+
+import java.util.List;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.explorecalijpa.business.TourSearchHit;
+import com.example.explorecalijpa.business.TourSearchIndex;
+
+import io.swagger.v3.oas.annotations.Operation;
+
+/**
+ * Full-text search of the tours, served from the TourSearchIndex.
+ *
+ * Takes /tours/search over from the Spring Data REST search resource; the
+ * query methods stay at /tours/search/findBy...
+ *
+ * Security expectations (from SecurityConfig):
+ * - USER can GET (reads)
+ */
+@RestController
+@RequestMapping("/tours/search")
+@Validated
+public class TourSearchController {
+
+  private static final Logger log = LoggerFactory.getLogger(TourSearchController.class);
+
+  private final TourSearchIndex tourSearchIndex;
+
+  public TourSearchController(TourSearchIndex tourSearchIndex) {
+    this.tourSearchIndex = tourSearchIndex;
+  }
+
+  @GetMapping
+  @Operation(summary = "Search Tours by title, keywords, description, blurb and bullets")
+  public List<TourSearchHit> search(@RequestParam("q") @NotBlank @Size(max = 200) String query,
+      @RequestParam(name = "limit", defaultValue = "10") @Min(1) @Max(100) int limit) {
+    log.info("GET /tours/search q={} limit={}", query, limit);
+    return tourSearchIndex.search(query, limit);
+  }
+}
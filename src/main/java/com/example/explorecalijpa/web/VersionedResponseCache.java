@@ -0,0 +1,247 @@
+package com.example.explorecalijpa.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.example.explorecalijpa.business.DataVersions;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serialized responses of hot read endpoints, kept as bytes (and gzipped
+ * bytes, for bodies of at least {@code responses.cache.gzip-min-bytes})
+ * under the DataVersions version of the resource they were built from.
+ *
+ * The ETag is the version. A request whose If-None-Match holds it is
+ * answered 304 without building the body; any other request for an
+ * unchanged resource gets the stored bytes. A version bump makes every
+ * stored response of the resource stale. A body is only stored when the
+ * version is the same after building it as before, so a change committed
+ * while it was built can never leave it under the newer version. Bounded to
+ * {@code responses.cache.max-entries}, least recently used first out.
+ *
+ * Hits, misses and size are published under the standard Micrometer
+ * {@code cache.*} meters with {@code cache=responses}.
+ */
+@Component
+public class VersionedResponseCache implements MeterBinder {
+
+  static final String CACHE_CONTROL = "no-cache, private";
+  static final String CACHE_NAME = "responses";
+
+  private final DataVersions versions;
+  private final ObjectMapper objectMapper;
+  private final int gzipMinBytes;
+  private final Map<String, CachedResponse> entries;
+
+  private long hits;
+  private long misses;
+
+  public VersionedResponseCache(DataVersions versions, ObjectMapper objectMapper,
+      @Value("${responses.cache.max-entries:10000}") int maxEntries,
+      @Value("${responses.cache.gzip-min-bytes:1024}") int gzipMinBytes) {
+    this.versions = versions;
+    this.objectMapper = objectMapper;
+    this.gzipMinBytes = gzipMinBytes;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Answer a GET with the JSON of the body, keyed by its path and query.
+   *
+   * @param request  the request
+   * @param resource the DataVersions resource the body is built from
+   * @param body     builds the body, only called when nothing stored is
+   *                 current
+   * @return 304, or 200 with the stored or newly serialized body
+   */
+  public ResponseEntity<byte[]> json(HttpServletRequest request, String resource, Supplier<?> body) {
+    String etag = etag(resource);
+    if (notModified(request, etag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+          .header(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL).build();
+    }
+    String key = key(request);
+    CachedResponse cached = lookup(key, etag);
+    if (cached == null) {
+      try {
+        cached = store(key, resource, etag, MediaType.APPLICATION_JSON_VALUE,
+            objectMapper.writeValueAsBytes(body.get()));
+      } catch (JsonProcessingException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    boolean gzip = cached.gzip() != null && acceptsGzip(request);
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .eTag(etag)
+        .header(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL)
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+        .contentType(MediaType.parseMediaType(cached.contentType()));
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    return response.body(gzip ? cached.gzip() : cached.identity());
+  }
+
+  /**
+   * @return the current ETag of the resource.
+   */
+  String etag(String resource) {
+    return "W/\"" + Long.toHexString(versions.epoch()) + "-" + versions.current(resource) + "\"";
+  }
+
+  /**
+   * @return the stored response, null if there is none for this ETag.
+   */
+  CachedResponse lookup(String key, String etag) {
+    synchronized (entries) {
+      CachedResponse cached = entries.get(key);
+      if (cached != null && cached.etag().equals(etag)) {
+        hits++;
+        return cached;
+      }
+      misses++;
+      return null;
+    }
+  }
+
+  /**
+   * Store a response built from the resource at the version of the ETag,
+   * unless the resource has changed since.
+   *
+   * @return the response, stored or not
+   */
+  CachedResponse store(String key, String resource, String etag, String contentType, byte[] body) {
+    CachedResponse cached = new CachedResponse(etag, contentType, body,
+        body.length >= gzipMinBytes ? gzip(body) : null);
+    if (etag.equals(etag(resource))) {
+      synchronized (entries) {
+        entries.put(key, cached);
+      }
+    }
+    return cached;
+  }
+
+  /**
+   * Write a stored response.
+   */
+  void write(CachedResponse cached, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    boolean gzip = cached.gzip() != null && acceptsGzip(request);
+    byte[] body = gzip ? cached.gzip() : cached.identity();
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setHeader(HttpHeaders.ETAG, cached.etag());
+    response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    response.setContentType(cached.contentType());
+    if (gzip) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("cache.gets", this, c -> c.read(true))
+        .tag("cache", CACHE_NAME).tag("result", "hit")
+        .description("The number of times cache lookup methods have returned a cached value.")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", this, c -> c.read(false))
+        .tag("cache", CACHE_NAME).tag("result", "miss")
+        .description("The number of times cache lookup methods have returned an uncached value.")
+        .register(registry);
+    Gauge.builder("cache.size", this, VersionedResponseCache::size)
+        .tag("cache", CACHE_NAME)
+        .description("The number of entries in this cache.")
+        .register(registry);
+  }
+
+  private double read(boolean hit) {
+    synchronized (entries) {
+      return hit ? hits : misses;
+    }
+  }
+
+  static boolean notModified(HttpServletRequest request, String etag) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    String opaque = etag.substring(2);
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      // weak comparison
+      if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(opaque)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static String key(HttpServletRequest request) {
+    String query = request.getQueryString();
+    return query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query;
+  }
+
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+  }
+
+  private static byte[] gzip(byte[] body) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(body);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * A serialized response.
+   *
+   * @param etag        the version it was built from
+   * @param contentType its content type
+   * @param identity    the body
+   * @param gzip        the body gzipped, null if too small to bother
+   */
+  record CachedResponse(String etag, String contentType, byte[] identity, byte[] gzip) {
+  }
+}
@@ -0,0 +1,83 @@
+package edu.ensign.cs460.recommendation;
+
+import com.example.explorecalijpa.repo.TourRatingRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the tours each customer has rated, one bitmap of tour
+ * ids per customer.
+ *
+ * Tour ids are small and dense, so a {@link BitSet} sized to the highest
+ * rated id is already compact (one bit per tour). Bitmaps are copied on
+ * write, so a bitmap returned by {@link #ratedBy(int)} never changes.
+ */
+@Component
+public class CustomerRatedToursIndex {
+
+  private static final BitSet NONE = new BitSet(0);
+
+  private final TourRatingRepository repo;
+  private volatile Map<Integer, BitSet> ratedTours = new ConcurrentHashMap<>();
+
+  public CustomerRatedToursIndex(TourRatingRepository repo) {
+    this.repo = repo;
+  }
+
+  /**
+   * @param customerId the customer
+   * @return the ids of the tours rated by the customer, must not be modified.
+   */
+  public BitSet ratedBy(int customerId) {
+    return ratedTours.getOrDefault(customerId, NONE);
+  }
+
+  /**
+   * @return number of customers with at least one rating.
+   */
+  public int customers() {
+    return ratedTours.size();
+  }
+
+  /**
+   * Reload the index from all the ratings in a single streamed query.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public synchronized void rebuild() {
+    Map<Integer, BitSet> next = new ConcurrentHashMap<>();
+    try (Stream<RatedTour> rows = repo.streamRatedTours()) {
+      rows.forEach(r -> {
+        if (r.getCustomerId() != null && r.getTourId() != null) {
+          next.computeIfAbsent(r.getCustomerId(), c -> new BitSet()).set(r.getTourId());
+        }
+      });
+    }
+    ratedTours = next;
+  }
+
+  /**
+   * Record that customers rated, or no longer rated, a tour.
+   *
+   * @param tourId      the tour
+   * @param customerIds the customers
+   * @param rated       true if the customers now rated the tour
+   */
+  synchronized void apply(int tourId, Collection<Integer> customerIds, boolean rated) {
+    for (Integer customerId : customerIds) {
+      ratedTours.compute(customerId, (c, bits) -> {
+        BitSet next = bits == null ? new BitSet() : (BitSet) bits.clone();
+        next.set(tourId, rated);
+        return next.isEmpty() ? null : next;
+      });
+    }
+  }
+}
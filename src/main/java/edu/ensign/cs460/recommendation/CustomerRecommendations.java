@@ -0,0 +1,11 @@
+package edu.ensign.cs460.recommendation;
+
+import java.util.List;
+
+/**
+ * The recommendations of one customer, one line of the batch response.
+ */
+public record CustomerRecommendations(
+    Integer customerId,
+    List<TourRecommendation> recommendations) {
+}
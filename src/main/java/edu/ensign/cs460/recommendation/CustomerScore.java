@@ -0,0 +1,9 @@
+package edu.ensign.cs460.recommendation;
+
+public interface CustomerScore {
+  Integer getCustomerId();
+
+  Integer getTourId();
+
+  Integer getScore();
+}
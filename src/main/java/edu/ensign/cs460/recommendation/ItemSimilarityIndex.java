@@ -0,0 +1,384 @@
+package edu.ensign.cs460.recommendation;
+
+import com.example.explorecalijpa.repo.TourRatingRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Item-item collaborative filtering over the (customer, tour, score) rating
+ * matrix.
+ *
+ * Each tour keeps its {@code neighbours} most similar tours by adjusted
+ * cosine similarity (scores centered on the customer's mean). The mean is
+ * damped towards the mean of all ratings by {@link #MEAN_DAMPING} ratings,
+ * so a customer with a single rating, or only equal ones, still likes what
+ * is above average and dislikes what is below it. The model is
+ * held in primitive arrays, computed per tour in parallel on the fork-join
+ * pool and rebuilt periodically in the background; readers always see a
+ * complete, immutable model.
+ */
+@Component
+public class ItemSimilarityIndex {
+
+  private static final int[] NONE = new int[0];
+
+  // ratings' worth of the overall mean added to every customer's mean
+  static final float MEAN_DAMPING = 2;
+
+  private final TourRatingRepository repo;
+  private final int neighbours;
+  private volatile Model model = Model.EMPTY;
+
+  public ItemSimilarityIndex(TourRatingRepository repo,
+      @Value("${recommendations.item-item.neighbours:20}") int neighbours) {
+    this.repo = repo;
+    this.neighbours = neighbours;
+  }
+
+  /**
+   * Tours similar to the ones the customer rated, best first, without the
+   * rated tours themselves. Every rated tour contributes its similarity to
+   * each of its k neighbours weighted by the customer's centered score, so
+   * the neighbours of a tour the customer disliked count against a tour.
+   * Runs in O(r k log(r k)) for r rated tours, whatever the number of tours.
+   *
+   * @param customerId the customer
+   * @return the tour ids, empty if the customer was not rated when the model
+   *         was built or none of the rated tours has neighbours.
+   */
+  public int[] recommend(int customerId) {
+    Model m = model;
+    int c = Arrays.binarySearch(m.customerIds, customerId);
+    if (c < 0) {
+      return NONE;
+    }
+    // one contribution per (rated tour, neighbour), so the work and memory
+    // depend on the customer's ratings and k, not on the number of tours
+    int from = m.customerOffsets[c];
+    int to = m.customerOffsets[c + 1];
+    int size = 0;
+    for (int r = from; r < to; r++) {
+      size += m.neighbourCounts[m.customerItems[r]];
+    }
+    long[] contributions = new long[size];
+    float[] values = new float[size];
+    int found = 0;
+    for (int r = from; r < to; r++) {
+      int item = m.customerItems[r];
+      float weight = m.customerDeviations[r];
+      for (int n = item * m.neighbours, end = n + m.neighbourCounts[item]; n < end; n++) {
+        values[found] = m.neighbourSimilarities[n] * weight;
+        contributions[found] = ((long) m.neighbourItems[n] << 32) | found;
+        found++;
+      }
+    }
+    // grouped by neighbour, each group still in the order it was added
+    Arrays.sort(contributions);
+    int[] rated = Arrays.copyOfRange(m.customerItems, from, to);
+    Arrays.sort(rated);
+
+    // positive scores only, best first, ties by tour id; the bits of a
+    // positive float order like the float itself
+    long[] ranked = new long[found];
+    int positive = 0;
+    for (int i = 0; i < found;) {
+      int other = (int) (contributions[i] >> 32);
+      float s = 0;
+      for (; i < found && (int) (contributions[i] >> 32) == other; i++) {
+        s += values[(int) contributions[i]];
+      }
+      if (s > 0 && Arrays.binarySearch(rated, other) < 0) {
+        ranked[positive++] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(s)) << 32)
+            | m.tourIds[other];
+      }
+    }
+    Arrays.sort(ranked, 0, positive);
+    int[] out = new int[positive];
+    for (int i = 0; i < positive; i++) {
+      out[i] = (int) ranked[i];
+    }
+    return out;
+  }
+
+  /**
+   * @return number of tours in the model.
+   */
+  public int tours() {
+    return model.tourIds.length;
+  }
+
+  /**
+   * Rebuild the model from all the ratings. Runs in the background on
+   * startup and then every {@code recommendations.item-item.rebuild-interval}.
+   */
+  @Scheduled(fixedDelayString = "${recommendations.item-item.rebuild-interval:PT15M}")
+  @Transactional(readOnly = true)
+  public void rebuild() {
+    Ratings ratings = new Ratings();
+    try (Stream<CustomerScore> rows = repo.streamScores()) {
+      rows.forEach(r -> {
+        if (r.getCustomerId() != null && r.getTourId() != null && r.getTourId() >= 0
+            && r.getScore() != null) {
+          ratings.add(r.getCustomerId(), r.getTourId(), r.getScore());
+        }
+      });
+    }
+    model = build(ratings, neighbours);
+  }
+
+  static Model build(Ratings ratings, int neighbours) {
+    int n = ratings.size;
+    if (n == 0) {
+      return Model.EMPTY;
+    }
+
+    // dense tour indexes
+    int maxTour = 0;
+    for (int i = 0; i < n; i++) {
+      maxTour = Math.max(maxTour, ratings.tours[i]);
+    }
+    int[] itemOf = new int[maxTour + 1];
+    Arrays.fill(itemOf, -1);
+    int items = 0;
+    for (int i = 0; i < n; i++) {
+      if (itemOf[ratings.tours[i]] < 0) {
+        itemOf[ratings.tours[i]] = items++;
+      }
+    }
+    int[] tourIds = new int[items];
+    for (int t = 0; t <= maxTour; t++) {
+      if (itemOf[t] >= 0) {
+        tourIds[itemOf[t]] = t;
+      }
+    }
+
+    // ratings grouped by customer: sort (customer, row) pairs
+    long[] order = new long[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = ((long) ratings.customers[i] << 32) | i;
+    }
+    Arrays.parallelSort(order);
+    int customers = 0;
+    for (int i = 0; i < n; i++) {
+      if (i == 0 || (int) (order[i] >> 32) != (int) (order[i - 1] >> 32)) {
+        customers++;
+      }
+    }
+    int[] customerIds = new int[customers];
+    int[] customerOffsets = new int[customers + 1];
+    int[] customerItems = new int[n];
+    float[] customerScores = new float[n];
+    float[] centered = new float[n];
+    for (int i = 0, c = -1; i < n; i++) {
+      int row = (int) order[i];
+      if (c < 0 || (int) (order[i] >> 32) != customerIds[c]) {
+        customerIds[++c] = (int) (order[i] >> 32);
+        customerOffsets[c] = i;
+      }
+      customerItems[i] = itemOf[ratings.tours[row]];
+      customerScores[i] = ratings.scores[row];
+    }
+    customerOffsets[customers] = n;
+    double total = 0;
+    for (int r = 0; r < n; r++) {
+      total += customerScores[r];
+    }
+    float overallMean = (float) (total / n);
+    for (int c = 0; c < customers; c++) {
+      float sum = MEAN_DAMPING * overallMean;
+      for (int r = customerOffsets[c]; r < customerOffsets[c + 1]; r++) {
+        sum += customerScores[r];
+      }
+      float mean = sum / (customerOffsets[c + 1] - customerOffsets[c] + MEAN_DAMPING);
+      for (int r = customerOffsets[c]; r < customerOffsets[c + 1]; r++) {
+        centered[r] = customerScores[r] - mean;
+      }
+    }
+
+    // the same ratings grouped by tour
+    int[] itemOffsets = new int[items + 1];
+    for (int r = 0; r < n; r++) {
+      itemOffsets[customerItems[r] + 1]++;
+    }
+    for (int i = 0; i < items; i++) {
+      itemOffsets[i + 1] += itemOffsets[i];
+    }
+    int[] itemCustomers = new int[n];
+    float[] itemScores = new float[n];
+    float[] norms = new float[items];
+    int[] next = Arrays.copyOf(itemOffsets, items);
+    for (int c = 0; c < customers; c++) {
+      for (int r = customerOffsets[c]; r < customerOffsets[c + 1]; r++) {
+        int item = customerItems[r];
+        itemCustomers[next[item]] = c;
+        itemScores[next[item]++] = centered[r];
+        norms[item] += centered[r] * centered[r];
+      }
+    }
+    for (int i = 0; i < items; i++) {
+      norms[i] = (float) Math.sqrt(norms[i]);
+    }
+
+    Model model = new Model(tourIds, customerIds, customerOffsets, customerItems, centered,
+        new int[items * neighbours], new float[items * neighbours], new int[items], neighbours);
+    ForkJoinPool.commonPool().invoke(new SimilarityTask(model, centered, itemOffsets, itemCustomers,
+        itemScores, norms, 0, items));
+    return model;
+  }
+
+  /**
+   * Computes the neighbours of a range of tours, splitting the range across
+   * the fork-join pool.
+   */
+  private static final class SimilarityTask extends RecursiveAction {
+
+    private static final int THRESHOLD = 16;
+
+    private final Model model;
+    private final float[] centered;
+    private final int[] itemOffsets;
+    private final int[] itemCustomers;
+    private final float[] itemScores;
+    private final float[] norms;
+    private final int from;
+    private final int to;
+
+    SimilarityTask(Model model, float[] centered, int[] itemOffsets, int[] itemCustomers,
+        float[] itemScores, float[] norms, int from, int to) {
+      this.model = model;
+      this.centered = centered;
+      this.itemOffsets = itemOffsets;
+      this.itemCustomers = itemCustomers;
+      this.itemScores = itemScores;
+      this.norms = norms;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > THRESHOLD) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new SimilarityTask(model, centered, itemOffsets, itemCustomers, itemScores, norms, from, mid),
+            new SimilarityTask(model, centered, itemOffsets, itemCustomers, itemScores, norms, mid, to));
+        return;
+      }
+      int items = norms.length;
+      float[] dot = new float[items];
+      boolean[] seen = new boolean[items];
+      int[] touched = new int[items];
+      for (int a = from; a < to; a++) {
+        int found = 0;
+        for (int p = itemOffsets[a]; p < itemOffsets[a + 1]; p++) {
+          int c = itemCustomers[p];
+          float ra = itemScores[p];
+          for (int r = model.customerOffsets[c]; r < model.customerOffsets[c + 1]; r++) {
+            int b = model.customerItems[r];
+            if (b != a) {
+              if (!seen[b]) {
+                seen[b] = true;
+                touched[found++] = b;
+              }
+              dot[b] += ra * centered[r];
+            }
+          }
+        }
+        for (int i = 0; i < found; i++) {
+          int b = touched[i];
+          float norm = norms[a] * norms[b];
+          if (norm > 0 && dot[b] > 0) {
+            model.offer(a, b, dot[b] / norm);
+          }
+          dot[b] = 0;
+          seen[b] = false;
+        }
+      }
+    }
+  }
+
+  /**
+   * Growable primitive columns of the rating matrix.
+   */
+  static final class Ratings {
+    int[] customers = new int[1024];
+    int[] tours = new int[1024];
+    float[] scores = new float[1024];
+    int size;
+
+    void add(int customerId, int tourId, float score) {
+      if (size == customers.length) {
+        customers = Arrays.copyOf(customers, size * 2);
+        tours = Arrays.copyOf(tours, size * 2);
+        scores = Arrays.copyOf(scores, size * 2);
+      }
+      customers[size] = customerId;
+      tours[size] = tourId;
+      scores[size++] = score;
+    }
+  }
+
+  /**
+   * Immutable once built: the ratings of every customer (sorted by customer
+   * id) and the top-k neighbours of every tour, both by dense tour index.
+   */
+  static final class Model {
+
+    static final Model EMPTY = new Model(NONE, NONE, new int[1], NONE, new float[0], NONE,
+        new float[0], NONE, 0);
+
+    final int[] tourIds;
+    final int[] customerIds;
+    final int[] customerOffsets;
+    final int[] customerItems;
+    final float[] customerDeviations;
+    final int[] neighbourItems;
+    final float[] neighbourSimilarities;
+    final int[] neighbourCounts;
+    final int neighbours;
+
+    Model(int[] tourIds, int[] customerIds, int[] customerOffsets, int[] customerItems,
+        float[] customerDeviations, int[] neighbourItems, float[] neighbourSimilarities,
+        int[] neighbourCounts, int neighbours) {
+      this.tourIds = tourIds;
+      this.customerIds = customerIds;
+      this.customerOffsets = customerOffsets;
+      this.customerItems = customerItems;
+      this.customerDeviations = customerDeviations;
+      this.neighbourItems = neighbourItems;
+      this.neighbourSimilarities = neighbourSimilarities;
+      this.neighbourCounts = neighbourCounts;
+      this.neighbours = neighbours;
+    }
+
+    /**
+     * Keep b among the neighbours of a if it is one of the k most similar
+     * so far. Only called by the task that owns a.
+     */
+    void offer(int a, int b, float similarity) {
+      if (neighbours == 0) {
+        return;
+      }
+      int base = a * neighbours;
+      int count = neighbourCounts[a];
+      if (count == neighbours && similarity <= neighbourSimilarities[base + count - 1]) {
+        return;
+      }
+      int i = count == neighbours ? count - 1 : count++;
+      while (i > 0 && neighbourSimilarities[base + i - 1] < similarity) {
+        neighbourSimilarities[base + i] = neighbourSimilarities[base + i - 1];
+        neighbourItems[base + i] = neighbourItems[base + i - 1];
+        i--;
+      }
+      neighbourSimilarities[base + i] = similarity;
+      neighbourItems[base + i] = b;
+      neighbourCounts[a] = count;
+    }
+  }
+}
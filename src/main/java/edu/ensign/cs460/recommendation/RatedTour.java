@@ -0,0 +1,7 @@
+package edu.ensign.cs460.recommendation;
+
+public interface RatedTour {
+  Integer getCustomerId();
+
+  Integer getTourId();
+}
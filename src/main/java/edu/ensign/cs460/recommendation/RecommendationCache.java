@@ -0,0 +1,177 @@
+package edu.ensign.cs460.recommendation;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, TTL-based LRU cache of the per-customer recommendation lists keyed
+ * by (customerId, limit). The top-N lists are served by the TourLeaderboard.
+ *
+ * Hits, misses, evictions and size are published under the standard
+ * Micrometer {@code cache.*} meters with {@code cache=recommendations}.
+ */
+@Component
+public class RecommendationCache implements MeterBinder {
+
+  static final String CACHE_NAME = "recommendations";
+
+  /**
+   * Cache key.
+   */
+  record Key(int customerId, int limit) {
+  }
+
+  private record Entry(List<TourRecommendation> value, long expiresAt) {
+  }
+
+  private final int maxSize;
+  private final long ttlNanos;
+  private final LongSupplier ticker;
+  private final LinkedHashMap<Key, Entry> entries;
+
+  // bumped on every invalidation so that loads racing a write are not cached
+  private long generation;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  @Autowired
+  public RecommendationCache(@Value("${recommendations.cache.max-size:1000}") int maxSize,
+      @Value("${recommendations.cache.ttl:5m}") Duration ttl) {
+    this(maxSize, ttl, System::nanoTime);
+  }
+
+  RecommendationCache(int maxSize, Duration ttl, LongSupplier ticker) {
+    this.maxSize = maxSize;
+    this.ttlNanos = ttl.toNanos();
+    this.ticker = ticker;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        if (size() > RecommendationCache.this.maxSize) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Return the cached list for the key, loading and caching it on a miss.
+   *
+   * @param key    cache key
+   * @param loader computes the list on a miss
+   * @return the recommendations
+   */
+  List<TourRecommendation> get(Key key, Supplier<List<TourRecommendation>> loader) {
+    long loadGeneration;
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.expiresAt() - ticker.getAsLong() > 0) {
+        hits++;
+        return entry.value();
+      }
+      if (entry != null) {
+        entries.remove(key);
+        evictions++;
+      }
+      misses++;
+      loadGeneration = generation;
+    }
+    List<TourRecommendation> value = loader.get();
+    synchronized (this) {
+      if (generation == loadGeneration) {
+        entries.put(key, new Entry(value, ticker.getAsLong() + ttlNanos));
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Invalidate the entries affected by a change to the ratings of a tour.
+   *
+   * An entry is affected when it belongs to one of the customers who rated
+   * the tour, when it lists the tour, or when the tour may now rank into it.
+   *
+   * @param tourId      the tour whose ratings changed
+   * @param customerIds the customers whose ratings changed
+   * @param current     the tour's recommendation after the change, null if it
+   *                    no longer has ratings
+   */
+  synchronized void invalidate(int tourId, Collection<Integer> customerIds,
+      TourRecommendation current) {
+    generation++;
+    Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Key, Entry> e = it.next();
+      Key key = e.getKey();
+      if (customerIds.contains(key.customerId())
+          || affects(tourId, current, key.limit(), e.getValue().value())) {
+        it.remove();
+      }
+    }
+  }
+
+  private static boolean affects(int tourId, TourRecommendation current, int limit,
+      List<TourRecommendation> cached) {
+    for (TourRecommendation r : cached) {
+      if (r.tourId() == tourId) {
+        return true;
+      }
+    }
+    return current != null && (cached.size() < limit
+        || TourRecommendation.RANKING.compare(current, cached.get(cached.size() - 1)) < 0);
+  }
+
+  /**
+   * Remove all entries.
+   */
+  synchronized void invalidateAll() {
+    generation++;
+    entries.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("cache.gets", this, c -> c.read(() -> c.hits))
+        .tag("cache", CACHE_NAME).tag("result", "hit")
+        .description("The number of times cache lookup methods have returned a cached value.")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", this, c -> c.read(() -> c.misses))
+        .tag("cache", CACHE_NAME).tag("result", "miss")
+        .description("The number of times cache lookup methods have returned an uncached value.")
+        .register(registry);
+    FunctionCounter.builder("cache.evictions", this, c -> c.read(() -> c.evictions))
+        .tag("cache", CACHE_NAME)
+        .description("The number of entries evicted for size or expiry.")
+        .register(registry);
+    Gauge.builder("cache.size", this, RecommendationCache::size)
+        .tag("cache", CACHE_NAME)
+        .description("The number of entries in this cache.")
+        .register(registry);
+  }
+
+  private synchronized double read(LongSupplier counter) {
+    return counter.getAsLong();
+  }
+}
@@ -1,34 +1,81 @@
 package edu.ensign.cs460.recommendation;
 
+import com.example.explorecalijpa.business.DataVersions;
+import com.example.explorecalijpa.web.VersionedResponseCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/recommendations")
 @Validated
 public class RecommendationController {
 
+  private static final int FLUSH_EVERY = 1000;
+
   private final RecommendationService service;
+  private final ObjectMapper objectMapper;
+  private final VersionedResponseCache responseCache;
 
-  public RecommendationController(RecommendationService service) {
+  public RecommendationController(RecommendationService service, ObjectMapper objectMapper,
+      VersionedResponseCache responseCache) {
     this.service = service;
+    this.objectMapper = objectMapper;
+    this.responseCache = responseCache;
   }
 
+  /**
+   * The top N tours as a List of TourRecommendation, served from the
+   * response cache until a rating changes; 304 on a current If-None-Match.
+   */
   @GetMapping("/top/{limit}")
-  public List<TourRecommendation> top(@PathVariable @Min(1) @Max(100) int limit) {
-    return service.recommendTopN(limit);
+  public ResponseEntity<byte[]> top(@PathVariable @Min(1) @Max(100) int limit, HttpServletRequest request) {
+    return responseCache.json(request, DataVersions.RATINGS, () -> service.recommendTopN(limit));
   }
 
   @GetMapping("/customer/{customerId}")
   public List<TourRecommendation> forCustomer(
       @PathVariable @Min(1) int customerId,
+      @RequestParam(defaultValue = "5") @Min(1) @Max(100) int limit,
+      @RequestParam(defaultValue = "POPULAR") RecommendationStrategy strategy) {
+    return service.recommendForCustomer(customerId, limit, strategy);
+  }
+
+  /**
+   * POPULAR recommendations for many customers, streamed back as one JSON
+   * object per line so memory stays flat regardless of the batch size. The
+   * content type is set here, a streamed body does not get the one of
+   * produces.
+   */
+  @PostMapping(value = "/customers", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> forCustomers(
+      @RequestBody List<@NotNull @Min(1) Integer> customerIds,
       @RequestParam(defaultValue = "5") @Min(1) @Max(100) int limit) {
-    return service.recommendForCustomer(customerId, limit);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(out -> {
+      try (Stream<CustomerRecommendations> results = service.recommendForCustomers(customerIds, limit)) {
+        int written = 0;
+        for (Iterator<CustomerRecommendations> it = results.iterator(); it.hasNext();) {
+          out.write(objectMapper.writeValueAsBytes(it.next()));
+          out.write('\n');
+          if (++written % FLUSH_EVERY == 0) {
+            out.flush();
+          }
+        }
+      }
+      out.flush();
+    });
   }
 
   @DeleteMapping("/cache")
@@ -1,39 +1,132 @@
 package edu.ensign.cs460.recommendation;
 
-import com.example.explorecalijpa.repo.TourRatingRepository; // <- adjust if your repo package is different
-import org.springframework.data.domain.PageRequest;
+import com.example.explorecalijpa.business.DataVersions;
+import com.example.explorecalijpa.business.TourRatingEvent;
+import com.example.explorecalijpa.repo.TourRatingStatsRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
+@Timed("service.invocations")
 public class RecommendationService {
 
-  private final TourRatingRepository repo;
+  private final TourRatingStatsRepository repo;
+  private final RecommendationCache cache;
+  private final TourLeaderboard leaderboard;
+  private final CustomerRatedToursIndex ratedTours;
+  private final ItemSimilarityIndex similarities;
 
-  public RecommendationService(TourRatingRepository repo) {
+  public RecommendationService(TourRatingStatsRepository repo, RecommendationCache cache,
+      TourLeaderboard leaderboard, CustomerRatedToursIndex ratedTours,
+      ItemSimilarityIndex similarities) {
     this.repo = repo;
+    this.cache = cache;
+    this.leaderboard = leaderboard;
+    this.ratedTours = ratedTours;
+    this.similarities = similarities;
   }
 
-  @Transactional(readOnly = true)
+  /**
+   * Served from the in-memory leaderboard, never touches the database.
+   */
   public List<TourRecommendation> recommendTopN(int limit) {
-    var page = PageRequest.of(0, limit);
-    return repo.findTopTours(page).stream()
-        .map(s -> new TourRecommendation(
-            s.getTourId(), s.getTitle(), s.getAvgScore(), s.getReviewCount()))
-        .toList();
+    return leaderboard.top(limit);
   }
 
-  @Transactional(readOnly = true)
+  /**
+   * The leaderboard minus the tours the customer already rated, filtered in
+   * memory against the customer's rated-tours bitmap.
+   */
   public List<TourRecommendation> recommendForCustomer(int customerId, int limit) {
-    var page = PageRequest.of(0, limit);
-    return repo.findRecommendedForCustomer(customerId, page).stream()
-        .map(s -> new TourRecommendation(
-            s.getTourId(), s.getTitle(), s.getAvgScore(), s.getReviewCount()))
+    return cache.get(new RecommendationCache.Key(customerId, limit),
+        () -> unrated(leaderboard.snapshot(), ratedTours.ratedBy(customerId), limit));
+  }
+
+  /**
+   * POPULAR recommendations for many customers, all filtered from the same
+   * leaderboard snapshot. The stream is lazy and bypasses the cache, so a
+   * large batch neither holds every result nor evicts the cached lists.
+   *
+   * @param customerIds the customers
+   * @param limit       maximum number of tours per customer
+   * @return the recommendations of each customer, in the given order
+   */
+  public Stream<CustomerRecommendations> recommendForCustomers(List<Integer> customerIds, int limit) {
+    List<TourRecommendation> snapshot = leaderboard.snapshot();
+    return customerIds.stream()
+        .map(c -> new CustomerRecommendations(c, unrated(snapshot, ratedTours.ratedBy(c), limit)));
+  }
+
+  private static List<TourRecommendation> unrated(List<TourRecommendation> ranked, BitSet rated,
+      int limit) {
+    return ranked.stream()
+        .filter(r -> !rated.get(r.tourId()))
+        .limit(limit)
         .toList();
   }
 
+  /**
+   * Recommendations for a customer using the given strategy. ITEM_ITEM lists
+   * the tours similar to the ones the customer rated and falls back to
+   * POPULAR for the remaining places.
+   */
+  public List<TourRecommendation> recommendForCustomer(int customerId, int limit,
+      RecommendationStrategy strategy) {
+    if (strategy == RecommendationStrategy.POPULAR) {
+      return recommendForCustomer(customerId, limit);
+    }
+    BitSet rated = ratedTours.ratedBy(customerId);
+    List<TourRecommendation> out = new ArrayList<>(limit);
+    for (int tourId : similarities.recommend(customerId)) {
+      TourRecommendation r = leaderboard.get(tourId);
+      if (r != null && !rated.get(tourId)) {
+        out.add(r);
+        if (out.size() == limit) {
+          return out;
+        }
+      }
+    }
+    for (TourRecommendation r : recommendForCustomer(customerId, limit)) {
+      if (!out.contains(r)) {
+        out.add(r);
+        if (out.size() == limit) {
+          break;
+        }
+      }
+    }
+    return out;
+  }
+
   public void evictAll() {
-    /* no-op (stretch endpoint) */ }
+    cache.invalidateAll();
+  }
+
+  /**
+   * Re-rank the tour on the leaderboard, update the customers' rated tours
+   * and drop the cached lists affected by a committed rating change, before
+   * the data version of the cached top lists moves.
+   *
+   * @param event the rating change
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  @Order(DataVersions.BEFORE_BUMP)
+  public void onTourRatingChanged(TourRatingEvent event) {
+    Optional<VersionedTourSummary> summary = repo.findSummary(event.tourId());
+    TourRecommendation current = leaderboard.update(event.tourId(),
+        summary.map(VersionedTourSummary::getVersion).orElse(0L),
+        summary.filter(s -> s.getReviewCount() > 0).map(TourRecommendation::of).orElse(null));
+    if (event.change() != TourRatingEvent.Change.UPDATED) {
+      ratedTours.apply(event.tourId(), event.customerIds(),
+          event.change() == TourRatingEvent.Change.CREATED);
+    }
+    cache.invalidate(event.tourId(), event.customerIds(), current);
+  }
 }
@@ -0,0 +1,11 @@
+package edu.ensign.cs460.recommendation;
+
+/**
+ * How the recommendations of a customer are chosen.
+ */
+public enum RecommendationStrategy {
+  /** The best rated tours the customer has not rated yet. */
+  POPULAR,
+  /** Tours similar to the ones the customer rated, topped up with POPULAR. */
+  ITEM_ITEM
+}
@@ -0,0 +1,130 @@
+package edu.ensign.cs460.recommendation;
+
+import com.example.explorecalijpa.business.DataVersions;
+import com.example.explorecalijpa.repo.TourRatingStatsRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory ranking of every rated tour in {@link TourRecommendation#RANKING}
+ * order.
+ *
+ * Readers get an immutable snapshot without locking or touching the
+ * database. Writers (the startup rebuild and incremental rating updates)
+ * serialize on this object, build a new snapshot and swap it in atomically.
+ * Updates read their summary before taking the lock, so two of them for the
+ * same tour can arrive out of order; the version of the statistics row each
+ * summary was read from decides, an older one is dropped.
+ */
+@Component
+public class TourLeaderboard {
+
+  /**
+   * The ranked tours and the same tours by id, swapped together.
+   */
+  private record Ranking(List<TourRecommendation> ranked, Map<Integer, TourRecommendation> byId) {
+
+    static Ranking of(List<TourRecommendation> ranked) {
+      Map<Integer, TourRecommendation> byId = new HashMap<>();
+      for (TourRecommendation r : ranked) {
+        byId.put(r.tourId(), r);
+      }
+      return new Ranking(List.copyOf(ranked), Map.copyOf(byId));
+    }
+  }
+
+  private final TourRatingStatsRepository repo;
+  private final DataVersions dataVersions;
+  private final AtomicReference<Ranking> ranking = new AtomicReference<>(Ranking.of(List.of()));
+  // statistics version of the last applied state of each tour, guarded by this
+  private final Map<Integer, Long> versions = new HashMap<>();
+
+  public TourLeaderboard(TourRatingStatsRepository repo, DataVersions dataVersions) {
+    this.repo = repo;
+    this.dataVersions = dataVersions;
+  }
+
+  /**
+   * @return every rated tour, best first.
+   */
+  public List<TourRecommendation> snapshot() {
+    return ranking.get().ranked();
+  }
+
+  /**
+   * @param tourId the tour
+   * @return the tour's current recommendation, null if it has no ratings.
+   */
+  public TourRecommendation get(int tourId) {
+    return ranking.get().byId().get(tourId);
+  }
+
+  /**
+   * @param limit maximum number of tours
+   * @return the best {@code limit} tours, best first.
+   */
+  public List<TourRecommendation> top(int limit) {
+    List<TourRecommendation> snapshot = ranking.get().ranked();
+    return snapshot.subList(0, Math.min(limit, snapshot.size()));
+  }
+
+  /**
+   * Reload the ranking from the tour rating statistics. Runs before the
+   * application reports itself ready to accept traffic. Holds the writer
+   * lock while it reads, so updates wait for it and those read before it are
+   * dropped by their version. Bumps the version of the ratings, so a response
+   * cached from the ranking before it was loaded is not served afterwards.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void rebuild() {
+    List<VersionedTourSummary> summaries = repo.findTopTours(Pageable.unpaged());
+    List<TourRecommendation> all = new ArrayList<>(summaries.size());
+    versions.clear();
+    for (VersionedTourSummary s : summaries) {
+      all.add(TourRecommendation.of(s));
+      versions.put(s.getTourId(), s.getVersion());
+    }
+    all.sort(TourRecommendation.RANKING);
+    ranking.set(Ranking.of(all));
+    dataVersions.bump(DataVersions.RATINGS);
+  }
+
+  /**
+   * Move a tour to its new position, unless a newer state of the tour is
+   * already applied.
+   *
+   * @param tourId  the tour
+   * @param version version of the statistics the recommendation was read from
+   * @param current the tour's recommendation, null to remove it
+   * @return the tour's recommendation after the update, null if it has none
+   */
+  synchronized TourRecommendation update(int tourId, long version, TourRecommendation current) {
+    Long applied = versions.get(tourId);
+    if (applied != null && applied >= version) {
+      return get(tourId);
+    }
+    versions.put(tourId, version);
+    List<TourRecommendation> previous = ranking.get().ranked();
+    List<TourRecommendation> next = new ArrayList<>(previous.size() + 1);
+    for (TourRecommendation r : previous) {
+      if (r.tourId() != tourId) {
+        next.add(r);
+      }
+    }
+    if (current != null) {
+      int i = Collections.binarySearch(next, current, TourRecommendation.RANKING);
+      next.add(i < 0 ? -i - 1 : i, current);
+    }
+    ranking.set(Ranking.of(next));
+    return current;
+  }
+}
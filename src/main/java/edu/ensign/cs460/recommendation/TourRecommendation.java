@@ -1,8 +1,20 @@
 package edu.ensign.cs460.recommendation;
 
+import java.util.Comparator;
+
 public record TourRecommendation(
     Integer tourId,
     String title,
     Double averageScore,
     Long reviewCount) {
+
+  /** Same order as the recommendation queries: avg desc, count desc, title asc. */
+  public static final Comparator<TourRecommendation> RANKING = Comparator
+      .comparing(TourRecommendation::averageScore, Comparator.reverseOrder())
+      .thenComparing(TourRecommendation::reviewCount, Comparator.reverseOrder())
+      .thenComparing(TourRecommendation::title);
+
+  static TourRecommendation of(TourSummary s) {
+    return new TourRecommendation(s.getTourId(), s.getTitle(), s.getAvgScore(), s.getReviewCount());
+  }
 }
@@ -0,0 +1,13 @@
+package edu.ensign.cs460.recommendation;
+
+/**
+ * A TourSummary read from the tour rating statistics, with the version of
+ * the statistics row it was read from.
+ */
+public interface VersionedTourSummary extends TourSummary {
+  /**
+   * @return the version of the statistics row, bumped by every change to the
+   *         ratings of the tour; orders summaries of the same tour.
+   */
+  Long getVersion();
+}
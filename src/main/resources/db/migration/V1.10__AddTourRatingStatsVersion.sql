@@ -0,0 +1,3 @@
+-- Bumped by every statistics upsert, so concurrent reads of the statistics
+-- of a tour can be put back in order.
+ALTER TABLE tour_rating_stats ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,27 @@
+
+
+CREATE TABLE tour_rating_stats (
+    tour_id BIGINT PRIMARY KEY,
+    score_sum BIGINT NOT NULL DEFAULT 0,
+    review_count BIGINT NOT NULL DEFAULT 0,
+    score_0 BIGINT NOT NULL DEFAULT 0,
+    score_1 BIGINT NOT NULL DEFAULT 0,
+    score_2 BIGINT NOT NULL DEFAULT 0,
+    score_3 BIGINT NOT NULL DEFAULT 0,
+    score_4 BIGINT NOT NULL DEFAULT 0,
+    score_5 BIGINT NOT NULL DEFAULT 0);
+
+INSERT INTO tour_rating_stats (tour_id, score_sum, review_count,
+    score_0, score_1, score_2, score_3, score_4, score_5)
+  SELECT tour_id,
+         SUM(score),
+         COUNT(id),
+         SUM(CASE WHEN score = 0 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 1 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 2 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 3 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 4 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 5 THEN 1 ELSE 0 END)
+  FROM tour_rating
+  WHERE tour_id IS NOT NULL
+  GROUP BY tour_id;
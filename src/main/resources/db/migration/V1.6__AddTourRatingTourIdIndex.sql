@@ -0,0 +1,3 @@
+
+-- Supports the keyset pagination of the ratings of a tour: where tour_id = ? and id > ? order by id
+CREATE INDEX idx_tour_rating_tour_id_id ON tour_rating (tour_id, id);
@@ -0,0 +1,45 @@
+-- One rating per customer and tour: keep the first of any duplicates, move
+-- the others to tour_rating_duplicate (with the id of the rating that was
+-- kept) so they can be reviewed or restored, rebuild the statistics from
+-- what is left, then let the database enforce it.
+
+CREATE TABLE tour_rating_duplicate (
+    id BIGINT PRIMARY KEY,
+    tour_id BIGINT,
+    customer_id BIGINT,
+    score INT,
+    comment VARCHAR(100),
+    kept_id BIGINT NOT NULL);
+
+INSERT INTO tour_rating_duplicate (id, tour_id, customer_id, score, comment, kept_id)
+  SELECT r.id, r.tour_id, r.customer_id, r.score, r.comment, first_rating.id
+  FROM tour_rating r
+  JOIN (SELECT tour_id, customer_id, MIN(id) AS id
+        FROM tour_rating
+        WHERE customer_id IS NOT NULL
+        GROUP BY tour_id, customer_id) first_rating
+    ON first_rating.customer_id = r.customer_id
+   AND (first_rating.tour_id = r.tour_id OR (first_rating.tour_id IS NULL AND r.tour_id IS NULL))
+  WHERE r.id <> first_rating.id;
+
+DELETE FROM tour_rating
+WHERE id IN (SELECT id FROM tour_rating_duplicate);
+
+DELETE FROM tour_rating_stats;
+
+INSERT INTO tour_rating_stats (tour_id, score_sum, review_count,
+    score_0, score_1, score_2, score_3, score_4, score_5)
+  SELECT tour_id,
+         SUM(score),
+         COUNT(id),
+         SUM(CASE WHEN score = 0 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 1 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 2 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 3 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 4 THEN 1 ELSE 0 END),
+         SUM(CASE WHEN score = 5 THEN 1 ELSE 0 END)
+  FROM tour_rating
+  WHERE tour_id IS NOT NULL
+  GROUP BY tour_id;
+
+ALTER TABLE tour_rating ADD CONSTRAINT uk_tour_rating_tour_customer UNIQUE (tour_id, customer_id);
@@ -0,0 +1,9 @@
+-- Lookups by tour_rating.tour_id are served by idx_tour_rating_tour_id_id (V1.6)
+-- and uk_tour_rating_tour_customer (V1.7).
+
+-- ratings of a customer, covering the tour ids excluded from recommendations
+CREATE INDEX idx_tour_rating_customer_id ON tour_rating (customer_id, tour_id);
+
+CREATE INDEX idx_tour_difficulty ON tour (difficulty);
+
+-- tour.tour_package_code is already indexed for FK_TOUR_PACKAGE_CODE (V1.1)
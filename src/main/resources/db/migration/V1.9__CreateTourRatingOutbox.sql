@@ -0,0 +1,10 @@
+-- Tour ratings accepted in write-behind mode and not yet written to tour_rating.
+-- A pending rating per customer and tour; attempts counts the failed writes.
+CREATE TABLE tour_rating_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    tour_id INT NOT NULL,
+    customer_id INT NOT NULL,
+    score INT NOT NULL,
+    comment VARCHAR(100),
+    attempts INT NOT NULL DEFAULT 0,
+    CONSTRAINT uk_tour_rating_outbox_tour_customer UNIQUE (tour_id, customer_id));
@@ -0,0 +1,314 @@
+package com.example.explorecalijpa.business;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.example.explorecalijpa.model.QueuedTourRating;
+import com.example.explorecalijpa.repo.QueuedTourRatingRepository;
+
+public class RatingWriteBehindTest {
+
+  private final TourRatingService serviceMock = mock(TourRatingService.class);
+  private final QueuedTourRatingRepository outboxMock = mock(QueuedTourRatingRepository.class);
+
+  // the outbox table behind outboxMock
+  private final ConcurrentSkipListMap<Long, QueuedTourRating> outbox = new ConcurrentSkipListMap<>();
+  private final AtomicLong ids = new AtomicLong();
+
+  // callers offering concurrently, and the hold on the first outbox insert
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final CountDownLatch inserting = new CountDownLatch(1);
+  private final CountDownLatch releaseInsert = new CountDownLatch(1);
+
+  @BeforeEach
+  void setUpOutbox() {
+    when(outboxMock.save(any())).thenAnswer(inv -> {
+      QueuedTourRating rating = inv.getArgument(0);
+      ReflectionTestUtils.setField(rating, "id", ids.incrementAndGet());
+      outbox.put(rating.getId(), rating);
+      return rating;
+    });
+    doAnswer(inv -> {
+      insertIntoOutbox(inv.getArgument(0));
+      return null;
+    }).when(outboxMock).insertAll(anyList());
+    when(outboxMock.findByAttemptsLessThanOrderById(anyInt(), any())).thenAnswer(inv -> {
+      int maxAttempts = inv.getArgument(0);
+      Pageable page = inv.getArgument(1);
+      return outbox.values().stream()
+          .filter(r -> r.getAttempts() < maxAttempts)
+          .limit(page.getPageSize())
+          .map(r -> copy(r))
+          .toList();
+    });
+    when(outboxMock.countByAttemptsLessThan(anyInt())).thenAnswer(inv -> {
+      int maxAttempts = inv.getArgument(0);
+      return outbox.values().stream().filter(r -> r.getAttempts() < maxAttempts).count();
+    });
+    when(outboxMock.incrementAttempts(anyLong())).thenAnswer(inv -> {
+      QueuedTourRating rating = outbox.get(inv.<Long>getArgument(0));
+      ReflectionTestUtils.setField(rating, "attempts", rating.getAttempts() + 1);
+      return 1;
+    });
+    doAnswer(inv -> {
+      inv.<Collection<Long>>getArgument(0).forEach(outbox::remove);
+      return null;
+    }).when(outboxMock).deleteAllByIdInBatch(any());
+  }
+
+  @AfterEach
+  void stopExecutor() {
+    executor.shutdownNow();
+  }
+
+  private void insertIntoOutbox(List<QueuedTourRating> ratings) {
+    // the (tour_id, customer_id) unique key refuses the whole batch
+    Set<List<Integer>> keys = new HashSet<>();
+    outbox.values().forEach(r -> keys.add(List.of(r.getTourId(), r.getCustomerId())));
+    for (QueuedTourRating rating : ratings) {
+      if (!keys.add(List.of(rating.getTourId(), rating.getCustomerId()))) {
+        throw new DuplicateKeyException("uk_tour_rating_outbox_tour_customer");
+      }
+    }
+    ratings.forEach(outboxMock::save);
+  }
+
+  private static QueuedTourRating copy(QueuedTourRating rating) {
+    QueuedTourRating copy = new QueuedTourRating(rating.getTourId(), rating.getCustomerId(), rating.getScore(),
+        rating.getComment());
+    ReflectionTestUtils.setField(copy, "id", rating.getId());
+    ReflectionTestUtils.setField(copy, "attempts", rating.getAttempts());
+    return copy;
+  }
+
+  private RatingWriteBehind writeBehind(int capacity, int batchSize) {
+    return new RatingWriteBehind(serviceMock, outboxMock, TransactionOperations.withoutTransaction(), capacity,
+        batchSize, Duration.ZERO);
+  }
+
+  @Test
+  public void offerBeforeStartIsRefused() {
+    assertThat(writeBehind(10, 5).offer(1, 2, 3, null), is(false));
+    assertThat(outbox.isEmpty(), is(true));
+  }
+
+  @Test
+  public void stopFlushesQueuedRatingsInBatches() throws InterruptedException {
+    // hold the writer in the first batch so the rest queues up behind it
+    CountDownLatch release = new CountDownLatch(1);
+    List<Integer> sizes = new CopyOnWriteArrayList<>();
+    when(serviceMock.importRatings(anyList())).thenAnswer(inv -> {
+      List<RatingImport> batch = inv.getArgument(0);
+      sizes.add(batch.size());
+      release.await();
+      return new RatingImportResult(batch.size(), List.of());
+    });
+    RatingWriteBehind writeBehind = writeBehind(100, 5);
+    writeBehind.start();
+
+    assertThat(writeBehind.offer(1, 0, 5, null), is(true));
+    while (sizes.isEmpty()) {
+      Thread.sleep(1);
+    }
+    for (int customer = 1; customer <= 12; customer++) {
+      assertThat(writeBehind.offer(1, customer, 5, null), is(true));
+    }
+    release.countDown();
+    writeBehind.stop();
+
+    assertThat(sizes, is(List.of(1, 5, 5, 2)));
+    assertThat(writeBehind.pending(), is(0L));
+    assertThat(outbox.isEmpty(), is(true));
+    assertThat(writeBehind.offer(1, 99, 5, null), is(false));
+  }
+
+  @Test
+  public void fullOutboxRefusesRatings() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch writing = new CountDownLatch(1);
+    when(serviceMock.importRatings(anyList())).thenAnswer(inv -> {
+      writing.countDown();
+      release.await();
+      return new RatingImportResult(1, List.of());
+    });
+    RatingWriteBehind writeBehind = writeBehind(2, 1);
+    writeBehind.start();
+
+    writeBehind.offer(1, 0, 5, null);
+    writing.await();
+    assertThat(writeBehind.offer(1, 1, 5, null), is(true));
+    assertThat(writeBehind.offer(1, 2, 5, null), is(false));
+    release.countDown();
+    writeBehind.stop();
+  }
+
+  @Test
+  public void ratingsLeftInTheOutboxAreWrittenOnStart() {
+    outboxMock.save(new QueuedTourRating(1, 2, 3, null));
+    outboxMock.save(new QueuedTourRating(1, 3, 4, null));
+    when(serviceMock.importRatings(anyList())).thenReturn(new RatingImportResult(2, List.of()));
+    RatingWriteBehind writeBehind = writeBehind(10, 5);
+    writeBehind.start();
+    writeBehind.stop();
+
+    verify(serviceMock).importRatings(List.of(new RatingImport(1, 1, 2, 3, null), new RatingImport(2, 1, 3, 4, null)));
+    assertThat(outbox.isEmpty(), is(true));
+  }
+
+  @Test
+  public void offersWaitingTogetherAreQueuedInOneInsert() throws Exception {
+    when(serviceMock.importRatings(anyList()))
+        .thenAnswer(inv -> new RatingImportResult(inv.<List<?>>getArgument(0).size(), List.of()));
+    List<Integer> inserts = holdFirstInsert();
+    RatingWriteBehind writeBehind = writeBehind(100, 10);
+    writeBehind.start();
+
+    // the first offer is inserted alone while the next ones wait behind it
+    List<Future<Boolean>> offers = new ArrayList<>();
+    offers.add(executor.submit(() -> writeBehind.offer(1, 0, 5, null)));
+    inserting.await();
+    for (int customer = 1; customer <= 4; customer++) {
+      int c = customer;
+      offers.add(executor.submit(() -> writeBehind.offer(1, c, 5, null)));
+    }
+    while (writeBehind.pending() < 5) {
+      Thread.sleep(1);
+    }
+    releaseInsert.countDown();
+    for (Future<Boolean> offer : offers) {
+      assertThat(offer.get(), is(true));
+    }
+    writeBehind.stop();
+
+    assertThat(inserts, is(List.of(1, 4)));
+    assertThat(outbox.isEmpty(), is(true));
+  }
+
+  @Test
+  public void duplicateOfferIsRefusedWithoutTheOthers() throws Exception {
+    // keep the first rating in the outbox until the duplicate has been refused
+    CountDownLatch written = new CountDownLatch(1);
+    when(serviceMock.importRatings(anyList())).thenAnswer(inv -> {
+      written.await();
+      return new RatingImportResult(inv.<List<?>>getArgument(0).size(), List.of());
+    });
+    holdFirstInsert();
+    RatingWriteBehind writeBehind = writeBehind(100, 10);
+    writeBehind.start();
+
+    Future<Boolean> first = executor.submit(() -> writeBehind.offer(1, 2, 5, null));
+    inserting.await();
+    // queued behind the first: a different customer, the same one again, another one
+    Future<Boolean> other = executor.submit(() -> writeBehind.offer(1, 3, 5, null));
+    Future<Boolean> duplicate = executor.submit(() -> writeBehind.offer(1, 2, 4, null));
+    Future<Boolean> another = executor.submit(() -> writeBehind.offer(1, 4, 5, null));
+    while (writeBehind.pending() < 4) {
+      Thread.sleep(1);
+    }
+    releaseInsert.countDown();
+
+    assertThat(first.get(), is(true));
+    assertThat(other.get(), is(true));
+    assertThat(another.get(), is(true));
+    ExecutionException e = assertThrows(ExecutionException.class, duplicate::get);
+    assertThat(e.getCause() instanceof DuplicateKeyException, is(true));
+    written.countDown();
+    writeBehind.stop();
+
+    assertThat(writeBehind.pending(), is(0L));
+    assertThat(outbox.isEmpty(), is(true));
+  }
+
+  /**
+   * Hold the first outbox insert until release, recording the size of every
+   * insert.
+   */
+  private List<Integer> holdFirstInsert() {
+    List<Integer> sizes = new CopyOnWriteArrayList<>();
+    doAnswer(inv -> {
+      List<QueuedTourRating> ratings = inv.getArgument(0);
+      sizes.add(ratings.size());
+      if (inserting.getCount() > 0) {
+        inserting.countDown();
+        releaseInsert.await();
+      }
+      insertIntoOutbox(ratings);
+      return null;
+    }).when(outboxMock).insertAll(anyList());
+    return sizes;
+  }
+
+  @Test
+  public void failedRatingIsRetried() {
+    when(serviceMock.importRatings(anyList()))
+        .thenThrow(new IllegalStateException("database down"))
+        .thenReturn(new RatingImportResult(1, List.of()));
+    RatingWriteBehind writeBehind = writeBehind(10, 5);
+    writeBehind.start();
+
+    writeBehind.offer(1, 2, 3, null);
+    writeBehind.stop();
+
+    verify(serviceMock, times(2)).importRatings(anyList());
+    assertThat(outbox.isEmpty(), is(true));
+  }
+
+  @Test
+  public void failingRowDoesNotDropTheBatch() {
+    // customer 2 always fails, alone or with the others
+    when(serviceMock.importRatings(anyList())).thenAnswer(inv -> {
+      List<RatingImport> batch = inv.getArgument(0);
+      if (batch.stream().anyMatch(r -> r.customerId() == 2)) {
+        throw new IllegalStateException("bad row");
+      }
+      return new RatingImportResult(batch.size(), List.of());
+    });
+    outboxMock.save(new QueuedTourRating(1, 1, 5, null));
+    outboxMock.save(new QueuedTourRating(1, 2, 5, null));
+    outboxMock.save(new QueuedTourRating(1, 3, 5, null));
+    RatingWriteBehind writeBehind = writeBehind(10, 5);
+    writeBehind.start();
+    writeBehind.stop();
+
+    verify(serviceMock).importRatings(List.of(new RatingImport(1, 1, 1, 5, null)));
+    verify(serviceMock).importRatings(List.of(new RatingImport(3, 1, 3, 5, null)));
+    // the failing row is tried three times and kept
+    verify(serviceMock, times(3)).importRatings(List.of(new RatingImport(2, 1, 2, 5, null)));
+    assertThat(outbox.keySet(), is(Set.of(2L)));
+    assertThat(outbox.get(2L).getAttempts(), is(3));
+    assertThat(writeBehind.pending(), is(0L));
+  }
+}
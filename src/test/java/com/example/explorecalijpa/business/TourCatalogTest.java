@@ -0,0 +1,138 @@
+package com.example.explorecalijpa.business;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+import com.example.explorecalijpa.model.Tour;
+import com.example.explorecalijpa.model.TourPackage;
+import com.example.explorecalijpa.repo.TourFacetView;
+import com.example.explorecalijpa.repo.TourRepository;
+
+public class TourCatalogTest {
+
+  private TourCatalog catalog;
+
+  @BeforeEach
+  public void setUp() {
+    TourRepository repo = mock(TourRepository.class);
+    when(repo.findAllFacets()).thenReturn(List.of(
+        view(1, 750, Difficulty.Medium, Region.Central_Coast, "BC"),
+        view(2, 500, Difficulty.Easy, Region.Central_Coast, "CC"),
+        view(3, 1200, Difficulty.Difficult, Region.Northern_California, "BC"),
+        view(4, 300, Difficulty.Easy, Region.Southern_California, "KC"),
+        view(5, null, Difficulty.Easy, Region.Varies, "KC")));
+    catalog = new TourCatalog(repo);
+    catalog.rebuild();
+  }
+
+  @Test
+  public void noSelectionMatchesAllByPrice() {
+    TourFilterResult result = filter(null, null, null, null, null);
+    assertThat(result.total(), is(5));
+    assertThat(ids(result), contains(4, 2, 1, 3, 5));
+    assertThat(result.facets().get(TourCatalog.DIFFICULTY),
+        is(Map.of("Easy", 3, "Medium", 1, "Difficult", 1)));
+    assertThat(result.facets().get(TourCatalog.PACKAGE), is(Map.of("BC", 2, "CC", 1, "KC", 2)));
+  }
+
+  @Test
+  public void facetsIntersectAndValuesUnite() {
+    TourFilterResult result = filter(Set.of(Difficulty.Easy, Difficulty.Medium), Set.of(Region.Central_Coast),
+        null, null, null);
+    assertThat(ids(result), contains(2, 1));
+  }
+
+  @Test
+  public void facetCountsIgnoreTheirOwnSelection() {
+    TourFilterResult result = filter(Set.of(Difficulty.Easy), null, Set.of("BC"), null, null);
+    assertThat(result.total(), is(0));
+    // difficulties of the BC tours, packages of the easy tours
+    assertThat(result.facets().get(TourCatalog.DIFFICULTY), is(Map.of("Easy", 0, "Medium", 1, "Difficult", 1)));
+    assertThat(result.facets().get(TourCatalog.PACKAGE), is(Map.of("BC", 0, "CC", 1, "KC", 2)));
+  }
+
+  @Test
+  public void priceRangeIsInclusiveAndSkipsUnpricedTours() {
+    assertThat(ids(filter(null, null, null, 500, 750)), contains(2, 1));
+    assertThat(ids(filter(null, null, null, 1000, null)), contains(3));
+    assertThat(ids(filter(null, null, null, null, 300)), contains(4));
+    assertThat(filter(null, null, null, 800, 700).total(), is(0));
+  }
+
+  @Test
+  public void unknownValuesMatchNothing() {
+    assertThat(filter(null, null, Set.of("ZZ"), null, null).total(), is(0));
+  }
+
+  @Test
+  public void page() {
+    TourFilterResult result = catalog.filter(new TourFilter(null, null, null, null, null), 1, 2);
+    assertThat(result.total(), is(5));
+    assertThat(ids(result), contains(2, 1));
+  }
+
+  @Test
+  public void changesReplaceOneTour() {
+    Tour tour = new Tour("Desert Run", "", "", 100, "1 day", "", null, new TourPackage("DS", "From Desert to Sea"),
+        Difficulty.Difficult, Region.Southern_California);
+    ReflectionTestUtils.setField(tour, "id", 6);
+    catalog.onTourChanged(new TourChangedEvent(6, tour));
+    catalog.onTourChanged(new TourChangedEvent(3, null));
+
+    assertThat(catalog.size(), is(5));
+    TourFilterResult result = filter(Set.of(Difficulty.Difficult), null, null, null, null);
+    assertThat(ids(result), contains(6));
+    assertThat(result.facets().get(TourCatalog.PACKAGE).get("DS"), is(1));
+    assertThat(result.facets().get(TourCatalog.PACKAGE).get("BC"), is(0));
+  }
+
+  private TourFilterResult filter(Set<Difficulty> difficulties, Set<Region> regions, Set<String> packages,
+      Integer minPrice, Integer maxPrice) {
+    return catalog.filter(new TourFilter(difficulties, regions, packages, minPrice, maxPrice), 0, 100);
+  }
+
+  private static List<Integer> ids(TourFilterResult result) {
+    return result.tours().stream().map(TourCatalogEntry::id).toList();
+  }
+
+  private static TourFacetView view(int id, Integer price, Difficulty difficulty, Region region, String code) {
+    return new TourFacetView() {
+      public Integer getId() {
+        return id;
+      }
+
+      public String getTitle() {
+        return "Tour " + id;
+      }
+
+      public Integer getPrice() {
+        return price;
+      }
+
+      public Difficulty getDifficulty() {
+        return difficulty;
+      }
+
+      public Region getRegion() {
+        return region;
+      }
+
+      public String getTourPackageCode() {
+        return code;
+      }
+    };
+  }
+}
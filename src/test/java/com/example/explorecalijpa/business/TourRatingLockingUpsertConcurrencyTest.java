@@ -0,0 +1,22 @@
+package com.example.explorecalijpa.business;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * The same stress tests through the upsert used on MySQL: a SELECT ... FOR
+ * UPDATE of the rating, then an UPDATE or an INSERT. Runs on H2 with the
+ * repository switched to that path.
+ */
+public class TourRatingLockingUpsertConcurrencyTest extends TourRatingUpsertConcurrencyTest {
+
+  @Autowired
+  private ApplicationContext context;
+
+  @BeforeEach
+  void useLockingUpsert() {
+    ReflectionTestUtils.setField(context.getBean("tourRatingRepositoryImpl"), "mysql", true);
+  }
+}
@@ -3,16 +3,27 @@ package com.example.explorecalijpa.business;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,12 +31,20 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
 import com.example.explorecalijpa.model.Tour;
 import com.example.explorecalijpa.model.TourRating;
 import com.example.explorecalijpa.repo.TourRatingRepository;
+import com.example.explorecalijpa.repo.TourRatingStatsRepository;
+import com.example.explorecalijpa.repo.TourRatingTotals;
+import com.example.explorecalijpa.repo.TourRatingUpsert;
+import com.example.explorecalijpa.repo.TourRatingView;
 import com.example.explorecalijpa.repo.TourRepository;
 
+import jakarta.validation.ConstraintViolationException;
+
 /**
  * Created by Mary Ellen Bowman
  */
@@ -40,6 +59,12 @@ public class TourRatingServiceTest {
   private TourRepository tourRepositoryMock;
   @Mock
   private TourRatingRepository tourRatingRepositoryMock;
+  @Mock
+  private TourRatingStatsRepository tourRatingStatsRepositoryMock;
+  @Mock
+  private ApplicationEventPublisher eventPublisherMock;
+  @Mock
+  private TourScoreHistogram scoreHistogramMock;
 
   @InjectMocks 
   private TourRatingService service;
@@ -53,6 +78,22 @@ public class TourRatingServiceTest {
   @Mock
   private TourRating tourRatingMock2;
 
+  private static TourRatingTotals totals(int tourId, long scoreSum, long reviewCount) {
+    return new TourRatingTotals() {
+      public Integer getTourId() {
+        return tourId;
+      }
+
+      public Long getScoreSum() {
+        return scoreSum;
+      }
+
+      public Long getReviewCount() {
+        return reviewCount;
+      }
+    };
+  }
+
   /**
    * Mock responses to commonly invoked methods.
    */
@@ -88,21 +129,45 @@ public class TourRatingServiceTest {
 
   @Test
   public void getAverageScore() {
-    when(tourRepositoryMock.findById(TOUR_ID)).thenReturn(Optional.of(tourMock));
-    when(tourMock.getId()).thenReturn(TOUR_ID);
-    when(tourRatingRepositoryMock.findByTourId(TOUR_ID)).thenReturn(Arrays.asList(tourRatingMock));
-    when(tourRatingMock.getScore()).thenReturn(10);
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
+    when(tourRatingStatsRepositoryMock.findTotals(List.of(TOUR_ID)))
+        .thenReturn(List.of(totals(TOUR_ID, 20, 2)));
 
     // invoke and verify getAverageScore
     assertThat(service.getAverageScore(TOUR_ID), is(10.0));
+    verify(tourRatingRepositoryMock, never()).findByTourId(any());
+  }
+
+  @Test
+  public void getAverageScores() {
+    when(tourRatingStatsRepositoryMock.findTotals(List.of(2, TOUR_ID, 3)))
+        .thenReturn(List.of(totals(TOUR_ID, 20, 2), totals(2, 5, 1), totals(3, 0, 0)));
+
+    // invoke and verify getAverageScores keeps the requested order and skips unrated tours
+    assertThat(service.getAverageScores(List.of(2, TOUR_ID, 3)), is(Map.of(2, 5.0, TOUR_ID, 10.0)));
+    assertThat(List.copyOf(service.getAverageScores(List.of(2, TOUR_ID, 3)).keySet()), is(List.of(2, TOUR_ID)));
+  }
+
+  @Test
+  public void streamRatings() {
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
+    AtomicBoolean closed = new AtomicBoolean();
+    TourRatingView view = mock(TourRatingView.class);
+    when(tourRatingRepositoryMock.streamByTourId(TOUR_ID))
+        .thenReturn(Stream.of(view, view).onClose(() -> closed.set(true)));
+
+    // invoke streamRatings and verify every row reaches the consumer and the cursor is closed
+    List<TourRatingView> seen = new ArrayList<>();
+    service.streamRatings(TOUR_ID, seen::add);
+    assertThat(seen.size(), is(2));
+    assertThat(closed.get(), is(true));
   }
 
   @Test
   public void lookupRatings() {
     // create mocks of Pageable and Page (only needed in this test)
     List list = mock(List.class);
-    when(tourRepositoryMock.findById(TOUR_ID)).thenReturn(Optional.of(tourMock));
-    when(tourMock.getId()).thenReturn(TOUR_ID);
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
 
     when(tourRatingRepositoryMock.findByTourId(TOUR_ID)).thenReturn(list);
 
@@ -110,6 +175,41 @@ public class TourRatingServiceTest {
     assertThat(service.lookupRatings(TOUR_ID), is(list));
   }
 
+  @Test
+  public void getScoreDistribution() {
+    ScoreDistribution distribution = new ScoreDistribution(TOUR_ID, new long[6], 0, null, null, null, null);
+    when(scoreHistogramMock.distribution(TOUR_ID)).thenReturn(distribution);
+
+    // invoke and verify the distribution comes from the histogram, not the repositories
+    assertThat(service.getScoreDistribution(TOUR_ID), is(distribution));
+    verify(tourRepositoryMock, never()).existsById(anyInt());
+  }
+
+  @Test
+  public void lookupRatingsPage() {
+    List<TourRatingView> page = List.of(mock(TourRatingView.class));
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
+    when(tourRatingRepositoryMock.findPageByTourId(TOUR_ID, 42, PageRequest.of(0, 10))).thenReturn(page);
+
+    // invoke and verify the keyset page is read after the given id
+    assertThat(service.lookupRatings(TOUR_ID, 42, 10), is(page));
+  }
+
+  @Test
+  public void lookupRatingsPageOfUnknownTour() {
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(false);
+    assertThrows(NoSuchElementException.class, () -> service.lookupRatings(TOUR_ID, 0, 10));
+  }
+
+  @Test
+  public void updateSomeRejectsScoreOutOfRange() {
+    assertThrows(ConstraintViolationException.class,
+        () -> service.updateSome(TOUR_ID, CUSTOMER_ID, Optional.of(9), Optional.empty()));
+
+    verify(tourRatingRepositoryMock, never()).save(any(TourRating.class));
+    verifyNoInteractions(tourRatingStatsRepositoryMock);
+  }
+
   /**************************************************************************************
    *
    * Verify the invocation of dependencies.
@@ -120,49 +220,117 @@ public class TourRatingServiceTest {
   public void delete() {
     when(tourRatingRepositoryMock.findByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID))
         .thenReturn(Optional.of(tourRatingMock));
+    when(tourRatingMock.getScore()).thenReturn(4);
 
     // invoke delete
     service.delete(1, CUSTOMER_ID);
 
-    // verify tourRatingRepository.delete invoked
+    // verify tourRatingRepository.delete invoked and the score removed from the statistics
     verify(tourRatingRepositoryMock).delete(any(TourRating.class));
+    verify(tourRatingStatsRepositoryMock).adjust(eq(TOUR_ID), aryEq(new long[] { 0, 0, 0, 0, -1, 0 }));
+    verify(eventPublisherMock).publishEvent(new TourRatingEvent(TOUR_ID, List.of(CUSTOMER_ID),
+        TourRatingEvent.Change.DELETED));
   }
 
   @Test
   public void rateMany() {
-    when(tourRepositoryMock.findById(TOUR_ID)).thenReturn(Optional.of(tourMock));
-    when(tourRatingRepositoryMock.findByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID))
-        .thenReturn(Optional.empty());
-    when(tourRatingRepositoryMock.findByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID + 1))
-        .thenReturn(Optional.empty());
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
+    when(tourRatingRepositoryMock.findRatedCustomers(TOUR_ID, List.of(CUSTOMER_ID, CUSTOMER_ID + 1)))
+        .thenReturn(List.of());
 
     // invoke rateMany
-    service.rateMany(TOUR_ID, 10, List.of(CUSTOMER_ID, CUSTOMER_ID + 1));
+    service.rateMany(TOUR_ID, 4, List.of(CUSTOMER_ID, CUSTOMER_ID + 1));
+
+    // verify one batch insert instead of a save per customer
+    verify(tourRatingRepositoryMock).insertAll(TOUR_ID, 4, List.of(CUSTOMER_ID, CUSTOMER_ID + 1));
+    verify(tourRatingRepositoryMock, never()).save(any(TourRating.class));
 
-    // verify tourRatingRepository.save invoked twice
-    verify(tourRatingRepositoryMock, times(2)).save(any(TourRating.class));
+    // verify both ratings added to the statistics at once
+    verify(tourRatingStatsRepositoryMock).adjust(eq(TOUR_ID), aryEq(new long[] { 0, 0, 0, 0, 2, 0 }));
+
+    // verify a single event published for both customers
+    verify(eventPublisherMock).publishEvent(new TourRatingEvent(TOUR_ID, List.of(CUSTOMER_ID, CUSTOMER_ID + 1),
+        TourRatingEvent.Change.CREATED));
+  }
+
+  @Test
+  public void rateManyChecksDuplicatesInChunks() {
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
+    List<Integer> customers = IntStream.range(0, 2500).boxed().toList();
+    when(tourRatingRepositoryMock.findRatedCustomers(anyInt(), anyList())).thenReturn(List.of());
+    when(tourRatingRepositoryMock.findRatedCustomers(TOUR_ID, customers.subList(2000, 2500)))
+        .thenReturn(List.of(2400));
+
+    assertThrows(ConstraintViolationException.class, () -> service.rateMany(TOUR_ID, 4, customers));
+    verify(tourRatingRepositoryMock, times(3)).findRatedCustomers(anyInt(), anyList());
+    verify(tourRatingRepositoryMock, never()).insertAll(anyInt(), anyInt(), anyList());
+  }
+
+  @Test
+  public void rateManyRejectsRepeatedCustomers() {
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
+
+    assertThrows(ConstraintViolationException.class,
+        () -> service.rateMany(TOUR_ID, 4, List.of(CUSTOMER_ID, CUSTOMER_ID)));
+    verify(tourRatingRepositoryMock, never()).insertAll(anyInt(), anyInt(), anyList());
+  }
+
+  @Test
+  public void rateManyRejectsNullCustomers() {
+    assertThrows(ConstraintViolationException.class,
+        () -> service.rateMany(TOUR_ID, 4, Arrays.asList(CUSTOMER_ID, null)));
+    verify(tourRatingRepositoryMock, never()).insertAll(anyInt(), anyInt(), anyList());
   }
 
   @Test
   public void update() {
-    when(tourRatingRepositoryMock.findByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID))
-        .thenReturn(Optional.of(tourRatingMock));
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
+    when(tourRatingRepositoryMock.upsert(TOUR_ID, CUSTOMER_ID, 5, "great"))
+        .thenReturn(new TourRatingUpsert(false, 3));
 
     // invoke update
-    service.update(TOUR_ID, CUSTOMER_ID, 5, "great");
+    assertThat(service.update(TOUR_ID, CUSTOMER_ID, 5, "great"), is(false));
 
-    // verify tourRatingRepository.save invoked once
-    verify(tourRatingRepositoryMock).save(any(TourRating.class));
+    // verify a single upsert instead of a lookup and a save
+    verify(tourRatingRepositoryMock, never()).findByTourIdAndCustomerId(anyInt(), anyInt());
+    verify(tourRatingRepositoryMock, never()).save(any(TourRating.class));
 
-    // verify and tourRating setter methods invoked
-    verify(tourRatingMock).setComment("great");
-    verify(tourRatingMock).setScore(5);
+    // verify the rating moved from the previous score to the new one in one upsert
+    verify(tourRatingStatsRepositoryMock).adjust(eq(TOUR_ID), aryEq(new long[] { 0, 0, 0, -1, 0, 1 }));
+    verify(eventPublisherMock).publishEvent(new TourRatingEvent(TOUR_ID, List.of(CUSTOMER_ID),
+        TourRatingEvent.Change.UPDATED));
+
+    // verify the histogram is told about both score changes
+    ArgumentCaptor<TourScoresEvent> scores = ArgumentCaptor.forClass(TourScoresEvent.class);
+    verify(eventPublisherMock).publishEvent(scores.capture());
+    assertThat(scores.getValue().deltas(), is(new long[] { 0, 0, 0, -1, 0, 1 }));
+  }
+
+  @Test
+  public void updateCreatesMissingRating() {
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
+    when(tourRatingRepositoryMock.upsert(TOUR_ID, CUSTOMER_ID, 5, null))
+        .thenReturn(new TourRatingUpsert(true, null));
+
+    // invoke update and verify the new rating only added to the statistics
+    assertThat(service.update(TOUR_ID, CUSTOMER_ID, 5, null), is(true));
+    verify(tourRatingStatsRepositoryMock).adjust(eq(TOUR_ID), aryEq(new long[] { 0, 0, 0, 0, 0, 1 }));
+    verify(eventPublisherMock).publishEvent(new TourRatingEvent(TOUR_ID, List.of(CUSTOMER_ID),
+        TourRatingEvent.Change.CREATED));
+  }
+
+  @Test
+  public void updateOfUnknownTour() {
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(false);
+    assertThrows(NoSuchElementException.class, () -> service.update(TOUR_ID, CUSTOMER_ID, 5, null));
+    verify(tourRatingRepositoryMock, never()).upsert(anyInt(), anyInt(), any(), any());
   }
 
   @Test
   public void updateSome() {
     when(tourRatingRepositoryMock.findByTourIdAndCustomerId(TOUR_ID, CUSTOMER_ID))
         .thenReturn(Optional.of(tourRatingMock));
+    when(tourRatingMock.getScore()).thenReturn(1);
 
     // invoke updateSome
     service.updateSome(TOUR_ID, CUSTOMER_ID, Optional.of(1), Optional.of("awful"));
@@ -185,7 +353,8 @@ public class TourRatingServiceTest {
 
   @Test
   public void createNew() {
-    when(tourRepositoryMock.findById(TOUR_ID)).thenReturn(Optional.of(tourMock));
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(true);
+    when(tourRepositoryMock.getReferenceById(TOUR_ID)).thenReturn(tourMock);
     // prepare to capture a TourRating Object
     ArgumentCaptor<TourRating> tourRatingCaptor = ArgumentCaptor.forClass(TourRating.class);
 
@@ -196,11 +365,27 @@ public class TourRatingServiceTest {
     // Object
     verify(tourRatingRepositoryMock).save(tourRatingCaptor.capture());
 
-    // verify the attributes of the Tour Rating Object
+    // verify the attributes of the Tour Rating Object, linked to the tour without loading it
+    verify(tourRepositoryMock, never()).findById(anyInt());
     assertThat(tourRatingCaptor.getValue().getTour(), is(tourMock));
     assertThat(tourRatingCaptor.getValue().getCustomerId(), is(CUSTOMER_ID));
     assertThat(tourRatingCaptor.getValue().getScore(), is(2));
     assertThat(tourRatingCaptor.getValue().getComment(), is("ok"));
+
+    // the rating is added to the statistics with one upsert
+    verify(tourRatingStatsRepositoryMock).adjust(eq(TOUR_ID), aryEq(new long[] { 0, 0, 1, 0, 0, 0 }));
+  }
+
+  @Test
+  public void createNewWithoutScore() {
+    assertThrows(ConstraintViolationException.class, () -> service.createNew(TOUR_ID, CUSTOMER_ID, null, "ok"));
+    verify(tourRatingRepositoryMock, never()).save(any(TourRating.class));
+  }
+
+  @Test
+  public void updateWithoutScore() {
+    assertThrows(ConstraintViolationException.class, () -> service.update(TOUR_ID, CUSTOMER_ID, null, "ok"));
+    verify(tourRatingRepositoryMock, never()).upsert(anyInt(), anyInt(), any(), any());
   }
 
   /**
@@ -208,7 +393,7 @@ public class TourRatingServiceTest {
    */
   @Test
   public void testNotFound() {
-    when(tourRepositoryMock.findById(TOUR_ID)).thenReturn(Optional.empty());
+    when(tourRepositoryMock.existsById(TOUR_ID)).thenReturn(false);
     
     assertThrows(NoSuchElementException.class, () -> 
         service.lookupRatings(TOUR_ID)
@@ -0,0 +1,112 @@
+package com.example.explorecalijpa.business;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * Many threads creating and replacing the ratings of the same few customers:
+ * the (tour_id, customer_id) key must leave exactly one rating per customer
+ * and the statistics must match the ratings. Prints the upsert throughput
+ * with -Dbenchmarks=true.
+ */
+@SpringBootTest(properties = "logging.level.com.example.explorecalijpa=WARN")
+@DirtiesContext
+public class TourRatingUpsertConcurrencyTest {
+
+  private static final int TOUR_ID = 2;
+  private static final int THREADS = 8;
+  private static final int UPSERTS_PER_THREAD = 250;
+  private static final int CUSTOMERS = 20;
+  private static final int FIRST_CUSTOMER = 9_000_000;
+
+  @Autowired
+  private TourRatingService service;
+
+  @Autowired
+  private JdbcTemplate jdbc;
+
+  @Test
+  public void concurrentUpsertsLeaveOneRatingPerCustomer() throws Exception {
+    long start = System.nanoTime();
+    runConcurrently(() -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      for (int i = 0; i < UPSERTS_PER_THREAD; i++) {
+        service.update(TOUR_ID, FIRST_CUSTOMER + random.nextInt(CUSTOMERS), random.nextInt(6), "stress");
+      }
+      return null;
+    });
+    long ms = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+    if (Boolean.getBoolean("benchmarks")) {
+      System.out.printf("upsert threads=%d upserts=%d took %d ms (%d/s)%n", THREADS,
+          THREADS * UPSERTS_PER_THREAD, ms, THREADS * UPSERTS_PER_THREAD * 1000L / ms);
+    }
+
+    assertThat(jdbc.queryForObject("""
+        SELECT COUNT(*) FROM tour_rating
+        WHERE tour_id = ? AND customer_id >= ? AND customer_id < ?
+        """, Integer.class, TOUR_ID, FIRST_CUSTOMER, FIRST_CUSTOMER + CUSTOMERS), is(CUSTOMERS));
+    assertStatsMatchRatings();
+  }
+
+  @Test
+  public void concurrentCreatesOfOneRatingCreateItOnce() throws Exception {
+    int customer = FIRST_CUSTOMER + 1_000;
+    AtomicInteger created = new AtomicInteger();
+    AtomicInteger rejected = new AtomicInteger();
+    runConcurrently(() -> {
+      try {
+        service.createNew(TOUR_ID, customer, 4, null);
+        created.incrementAndGet();
+      } catch (DataIntegrityViolationException e) {
+        rejected.incrementAndGet();
+      }
+      return null;
+    });
+
+    assertThat(created.get(), is(1));
+    assertThat(rejected.get(), is(THREADS - 1));
+    assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM tour_rating WHERE tour_id = ? AND customer_id = ?",
+        Integer.class, TOUR_ID, customer), is(1));
+    assertStatsMatchRatings();
+  }
+
+  private void assertStatsMatchRatings() {
+    assertThat(jdbc.queryForObject("SELECT review_count FROM tour_rating_stats WHERE tour_id = ?",
+        Long.class, TOUR_ID), is(jdbc.queryForObject("SELECT COUNT(*) FROM tour_rating WHERE tour_id = ?",
+            Long.class, TOUR_ID)));
+    assertThat(jdbc.queryForObject("SELECT score_sum FROM tour_rating_stats WHERE tour_id = ?",
+        Long.class, TOUR_ID), is(jdbc.queryForObject("SELECT SUM(score) FROM tour_rating WHERE tour_id = ?",
+            Long.class, TOUR_ID)));
+  }
+
+  private static void runConcurrently(Callable<Void> task) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        futures.add(pool.submit(task));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
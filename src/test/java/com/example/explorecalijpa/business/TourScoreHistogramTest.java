@@ -0,0 +1,102 @@
+package com.example.explorecalijpa.business;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.explorecalijpa.model.TourRatingStats;
+import com.example.explorecalijpa.repo.TourRatingStatsRepository;
+
+public class TourScoreHistogramTest {
+
+  private TourScoreHistogram histogram;
+
+  @BeforeEach
+  public void setUp() {
+    // tour 1: six 5s and two 1s, as seeded by V1.4
+    TourRatingStatsRepository repo = mock(TourRatingStatsRepository.class);
+    when(repo.findAll()).thenReturn(List.of(new TourRatingStats(1).adjust(5, 6).adjust(1, 2)));
+    histogram = new TourScoreHistogram(repo);
+    histogram.rebuild();
+  }
+
+  @Test
+  public void seededFromStatistics() {
+    ScoreDistribution distribution = histogram.distribution(1);
+    assertThat(distribution.counts(), is(new long[] { 0, 2, 0, 0, 0, 6 }));
+    assertThat(distribution.total(), is(8L));
+    assertThat(distribution.mean(), is(4.0));
+    assertThat(distribution.p50(), is(5));
+    assertThat(distribution.p90(), is(5));
+    assertThat(distribution.p99(), is(5));
+  }
+
+  @Test
+  public void percentilesFollowCumulativeCounts() {
+    histogram.onScoresChanged(new TourScoresEvent(1, new long[] { 0, 6, 0, 0, 0, -5 }));
+
+    ScoreDistribution distribution = histogram.distribution(1);
+    assertThat(distribution.counts(), is(new long[] { 0, 8, 0, 0, 0, 1 }));
+    assertThat(distribution.p50(), is(1));
+    assertThat(distribution.p90(), is(5));
+  }
+
+  @Test
+  public void committedChangesMoveTheCounts() {
+    histogram.onScoresChanged(new TourScoresEvent(2, new long[] { 0, 0, 0, 3, 0, 0 }));
+    histogram.onScoresChanged(new TourScoresEvent(2, new long[] { 0, 0, 0, -1, 1, 0 }));
+
+    ScoreDistribution distribution = histogram.distribution(2);
+    assertThat(distribution.counts(), is(new long[] { 0, 0, 0, 2, 1, 0 }));
+    assertThat(distribution.mean(), is(10.0 / 3));
+    assertThat(distribution.p50(), is(3));
+  }
+
+  @Test
+  public void scoresOutsideTheHistogramAreNotCounted() {
+    assertThat(TourScoreHistogram.deltas(10, 2), is(new long[TourScoreHistogram.SCORES]));
+    assertThat(TourScoreHistogram.deltas(-1, 2), is(new long[TourScoreHistogram.SCORES]));
+    assertThat(TourScoreHistogram.deltas(4, 2), is(new long[] { 0, 0, 0, 0, 2, 0 }));
+  }
+
+  @Test
+  public void updatesDuringARebuildAreNotLost() throws Exception {
+    TourRatingStatsRepository repo = mock(TourRatingStatsRepository.class);
+    TourScoreHistogram histogram = new TourScoreHistogram(repo);
+    CountDownLatch reloading = new CountDownLatch(1);
+    AtomicLong countedDuringReload = new AtomicLong();
+    when(repo.findAll()).thenAnswer(inv -> {
+      reloading.countDown();
+      Thread.sleep(100);
+      countedDuringReload.set(histogram.distribution(1).total());
+      return List.of(new TourRatingStats(1).adjust(5, 6));
+    });
+    Thread rebuild = new Thread(histogram::rebuild);
+    rebuild.start();
+    reloading.await();
+
+    // waits for the reload instead of landing in counters it is clearing
+    histogram.onScoresChanged(new TourScoresEvent(1, new long[] { 0, 0, 0, 0, 0, 1 }));
+    rebuild.join();
+
+    assertThat(countedDuringReload.get(), is(0L));
+    assertThat(histogram.distribution(1).counts(), is(new long[] { 0, 0, 0, 0, 0, 7 }));
+  }
+
+  @Test
+  public void tourWithoutRatingsIsEmpty() {
+    ScoreDistribution distribution = histogram.distribution(42);
+    assertThat(distribution.total(), is(0L));
+    assertThat(distribution.mean(), is(nullValue()));
+    assertThat(distribution.p50(), is(nullValue()));
+  }
+}
@@ -0,0 +1,207 @@
+package com.example.explorecalijpa.business;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+import com.example.explorecalijpa.model.Tour;
+import com.example.explorecalijpa.repo.TourRepository;
+import com.example.explorecalijpa.repo.TourTextView;
+
+public class TourSearchIndexTest {
+
+  private TourRepository repo;
+  private TourSearchIndex index;
+
+  @BeforeEach
+  public void setUp() {
+    repo = mock(TourRepository.class);
+    when(repo.findAllText()).thenReturn(texts(
+        tour(1, "Big Sur Retreat", "Big Sur is big country.", "Hiking, National Parks, Big Sur"),
+        tour(2, "Wine Country Cycling", "Cycle past the wineries of Paso Robles.", "Cycling, Wine"),
+        tour(3, "Hot Springs Getaway", "Soak in the springs, then taste a local wine.", "Spa, Relaxation")));
+    index = new TourSearchIndex(repo);
+    index.rebuild();
+  }
+
+  @Test
+  public void tokenize() {
+    assertThat(TourSearchIndex.tokenize("The Café-Tour, 3 days & a HIKE!"),
+        is(List.of("cafe", "tour", "days", "hike")));
+    assertThat(TourSearchIndex.tokenize(null), is(empty()));
+  }
+
+  @Test
+  public void ranksTitleAndKeywordMatchesFirst() {
+    assertThat(ids(index.search("wine", 10)), contains(2, 3));
+  }
+
+  @Test
+  public void matchesPrefixes() {
+    assertThat(ids(index.search("win", 10)), contains(2, 3));
+    assertThat(ids(index.search("hik", 10)), contains(1));
+  }
+
+  @Test
+  public void exactTermScoresMoreThanLongerTerm() {
+    when(repo.findAllText()).thenReturn(texts(
+        tour(1, "Spring", "Spring", null),
+        tour(2, "Springs", "Springs", null)));
+    index.rebuild();
+
+    List<TourSearchHit> hits = index.search("spring", 10);
+    assertThat(ids(hits), contains(1, 2));
+    assertThat(hits.get(0).score(), greaterThan(hits.get(1).score()));
+  }
+
+  @Test
+  public void everyTermAddsToTheScore() {
+    List<TourSearchHit> hits = index.search("springs wine", 10);
+    assertThat(ids(hits), contains(3, 2));
+  }
+
+  @Test
+  public void noMatch() {
+    assertThat(index.search("snowboard", 10), is(empty()));
+    assertThat(index.search("the and", 10), is(empty()));
+    assertThat(index.search("  ", 10), is(empty()));
+  }
+
+  @Test
+  public void limit() {
+    assertThat(index.search("wine", 1).size(), is(1));
+  }
+
+  @Test
+  public void changesReindexOneTour() {
+    index.onTourChanged(new TourChangedEvent(4, tour(4, "Snowboard Cali", "Powder days in Tahoe.", "Snow")));
+    assertThat(ids(index.search("snowboard", 10)), contains(4));
+    assertThat(index.size(), is(4));
+
+    index.onTourChanged(new TourChangedEvent(2, tour(2, "Coastal Cycling", "Cycle the coast.", "Cycling")));
+    assertThat(ids(index.search("wine", 10)), contains(3));
+
+    index.onTourChanged(new TourChangedEvent(3, null));
+    assertThat(index.search("wine", 10), is(empty()));
+    assertThat(index.size(), is(3));
+  }
+
+  @Test
+  public void shortPrefixesExpandToTheMostCommonTerms() {
+    // 80 terms starting with "za", one per tour; "zazz", the last of them,
+    // is in three more tours
+    List<Tour> tours = new ArrayList<>();
+    for (int id = 1; id <= 80; id++) {
+      tours.add(tour(id, "Tour", "za" + (char) ('a' + id / 26) + (char) ('a' + id % 26), null));
+    }
+    for (int id = 81; id <= 83; id++) {
+      tours.add(tour(id, "Tour", "zazz", null));
+    }
+    when(repo.findAllText()).thenReturn(texts(tours.toArray(new Tour[0])));
+    index.rebuild();
+
+    List<Integer> hits = ids(index.search("za", 100));
+    assertThat(hits.size(), is(TourSearchIndex.MAX_EXPANSIONS + 2));
+    assertThat(hits.containsAll(List.of(81, 82, 83)), is(true));
+    // the exact term is kept however rare
+    assertThat(ids(index.search("zaab", 100)), contains(1));
+  }
+
+  /**
+   * Synthetic catalog of 2,000 tours, 20,000 two-term prefix queries; run
+   * with -Dbenchmarks=true.
+   */
+  @Test
+  @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+  public void searchLatency() {
+    Random random = new Random(42);
+    String[] words = new String[5_000];
+    for (int w = 0; w < words.length; w++) {
+      words[w] = Integer.toString(w * 7919 + 100_000, 36);
+    }
+    List<Tour> tours = new ArrayList<>();
+    for (int id = 1; id <= 2_000; id++) {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 300; i++) {
+        text.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      tours.add(tour(id, words[random.nextInt(words.length)], text.toString(), words[random.nextInt(words.length)]));
+    }
+    when(repo.findAllText()).thenReturn(texts(tours.toArray(new Tour[0])));
+    index.rebuild();
+
+    // warm up: the first queries run interpreted
+    for (int q = 0; q < 20_000; q++) {
+      index.search(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)].substring(0, 3),
+          10);
+    }
+    long[] nanos = new long[20_000];
+    for (int q = 0; q < nanos.length; q++) {
+      String query = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)].substring(0, 3);
+      long start = System.nanoTime();
+      index.search(query, 10);
+      nanos[q] = System.nanoTime() - start;
+    }
+    Arrays.sort(nanos);
+    long p50 = nanos[nanos.length / 2];
+    long p99 = nanos[nanos.length * 99 / 100];
+    System.out.printf("search tours=%d p50=%d us p99=%d us%n", tours.size(), p50 / 1_000, p99 / 1_000);
+    assertThat(p99, lessThan(1_000_000L));
+  }
+
+  private static Tour tour(int id, String title, String description, String keywords) {
+    Tour tour = new Tour(title, description, "", 100, "1 day", "", keywords, null, Difficulty.Easy,
+        Region.Central_Coast);
+    ReflectionTestUtils.setField(tour, "id", id);
+    return tour;
+  }
+
+  private static List<TourTextView> texts(Tour... tours) {
+    return Arrays.stream(tours).map(tour -> (TourTextView) new TourTextView() {
+      public Integer getId() {
+        return tour.getId();
+      }
+
+      public String getTitle() {
+        return tour.getTitle();
+      }
+
+      public String getKeywords() {
+        return tour.getKeywords();
+      }
+
+      public String getDescription() {
+        return tour.getDescription();
+      }
+
+      public String getBlurb() {
+        return tour.getBlurb();
+      }
+
+      public String getBullets() {
+        return tour.getBullets();
+      }
+    }).toList();
+  }
+
+  private static List<Integer> ids(List<TourSearchHit> hits) {
+    return hits.stream().map(TourSearchHit::tourId).toList();
+  }
+}
@@ -0,0 +1,108 @@
+package com.example.explorecalijpa.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CachingPasswordEncoderTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger verifications = new AtomicInteger();
+
+  private final PasswordEncoder bcrypt = PasswordEncoderFactories.createDelegatingPasswordEncoder();
+  private final PasswordEncoder counting = new PasswordEncoder() {
+    @Override
+    public String encode(CharSequence rawPassword) {
+      return bcrypt.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      verifications.incrementAndGet();
+      return bcrypt.matches(rawPassword, encodedPassword);
+    }
+  };
+
+  private final CachingPasswordEncoder encoder = new CachingPasswordEncoder(counting, 2, Duration.ofMinutes(1),
+      now::get);
+
+  @Test
+  void successfulVerificationIsRemembered() {
+    String hash = encoder.encode("password");
+
+    assertThat(encoder.matches("password", hash)).isTrue();
+    assertThat(encoder.matches("password", hash)).isTrue();
+
+    assertThat(verifications).hasValue(1);
+  }
+
+  @Test
+  void failedVerificationIsNotRemembered() {
+    String hash = encoder.encode("password");
+
+    assertThat(encoder.matches("wrong", hash)).isFalse();
+    assertThat(encoder.matches("wrong", hash)).isFalse();
+
+    assertThat(verifications).hasValue(2);
+    assertThat(encoder.size()).isZero();
+  }
+
+  @Test
+  void rememberedVerificationDoesNotMatchAnotherPasswordOrHash() {
+    String hash = encoder.encode("password");
+    assertThat(encoder.matches("password", hash)).isTrue();
+
+    assertThat(encoder.matches("Password", hash)).isFalse();
+    // a changed password has a new hash
+    assertThat(encoder.matches("password", encoder.encode("changed"))).isFalse();
+  }
+
+  @Test
+  void verificationExpires() {
+    String hash = encoder.encode("password");
+    encoder.matches("password", hash);
+
+    now.addAndGet(Duration.ofMinutes(1).toNanos());
+    assertThat(encoder.matches("password", hash)).isTrue();
+
+    assertThat(verifications).hasValue(2);
+  }
+
+  @Test
+  void boundedToMaxSize() {
+    String user = encoder.encode("password");
+    String admin = encoder.encode("admin123");
+    String guest = encoder.encode("guest");
+    encoder.matches("password", user);
+    encoder.matches("admin123", admin);
+    encoder.matches("guest", guest);
+
+    assertThat(encoder.size()).isEqualTo(2);
+    encoder.matches("password", user);
+    assertThat(verifications).hasValue(4);
+  }
+
+  @Test
+  void hitsAndMissesAreCounted() {
+    var registry = new SimpleMeterRegistry();
+    encoder.bindTo(registry);
+    String hash = encoder.encode("password");
+
+    encoder.matches("password", hash);
+    encoder.matches("password", hash);
+
+    assertThat(registry.get("cache.gets").tag("cache", "credentials").tag("result", "hit")
+        .functionCounter().count()).isEqualTo(1.0);
+    assertThat(registry.get("cache.gets").tag("cache", "credentials").tag("result", "miss")
+        .functionCounter().count()).isEqualTo(1.0);
+    assertThat(registry.get("cache.size").tag("cache", "credentials").gauge().value()).isEqualTo(1.0);
+  }
+}
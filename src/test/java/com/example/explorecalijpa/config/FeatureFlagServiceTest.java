@@ -0,0 +1,154 @@
+package com.example.explorecalijpa.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+class FeatureFlagServiceTest {
+
+  private final Map<String, Object> properties = new HashMap<>();
+  private final StandardEnvironment environment = new StandardEnvironment();
+
+  FeatureFlagServiceTest() {
+    environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+  }
+
+  @Test
+  void booleanFlags() {
+    properties.put("features.tour-ratings", "true");
+    properties.put("features.import", "false");
+    var service = new FeatureFlagService(environment);
+
+    assertThat(service.isEnabled("tour-ratings")).isTrue();
+    assertThat(service.isEnabled("tour-ratings", 42)).isTrue();
+    assertThat(service.isEnabled("import")).isFalse();
+    assertThat(service.isEnabled("import", 42)).isFalse();
+    assertThat(service.isEnabled("missing")).isFalse();
+  }
+
+  @Test
+  void booleanSpellingsOfSpring() {
+    properties.put("features.a", "on");
+    properties.put("features.b", " YES ");
+    properties.put("features.c", "1");
+    properties.put("features.d", "off");
+    properties.put("features.e", "No");
+    properties.put("features.f", "0");
+    var service = new FeatureFlagService(environment);
+
+    assertThat(service.flags()).containsEntry("a", new FeatureFlag("a", 100))
+        .containsEntry("b", new FeatureFlag("b", 100))
+        .containsEntry("c", new FeatureFlag("c", 100))
+        .containsEntry("d", new FeatureFlag("d", 0))
+        .containsEntry("e", new FeatureFlag("e", 0))
+        .containsEntry("f", new FeatureFlag("f", 0));
+  }
+
+  @Test
+  void invalidFlagIsDisabled() {
+    properties.put("features.tour-ratings", "maybe");
+    properties.put("features.import", "150%");
+    var service = new FeatureFlagService(environment);
+
+    assertThat(service.flags()).containsEntry("tour-ratings", new FeatureFlag("tour-ratings", 0))
+        .containsEntry("import", new FeatureFlag("import", 0));
+  }
+
+  @Test
+  void higherPrecedenceSourceWins() {
+    properties.put("features.tour-ratings", "true");
+    environment.getPropertySources().addFirst(new MapPropertySource("override",
+        Map.of("features.tour-ratings", "false")));
+    var service = new FeatureFlagService(environment);
+
+    assertThat(service.isEnabled("tour-ratings")).isFalse();
+  }
+
+  @Test
+  void refreshPicksUpChanges() {
+    properties.put("features.tour-ratings", "true");
+    var service = new FeatureFlagService(environment);
+
+    properties.put("features.tour-ratings", "false");
+    assertThat(service.isEnabled("tour-ratings")).isTrue();
+    service.refresh();
+    assertThat(service.isEnabled("tour-ratings")).isFalse();
+  }
+
+  @Test
+  void rolloutEnablesAboutThePercentageOfCustomers() {
+    properties.put("features.new-checkout", "25%");
+    var service = new FeatureFlagService(environment);
+
+    long enabled = IntStream.range(0, 100_000).filter(c -> service.isEnabled("new-checkout", c)).count();
+
+    assertThat(enabled).isBetween(24_000L, 26_000L);
+    assertThat(service.isEnabled("new-checkout")).isFalse();
+  }
+
+  @Test
+  void rolloutIsStickyAndOnlyGrows() {
+    // buckets of customers 0 to 7 for new-checkout; a change of the hash moves customers between cohorts
+    int[] buckets = { 46, 24, 49, 2, 87, 45, 88, 76 };
+    for (int customerId = 0; customerId < buckets.length; customerId++) {
+      assertThat(FeatureFlag.bucket("new-checkout", customerId)).isEqualTo(buckets[customerId]);
+    }
+
+    int[] before = IntStream.range(0, 10_000).map(c -> FeatureFlag.bucket("new-checkout", c)).toArray();
+    for (int percentage = 0; percentage <= 100; percentage += 5) {
+      var flag = new FeatureFlag("new-checkout", percentage);
+      for (int customerId = 0; customerId < before.length; customerId++) {
+        assertThat(flag.isEnabled(customerId)).isEqualTo(before[customerId] < percentage);
+      }
+    }
+  }
+
+  @Test
+  void flagsRollOutToDifferentCustomers() {
+    long same = IntStream.range(0, 10_000)
+        .filter(c -> FeatureFlag.bucket("a", c) == FeatureFlag.bucket("b", c)).count();
+
+    assertThat(same).isLessThan(500L);
+  }
+
+  /**
+   * Per-check cost of the snapshot against resolving the property from the
+   * Environment on every check, as before.
+   *
+   * Run with: ./mvnw test -Dtest=FeatureFlagServiceTest -Dbenchmarks=true
+   */
+  @Test
+  @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+  void perCheckCost() {
+    properties.put("features.tour-ratings", "true");
+    var service = new FeatureFlagService(environment);
+    int checks = 5_000_000;
+    String feature = "tour-ratings";
+
+    boolean all = true;
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < checks; i++) {
+        all &= environment.getProperty("features." + feature, Boolean.class, false);
+      }
+      long environmentNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < checks; i++) {
+        all &= service.isEnabled(feature);
+      }
+      long snapshotNanos = System.nanoTime() - start;
+
+      System.out.printf("feature flag check: Environment %.1f ns, snapshot %.1f ns%n",
+          (double) environmentNanos / checks, (double) snapshotNanos / checks);
+    }
+    assertThat(all).isTrue();
+  }
+}
@@ -0,0 +1,152 @@
+package com.example.explorecalijpa.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+class StatementMonitorTest {
+
+  private static final String SELECT = "SELECT name FROM item WHERE id = ? AND name <> ?";
+
+  private final StatementMonitor monitor = new StatementMonitor(Duration.ofSeconds(1), 3, 100);
+  private final DataSource dataSource = MonitoredJdbc.wrap(
+      new DriverManagerDataSource("jdbc:h2:mem:statement-monitor;DB_CLOSE_DELAY=-1"), monitor);
+
+  @Test
+  void statementsAreCountedPerSql() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("CREATE TABLE IF NOT EXISTS item (id INT PRIMARY KEY, name VARCHAR(20))");
+      }
+      for (int i = 0; i < 2; i++) {
+        select(connection, i);
+      }
+    }
+
+    assertThat(monitor.executedCount()).isEqualTo(3);
+    assertThat(monitor.top(StatementMonitor.MOST_FREQUENT, 1))
+        .singleElement()
+        .satisfies(s -> {
+          assertThat(s.sql()).isEqualTo(SELECT);
+          assertThat(s.count()).isEqualTo(2);
+          assertThat(s.maxMillis()).isGreaterThanOrEqualTo(s.meanMillis());
+        });
+  }
+
+  @Test
+  void inListsOfAnySizeAreOneStatement() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("CREATE TABLE IF NOT EXISTS item (id INT PRIMARY KEY, name VARCHAR(20))");
+      }
+      for (int size = 1; size <= 20; size++) {
+        String in = "?" + ", ?".repeat(size - 1);
+        try (PreparedStatement select = connection.prepareStatement("SELECT name FROM item WHERE id in (" + in + ")")) {
+          for (int i = 1; i <= size; i++) {
+            select.setInt(i, i);
+          }
+          select.executeQuery().close();
+        }
+      }
+    }
+
+    assertThat(monitor.top(StatementMonitor.MOST_FREQUENT, 100))
+        .filteredOn(s -> s.sql().startsWith("SELECT"))
+        .singleElement()
+        .satisfies(s -> {
+          assertThat(s.sql()).isEqualTo("SELECT name FROM item WHERE id in (...)");
+          assertThat(s.count()).isEqualTo(20);
+        });
+  }
+
+  @Test
+  void leastExecutedStatementMakesRoomAtTheCap() {
+    StatementMonitor monitor = new StatementMonitor(Duration.ofSeconds(1), 3, 2);
+    monitor.executed("SELECT 1", List.of(), 0, 1_000);
+    monitor.executed("SELECT 1", List.of(), 0, 1_000);
+    monitor.executed("SELECT 2", List.of(), 0, 1_000);
+    monitor.executed("SELECT 3", List.of(), 0, 1_000);
+
+    assertThat(monitor.top(StatementMonitor.MOST_FREQUENT, 10))
+        .extracting(StatementMonitor.StatementSummary::sql)
+        .containsExactlyInAnyOrder("SELECT 1", "SELECT 3");
+  }
+
+  @Test
+  void batchIsOneExecution() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("CREATE TABLE IF NOT EXISTS batched (id INT)");
+      }
+      try (PreparedStatement insert = connection.prepareStatement("INSERT INTO batched (id) VALUES (?)")) {
+        for (int i = 0; i < 5; i++) {
+          insert.setInt(1, i);
+          insert.addBatch();
+        }
+        insert.executeBatch();
+      }
+    }
+
+    assertThat(monitor.executedCount()).isEqualTo(2);
+  }
+
+  @Test
+  void repeatedSqlInARequestIsAnNPlusOneSuspect() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("CREATE TABLE IF NOT EXISTS item (id INT PRIMARY KEY, name VARCHAR(20))");
+      }
+      monitor.beginRequest();
+      for (int i = 0; i < 3; i++) {
+        select(connection, i);
+      }
+    }
+    int statements = monitor.endRequest("GET", "/items");
+
+    assertThat(statements).isEqualTo(3);
+    assertThat(monitor.suspects()).containsExactly(
+        new StatementMonitor.NPlusOneSuspect("GET", "/items", SELECT, 3, 1));
+  }
+
+  @Test
+  void statementsOutsideARequestAreNotCountedToOne() {
+    monitor.executed(SELECT, List.of("Int", "String"), 0, 1_000);
+
+    assertThat(monitor.endRequest("GET", "/items")).isZero();
+    assertThat(monitor.suspects()).isEmpty();
+  }
+
+  @Test
+  void distinctStatementsAreBounded() {
+    var bounded = new StatementMonitor(Duration.ofSeconds(1), 3, 2);
+    for (int i = 0; i < 5; i++) {
+      bounded.executed("SELECT " + i, List.of(), 0, 1_000);
+    }
+
+    assertThat(bounded.top(StatementMonitor.SLOWEST, 10)).hasSize(2);
+    assertThat(bounded.executedCount()).isEqualTo(5);
+  }
+
+  @Test
+  void unwrapReachesTheDataSource() throws SQLException {
+    assertThat(dataSource.isWrapperFor(DriverManagerDataSource.class)).isTrue();
+  }
+
+  private static void select(Connection connection, int id) throws SQLException {
+    try (PreparedStatement select = connection.prepareStatement(SELECT)) {
+      select.setInt(1, id);
+      select.setString(2, "none");
+      select.executeQuery().close();
+    }
+  }
+}
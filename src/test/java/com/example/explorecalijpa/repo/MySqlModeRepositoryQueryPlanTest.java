@@ -0,0 +1,13 @@
+package com.example.explorecalijpa.repo;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * The query plan checks with H2 in MySQL compatibility mode: the migrations
+ * and the SQL Hibernate sends still run in that mode and H2 still finds the
+ * indexes. The plans are H2's, not MySQL's; MySQL plans need EXPLAIN on a
+ * MySQL server.
+ */
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:plans-mysql;MODE=MySQL;DB_CLOSE_DELAY=-1")
+class MySqlModeRepositoryQueryPlanTest extends RepositoryQueryPlanTest {
+}
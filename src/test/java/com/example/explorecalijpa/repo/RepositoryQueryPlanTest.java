@@ -0,0 +1,221 @@
+package com.example.explorecalijpa.repo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.explorecalijpa.model.Difficulty;
+
+/**
+ * Runs every repository query, EXPLAINs the SQL Hibernate sent and fails if
+ * a table is read by a full scan (a table scan, or an index walked without a
+ * condition) where the query should use an index.
+ *
+ * Queries that read a whole table by design name the tables (or the SQL
+ * aliases, to single out one side of a self join) they may scan.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+    + "com.example.explorecalijpa.repo.RepositoryQueryPlanTest$Recorder")
+@Transactional
+class RepositoryQueryPlanTest {
+
+  /**
+   * Keeps the SQL of every statement Hibernate prepares.
+   */
+  public static class Recorder implements StatementInspector {
+    static final List<String> SQL = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+      SQL.add(sql);
+      return sql;
+    }
+  }
+
+  // "SCHEMA"."TABLE" "ALIAS" /* access */ as printed in H2 plans
+  private static final Pattern TABLE_ACCESS = Pattern.compile(
+      "\"?\\w+\"?\\.\"?(\\w+)\"?(?:\\s+\"?(\\w+)\"?)?\\s*/\\*\\s*([^*]*?)\\s*\\*/");
+
+  @Autowired
+  private TourRatingRepository tourRatingRepository;
+
+  @Autowired
+  private TourRatingStatsRepository tourRatingStatsRepository;
+
+  @Autowired
+  private TourRepository tourRepository;
+
+  @Autowired
+  private TourPackageRepository tourPackageRepository;
+
+  @Autowired
+  private JdbcTemplate jdbc;
+
+  // ---------- tour_rating ----------
+
+  @Test
+  void findByTourId() {
+    assertIndexed(() -> tourRatingRepository.findByTourId(1));
+  }
+
+  @Test
+  void findPageByTourId() {
+    assertIndexed(() -> tourRatingRepository.findPageByTourId(1, 0, PageRequest.of(0, 10)));
+  }
+
+  @Test
+  void streamByTourId() {
+    assertIndexed(() -> drain(tourRatingRepository.streamByTourId(1)));
+  }
+
+  @Test
+  void findByTourIdAndCustomerId() {
+    assertIndexed(() -> tourRatingRepository.findByTourIdAndCustomerId(1, 4));
+  }
+
+  @Test
+  void findRatedCustomers() {
+    assertIndexed(() -> tourRatingRepository.findRatedCustomers(1, List.of(4, 5, 6)));
+  }
+
+  @Test
+  void streamsOfAllRatings() {
+    assertIndexed(() -> drain(tourRatingRepository.streamAll()), "tour_rating");
+    assertIndexed(() -> drain(tourRatingRepository.streamRatedTours()), "tour_rating");
+    assertIndexed(() -> drain(tourRatingRepository.streamScores()), "tour_rating");
+  }
+
+  // ---------- tour_rating_stats ----------
+
+  @Test
+  void adjust() {
+    // the values row of the MERGE is the only table it scans
+    assertIndexed(TourRatingStatsRepositoryImpl.H2_ADJUST, "d");
+  }
+
+  @Test
+  void findTotals() {
+    assertIndexed(() -> tourRatingStatsRepository.findTotals(List.of(1, 2)));
+  }
+
+  @Test
+  void findSummary() {
+    assertIndexed(() -> tourRatingStatsRepository.findSummary(1));
+  }
+
+  @Test
+  void statsTopTours() {
+    assertIndexed(() -> tourRatingStatsRepository.findTopTours(PageRequest.of(0, 5)), "tour_rating_stats", "tour");
+  }
+
+  // ---------- tour and tour_package ----------
+
+  @Test
+  void findByDifficulty() {
+    assertIndexed(() -> tourRepository.findByDifficulty(Difficulty.Easy));
+  }
+
+  @Test
+  void findByTourPackageCode() {
+    assertIndexed(() -> tourRepository.findByTourPackageCode("BC"));
+  }
+
+  @Test
+  void tourListings() {
+    assertIndexed(() -> tourRepository.findListingByDifficulty(Difficulty.Easy));
+    assertIndexed(() -> tourRepository.findListingByTourPackageCode("BC"));
+  }
+
+  @Test
+  void findExistingIds() {
+    assertIndexed(() -> tourRepository.findExistingIds(List.of(1, 2, 3)));
+  }
+
+  @Test
+  void snapshotsOfAllTours() {
+    // the tour catalog and the search index read every tour by design
+    assertIndexed(() -> tourRepository.findAllFacets(), "tour");
+    assertIndexed(() -> tourRepository.findAllText(), "tour");
+  }
+
+  @Test
+  void findPackageByName() {
+    // nine packages, not worth an index
+    assertIndexed(() -> tourPackageRepository.findByName("Backpack Cal"), "tour_package");
+  }
+
+  private static void drain(Stream<?> stream) {
+    try (stream) {
+      stream.forEach(row -> {
+      });
+    }
+  }
+
+  /**
+   * Run the query and EXPLAIN every statement it sent.
+   *
+   * @param query   the repository call
+   * @param scanned tables or aliases that may be fully scanned
+   */
+  private void assertIndexed(Runnable query, String... scanned) {
+    Recorder.SQL.clear();
+    query.run();
+    List<String> statements = new ArrayList<>(Recorder.SQL);
+    assertThat(statements).as("statements sent").isNotEmpty();
+
+    for (String sql : statements) {
+      assertIndexed(sql, scanned);
+    }
+  }
+
+  /**
+   * EXPLAIN a statement sent without Hibernate.
+   *
+   * @param sql     the statement
+   * @param scanned tables or aliases that may be fully scanned
+   */
+  private void assertIndexed(String sql, String... scanned) {
+    Set<String> allowed = Stream.of(scanned).map(String::toLowerCase).collect(Collectors.toSet());
+    String plan = explain(sql);
+    Set<String> fullScans = new TreeSet<>();
+    int accesses = 0;
+    Matcher access = TABLE_ACCESS.matcher(plan);
+    while (access.find()) {
+      accesses++;
+      String table = access.group(1).toLowerCase();
+      String alias = access.group(2) == null ? table : access.group(2).toLowerCase();
+      String how = access.group(3);
+      boolean fullScan = how.endsWith(".tableScan") || !how.contains(":");
+      if (fullScan && !allowed.contains(table) && !allowed.contains(alias)) {
+        fullScans.add(table + " " + alias + " /* " + how + " */");
+      }
+    }
+    // a plan the pattern no longer reads would pass without checking anything
+    assertThat(accesses).as("table accesses in plan%n%s", plan).isPositive();
+    assertThat(fullScans).as("full scans in plan%n%s%nof%n%s", plan, sql).isEmpty();
+  }
+
+  private String explain(String sql) {
+    // H2 explains statements with unbound parameters
+    return jdbc.queryForList("EXPLAIN " + sql).stream()
+        .flatMap(row -> row.values().stream())
+        .map(String::valueOf)
+        .collect(Collectors.joining("\n"));
+  }
+}
@@ -0,0 +1,108 @@
+package com.example.explorecalijpa.repo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.TourPackage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Second-level and query cache of the tour reference data: repeated reads
+ * stay off the database, writes through Spring Data REST are saved and
+ * invalidate them.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@DirtiesContext
+class TourPackageCacheTest {
+
+  @Autowired
+  private TourPackageRepository tourPackageRepository;
+
+  @Autowired
+  private TourRepository tourRepository;
+
+  @Autowired
+  private TestRestTemplate template;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private Statistics statistics;
+
+  @BeforeEach
+  void clearCaches() {
+    SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    sessionFactory.getCache().evictAllRegions();
+    statistics = sessionFactory.getStatistics();
+    statistics.clear();
+  }
+
+  @Test
+  void repeatedReadsAreServedFromTheCache() {
+    tourPackageRepository.findByName("Backpack Cal");
+    tourRepository.findByDifficulty(Difficulty.Easy);
+    long statements = statistics.getPrepareStatementCount();
+
+    assertThat(tourPackageRepository.findByName("Backpack Cal")).map(TourPackage::getCode).contains("BC");
+    assertThat(tourRepository.findByDifficulty(Difficulty.Easy)).isNotEmpty();
+    assertThat(tourRepository.findById(1)).isPresent();
+    tourRepository.findById(1);
+
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements + 1);
+    assertThat(statistics.getQueryCacheHitCount()).isEqualTo(2);
+    assertThat(meterRegistry.get("cache.hit.ratio").tag("cache", "tour").gauge().value()).isGreaterThan(0);
+  }
+
+  @Test
+  void restWritesInvalidateTheCache() {
+    assertThat(tourPackageRepository.findByName("Nature Watch")).isPresent();
+
+    ResponseEntity<String> res = template.withBasicAuth("admin", "admin123").exchange("/packages/NW",
+        HttpMethod.PUT, new HttpEntity<>(Map.of("name", "Nature Walk")), String.class);
+    assertThat(res.getStatusCode().is2xxSuccessful()).isTrue();
+
+    assertThat(tourPackageRepository.findByName("Nature Watch")).isEmpty();
+    assertThat(tourPackageRepository.findById("NW")).map(TourPackage::getName).contains("Nature Walk");
+
+    res = template.withBasicAuth("admin", "admin123").exchange("/packages/WT", HttpMethod.PUT,
+        new HttpEntity<>(Map.of("name", "Wine Tasting")), String.class);
+    assertThat(res.getStatusCode().is2xxSuccessful()).isTrue();
+    assertThat(tourPackageRepository.findById("WT")).map(TourPackage::getName).contains("Wine Tasting");
+  }
+
+  @Test
+  void restPatchOfATourIsSaved() {
+    ResponseEntity<String> res = template.withBasicAuth("admin", "admin123").exchange("/tours/2",
+        HttpMethod.PATCH, new HttpEntity<>(Map.of("price", 123, "description", "Fog and redwoods")), String.class);
+    assertThat(res.getStatusCode().is2xxSuccessful()).isTrue();
+
+    // the enhanced tour only flushes the attributes written through its setters
+    assertThat(jdbcTemplate.queryForObject("SELECT price FROM tour WHERE id = 2", Integer.class)).isEqualTo(123);
+    assertThat(jdbcTemplate.queryForObject("SELECT description FROM tour WHERE id = 2", String.class))
+        .isEqualTo("Fog and redwoods");
+  }
+}
@@ -0,0 +1,52 @@
+package com.example.explorecalijpa.repo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * V1.7 keeps the first rating of a customer for a tour and moves the later
+ * ones to tour_rating_duplicate instead of dropping them.
+ */
+class TourRatingDuplicateMigrationTest {
+
+  private static final String INSERT =
+      "INSERT INTO tour_rating (tour_id, customer_id, score, comment) VALUES (?, ?, ?, ?)";
+
+  private final DriverManagerDataSource dataSource =
+      new DriverManagerDataSource("jdbc:h2:mem:duplicate-migration;DB_CLOSE_DELAY=-1");
+  private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+  @Test
+  void duplicatesAreMovedToTheAuditTable() {
+    migrate("1.6");
+    // customer 4 rated tour 1 with a 5 in V1.4, and does twice more
+    long first = jdbcTemplate.queryForObject(
+        "SELECT id FROM tour_rating WHERE tour_id = 1 AND customer_id = 4", Long.class);
+    jdbcTemplate.update(INSERT, 1, 4, 1, "again");
+    jdbcTemplate.update(INSERT, 1, 4, 2, "and again");
+    jdbcTemplate.update(INSERT, 2, 4, 3, "other tour");
+
+    migrate("1.7");
+
+    assertThat(jdbcTemplate.queryForList(
+        "SELECT id FROM tour_rating WHERE tour_id = 1 AND customer_id = 4", Long.class))
+        .containsExactly(first);
+    assertThat(jdbcTemplate.queryForList(
+        "SELECT comment FROM tour_rating_duplicate WHERE kept_id = ? ORDER BY id", String.class, first))
+        .containsExactly("again", "and again");
+    assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tour_rating_duplicate", Integer.class))
+        .isEqualTo(2);
+    // the statistics only count what is left: tour 1 as seeded, tour 2 with the new rating
+    assertThat(jdbcTemplate.queryForList(
+        "SELECT review_count FROM tour_rating_stats ORDER BY tour_id", Long.class))
+        .containsExactly(8L, 2L);
+  }
+
+  private void migrate(String target) {
+    Flyway.configure().dataSource(dataSource).target(target).load().migrate();
+  }
+}
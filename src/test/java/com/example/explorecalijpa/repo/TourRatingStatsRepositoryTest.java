@@ -0,0 +1,88 @@
+package com.example.explorecalijpa.repo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.explorecalijpa.model.TourRatingStats;
+
+import edu.ensign.cs460.recommendation.TourSummary;
+
+/**
+ * Verifies the V1.5 backfill and the aggregate queries against the seeded
+ * ratings of V1.4 (tour 1: six 5s and two 1s, tour 2: one 5).
+ */
+@SpringBootTest
+@Transactional
+class TourRatingStatsRepositoryTest {
+
+  @Autowired
+  private TourRatingStatsRepository repository;
+
+  @Test
+  void backfilledFromSeedRatings() {
+    TourRatingStats stats = repository.findById(1).orElseThrow();
+
+    assertThat(stats.getReviewCount()).isEqualTo(8);
+    assertThat(stats.getScoreSum()).isEqualTo(32);
+    assertThat(stats.getHistogram()).containsExactly(0, 2, 0, 0, 0, 6);
+  }
+
+  @Test
+  void adjustUpdatesSumCountAndHistogram() {
+    repository.adjust(1, new long[] { 0, 0, 0, 2, 0, -1 });
+
+    TourRatingStats stats = repository.findById(1).orElseThrow();
+    assertThat(stats.getReviewCount()).isEqualTo(9);
+    assertThat(stats.getScoreSum()).isEqualTo(33);
+    assertThat(stats.getHistogram()).containsExactly(0, 2, 0, 2, 0, 5);
+  }
+
+  @Test
+  void adjustCreatesTheStatisticsOfTheFirstRating() {
+    repository.adjust(3, new long[] { 0, 0, 0, 1, 0, 0 });
+    repository.adjust(3, new long[] { 0, 0, 0, 0, 1, 0 });
+
+    TourRatingStats stats = repository.findById(3).orElseThrow();
+    assertThat(stats.getReviewCount()).isEqualTo(2);
+    assertThat(stats.getScoreSum()).isEqualTo(7);
+    assertThat(stats.getHistogram()).containsExactly(0, 0, 0, 1, 1, 0);
+  }
+
+  @Test
+  void adjustBumpsTheVersionReadByFindSummary() {
+    repository.adjust(3, new long[] { 0, 0, 0, 1, 0, 0 });
+    assertThat(repository.findSummary(3).orElseThrow().getVersion()).isEqualTo(1L);
+
+    // removing the only rating keeps the row, so a stale summary cannot win
+    repository.adjust(3, new long[] { 0, 0, 0, -1, 0, 0 });
+    var summary = repository.findSummary(3).orElseThrow();
+    assertThat(summary.getVersion()).isEqualTo(2L);
+    assertThat(summary.getReviewCount()).isZero();
+    assertThat(summary.getAvgScore()).isNull();
+  }
+
+  @Test
+  void findTotalsReadsManyToursAtOnce() {
+    var totals = repository.findTotals(List.of(1, 2, 42));
+
+    assertThat(totals).extracting(TourRatingTotals::getTourId).containsExactlyInAnyOrder(1, 2);
+    assertThat(totals).extracting(TourRatingTotals::getAverage).containsExactlyInAnyOrder(4.0, 5.0);
+  }
+
+  @Test
+  void findTopToursOrdersByAverageThenCount() {
+    var top = repository.findTopTours(PageRequest.of(0, 5));
+
+    assertThat(top).extracting(TourSummary::getTourId).containsExactly(2, 1);
+    assertThat(top.get(0).getAvgScore()).isEqualTo(5.0);
+    assertThat(top.get(1).getAvgScore()).isEqualTo(4.0);
+    assertThat(top.get(1).getReviewCount()).isEqualTo(8L);
+  }
+}
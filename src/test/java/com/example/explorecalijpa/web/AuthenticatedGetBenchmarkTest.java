@@ -0,0 +1,60 @@
+package com.example.explorecalijpa.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+
+import com.example.explorecalijpa.config.CachingPasswordEncoder;
+
+/**
+ * Throughput of authenticated GETs with every request paying for a BCrypt
+ * verification (the credential cache cleared before each request) and with
+ * the verification remembered by the CachingPasswordEncoder.
+ *
+ * Run with: ./mvnw test -Dtest=AuthenticatedGetBenchmarkTest -Dbenchmarks=true
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "logging.level.com.example.explorecalijpa=WARN")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class AuthenticatedGetBenchmarkTest {
+
+  private static final int REQUESTS = 2_000;
+
+  @Autowired
+  private TestRestTemplate template;
+
+  @Autowired
+  private CachingPasswordEncoder passwordEncoder;
+
+  @Test
+  void authenticatedGets() {
+    TestRestTemplate user = template.withBasicAuth("user", "password");
+    // warm up
+    for (int i = 0; i < 200; i++) {
+      user.getForEntity("/tours/1", String.class);
+    }
+
+    double uncached = throughput(user, true);
+    double cached = throughput(user, false);
+
+    System.out.printf("authenticated GET /tours/1: %.0f req/s verifying every request, %.0f req/s cached%n",
+        uncached, cached);
+    assertThat(cached).isGreaterThan(uncached);
+  }
+
+  private double throughput(TestRestTemplate user, boolean clearEachRequest) {
+    long start = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      if (clearEachRequest) {
+        passwordEncoder.clear();
+      }
+      assertThat(user.getForEntity("/tours/1", String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+    return REQUESTS / ((System.nanoTime() - start) / 1e9);
+  }
+}
@@ -0,0 +1,88 @@
+package com.example.explorecalijpa.web;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * ETags and 304s of the cached read endpoints, and the writes that change
+ * them.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "features.tour-ratings=true")
+@DirtiesContext
+public class ConditionalGetTest {
+
+  @Autowired
+  private TestRestTemplate template;
+
+  @Test
+  void averageChangesWithTheRatingsOfItsTour() {
+    String etag = assertNotModifiedUntilChanged("/tours/1/ratings/average");
+
+    admin().postForEntity("/tours/2/ratings", new RatingDto(1, null, 8_000), String.class);
+    assertThat(get("/tours/1/ratings/average", etag).getStatusCode(), is(HttpStatus.NOT_MODIFIED));
+
+    admin().postForEntity("/tours/1/ratings", new RatingDto(1, null, 8_001), String.class);
+    ResponseEntity<String> changed = get("/tours/1/ratings/average", etag);
+    assertThat(changed.getStatusCode(), is(HttpStatus.OK));
+    assertThat(changed.getHeaders().getETag(), is(not(etag)));
+  }
+
+  @Test
+  void topRecommendationsChangeWithAnyRating() {
+    String etag = assertNotModifiedUntilChanged("/recommendations/top/5");
+
+    admin().postForEntity("/tours/3/ratings", new RatingDto(5, null, 8_002), String.class);
+    assertThat(get("/recommendations/top/5", etag).getStatusCode(), is(HttpStatus.OK));
+  }
+
+  @Test
+  void packagesChangeWithRestWrites() {
+    String etag = assertNotModifiedUntilChanged("/packages");
+
+    admin().exchange("/packages/SC", HttpMethod.PUT, new HttpEntity<>(Map.of("name", "Snowboard California")),
+        String.class);
+    ResponseEntity<String> changed = get("/packages", etag);
+    assertThat(changed.getStatusCode(), is(HttpStatus.OK));
+    assertThat(changed.getBody().contains("Snowboard California"), is(true));
+  }
+
+  /**
+   * @return the ETag of the resource, after checking it is answered 304.
+   */
+  private String assertNotModifiedUntilChanged(String url) {
+    ResponseEntity<String> first = get(url, null);
+    assertThat(first.getStatusCode(), is(HttpStatus.OK));
+    String etag = first.getHeaders().getETag();
+    assertThat(get(url, null).getHeaders().getETag(), is(etag));
+    assertThat(get(url, etag).getStatusCode(), is(HttpStatus.NOT_MODIFIED));
+    return etag;
+  }
+
+  private ResponseEntity<String> get(String url, String etag) {
+    HttpHeaders headers = new HttpHeaders();
+    if (etag != null) {
+      headers.setIfNoneMatch(etag);
+    }
+    return template.withBasicAuth("user", "password")
+        .exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+  }
+
+  private TestRestTemplate admin() {
+    return template.withBasicAuth("admin", "admin123");
+  }
+}
@@ -0,0 +1,118 @@
+package com.example.explorecalijpa.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.example.explorecalijpa.config.StatementMonitor;
+import com.example.explorecalijpa.model.Tour;
+import com.example.explorecalijpa.model.TourPackage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Statement budgets of the TourRatingController and RecommendationController
+ * endpoints, counted at the JDBC level per request, so the JdbcTemplate
+ * writes count as well as Hibernate's. None of the rating endpoints may load
+ * a Tour or a TourPackage. The second-level cache is emptied before each
+ * test, so the tour existence check is counted unless the test warms it.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+    "features.tour-ratings=true", "spring.jpa.properties.hibernate.generate_statistics=true" })
+@DirtiesContext
+public class EndpointStatementBudgetTest {
+
+  @Autowired
+  private TestRestTemplate template;
+
+  @Autowired
+  private MeterRegistry registry;
+
+  @Autowired
+  private StatementMonitor statementMonitor;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  private StatementBudget budget;
+  private Statistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    budget = new StatementBudget(registry, statementMonitor);
+    SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    sessionFactory.getCache().evictAllRegions();
+    statistics = sessionFactory.getStatistics();
+    statistics.clear();
+  }
+
+  @AfterEach
+  void noToursLoaded() {
+    assertThat(statistics.getEntityStatistics(Tour.class.getName()).getLoadCount()).isZero();
+    assertThat(statistics.getEntityStatistics(TourPackage.class.getName()).getLoadCount()).isZero();
+  }
+
+  @Test
+  void tourRatingReads() {
+    // tour exists + cursor over projections
+    budget.assertAtMost(2, "GET", "/tours/{tourId}/ratings", () -> get("/tours/1/ratings"));
+    // tour exists + rating totals, nothing once the response is cached
+    budget.assertAtMost(2, "GET", "/tours/{tourId}/ratings/average", () -> get("/tours/1/ratings/average"));
+    // served from the in-memory histogram
+    budget.assertAtMost(1, "GET", "/tours/{tourId}/ratings/distribution",
+        () -> get("/tours/1/ratings/distribution"));
+  }
+
+  @Test
+  void tourExistsCheckIsCached() {
+    assertThat(budget.assertAtMost(2, "GET", "/tours/{tourId}/ratings", () -> get("/tours/1/ratings")))
+        .isEqualTo(2);
+    // cursor over projections, the tour exists answer comes from the query cache
+    assertThat(budget.assertAtMost(1, "GET", "/tours/{tourId}/ratings", () -> get("/tours/1/ratings")))
+        .isEqualTo(1);
+    assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void streamedRatings() {
+    // tour exists + cursor over projections
+    budget.assertStreamedAtMost(2, () -> get("/tours/1/ratings?stream=true"));
+    // cursor over projections
+    budget.assertStreamedAtMost(1, () -> get("/tours/ratings"));
+  }
+
+  @Test
+  void tourRatingWrites() {
+    // tour exists + insert + statistics upsert + summary after commit
+    budget.assertAtMost(4, "POST", "/tours/{tourId}/ratings", () -> template.withBasicAuth("admin", "admin123")
+        .postForEntity("/tours/1/ratings", new RatingDto(4, "budget", 9_000), String.class));
+    // rating lookup + one statistics upsert moving the old score to the new one + update + summary after commit
+    budget.assertAtMost(4, "PATCH", "/tours/{tourId}/ratings", () -> template.withBasicAuth("admin", "admin123")
+        .exchange("/tours/1/ratings", HttpMethod.PATCH, new HttpEntity<>(new RatingDto(3, null, 9_000)),
+            String.class));
+  }
+
+  @Test
+  void recommendationsAreServedFromMemory() {
+    budget.assertAtMost(0, "GET", "/recommendations/top/{limit}", () -> get("/recommendations/top/5"));
+    budget.assertAtMost(0, "GET", "/recommendations/customer/{customerId}",
+        () -> get("/recommendations/customer/1"));
+  }
+
+  private ResponseEntity<String> get(String url) {
+    return template.withBasicAuth("user", "password").getForEntity(url, String.class);
+  }
+}
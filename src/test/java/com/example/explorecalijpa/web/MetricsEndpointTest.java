@@ -0,0 +1,55 @@
+package com.example.explorecalijpa.web;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * The Prometheus scrape carries latency histograms per endpoint, service
+ * method and repository method, and the pool and cache gauges. Metrics
+ * export is off in tests unless asked for.
+ */
+@AutoConfigureObservability(tracing = false)
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "features.tour-ratings=true")
+public class MetricsEndpointTest {
+
+  @Autowired
+  private TestRestTemplate template;
+
+  @Test
+  void prometheusScrape() {
+    TestRestTemplate user = template.withBasicAuth("user", "password");
+    user.getForEntity("/tours/1/ratings/distribution", String.class);
+    user.getForEntity("/recommendations/customer/1", String.class);
+
+    ResponseEntity<String> res = user.getForEntity("/actuator/prometheus", String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    String scrape = res.getBody();
+
+    assertThat(scrape, containsString("http_server_requests_seconds_bucket{application=\"explorecali-jpa\""));
+    assertThat(scrape, containsString("uri=\"/tours/{tourId}/ratings/distribution\""));
+    assertThat(scrape, containsString("uri=\"/recommendations/customer/{customerId}\""));
+    assertThat(scrape, containsString("service_invocations_seconds_bucket{"));
+    assertThat(scrape, containsString("class=\"com.example.explorecalijpa.business.TourRatingService\""));
+    assertThat(scrape, containsString("method=\"getScoreDistribution\""));
+    assertThat(scrape, containsString("method=\"recommendForCustomer\""));
+    assertThat(scrape, containsString("spring_data_repository_invocations_seconds_bucket{"));
+    assertThat(scrape, containsString("hikaricp_connections_active{"));
+    assertThat(scrape, containsString("cache_size{application=\"explorecali-jpa\",cache=\"responses\""));
+  }
+
+  @Test
+  void prometheusScrapeNeedsAuthentication() {
+    assertThat(template.getForEntity("/actuator/prometheus", String.class).getStatusCode(),
+        is(HttpStatus.UNAUTHORIZED));
+  }
+}
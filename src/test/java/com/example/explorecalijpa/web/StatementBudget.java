@@ -0,0 +1,85 @@
+package com.example.explorecalijpa.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import org.springframework.http.ResponseEntity;
+
+import com.example.explorecalijpa.config.StatementMonitor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Asserts the most JDBC statements one request to an endpoint may run, from
+ * the {@code http.server.requests.statements} summary StatementCountFilter
+ * records per method and uri template. Catches an N+1 creeping into an
+ * endpoint as soon as the budget is exceeded.
+ *
+ * A streamed body runs after the filter, on another thread; those requests
+ * are counted from all the statements the StatementMonitor saw instead, so
+ * nothing else may run statements meanwhile.
+ */
+final class StatementBudget {
+
+  private final MeterRegistry registry;
+  private final StatementMonitor statementMonitor;
+
+  StatementBudget(MeterRegistry registry, StatementMonitor statementMonitor) {
+    this.registry = registry;
+    this.statementMonitor = statementMonitor;
+  }
+
+  /**
+   * Run one request, assert it succeeded and assert its statement count.
+   *
+   * @param maxStatements the budget
+   * @param method        the HTTP method of the request
+   * @param uri           the uri template it is counted under
+   * @param request       sends the request
+   * @return the statements the request ran
+   */
+  long assertAtMost(long maxStatements, String method, String uri, Supplier<ResponseEntity<?>> request) {
+    long requestsBefore = summary(method, uri) == null ? 0 : summary(method, uri).count();
+    double statementsBefore = summary(method, uri) == null ? 0 : summary(method, uri).totalAmount();
+
+    ResponseEntity<?> response = request.get();
+    // an error response runs fewer statements and would pass any budget
+    assertThat(response.getStatusCode().is2xxSuccessful())
+        .as("status of %s %s: %s", method, uri, response.getStatusCode()).isTrue();
+
+    // the filter records after the response may have reached the client
+    await().atMost(Duration.ofSeconds(5))
+        .until(() -> summary(method, uri) != null && summary(method, uri).count() > requestsBefore);
+    long statements = (long) (summary(method, uri).totalAmount() - statementsBefore);
+    assertThat(statements).as("statements of %s %s", method, uri).isLessThanOrEqualTo(maxStatements);
+    return statements;
+  }
+
+  /**
+   * Run one request with a streamed body, assert it succeeded and assert its
+   * statement count.
+   *
+   * @param maxStatements the budget
+   * @param request       sends the request and reads the whole body
+   * @return the statements the request ran
+   */
+  long assertStreamedAtMost(long maxStatements, Supplier<ResponseEntity<?>> request) {
+    long before = statementMonitor.executedCount();
+
+    ResponseEntity<?> response = request.get();
+    assertThat(response.getStatusCode().is2xxSuccessful())
+        .as("status: %s", response.getStatusCode()).isTrue();
+
+    long statements = statementMonitor.executedCount() - before;
+    assertThat(statements).as("statements").isLessThanOrEqualTo(maxStatements);
+    return statements;
+  }
+
+  private DistributionSummary summary(String method, String uri) {
+    return registry.find(StatementCountFilter.METRIC).tag("method", method).tag("uri", uri).summary();
+  }
+}
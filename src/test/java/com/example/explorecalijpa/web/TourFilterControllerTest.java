@@ -0,0 +1,64 @@
+package com.example.explorecalijpa.web;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.explorecalijpa.business.TourFilterResult;
+
+/**
+ * Filters the tours seeded by V1.2 and checks the totals against SQL.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class TourFilterControllerTest {
+
+  @Autowired
+  private TestRestTemplate template;
+
+  @Autowired
+  private JdbcTemplate jdbc;
+
+  private TestRestTemplate user;
+
+  @BeforeEach
+  void setUpAuth() {
+    user = template.withBasicAuth("user", "password");
+  }
+
+  @Test
+  void noSelection() {
+    TourFilterResult result = user.getForObject("/tours/filter", TourFilterResult.class);
+    assertThat(result.total(), is(count("1 = 1")));
+    assertThat(result.facets().get("difficulty").get("Easy"), is(count("difficulty = 'Easy'")));
+    assertThat(result.facets().get("package").get("BC"), is(count("tour_package_code = 'BC'")));
+  }
+
+  @Test
+  void combinedFacets() {
+    TourFilterResult result = user.getForObject(
+        "/tours/filter?difficulty=Easy&difficulty=Medium&region=Central_Coast&maxPrice=1000",
+        TourFilterResult.class);
+    assertThat(result.total(), is(count("difficulty IN ('Easy', 'Medium') AND region = 'Central Coast'"
+        + " AND CAST(price AS INT) <= 1000")));
+    assertThat(result.facets().get("region").get("Central_Coast"), is(result.total()));
+  }
+
+  @Test
+  void unknownDifficulty() {
+    ResponseEntity<String> res = user.getForEntity("/tours/filter?difficulty=Extreme", String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+  }
+
+  private int count(String where) {
+    return jdbc.queryForObject("SELECT COUNT(*) FROM tour WHERE " + where, Integer.class);
+  }
+}
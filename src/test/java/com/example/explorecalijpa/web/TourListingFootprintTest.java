@@ -0,0 +1,128 @@
+package com.example.explorecalijpa.web;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.explorecalijpa.business.TourService;
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+import com.example.explorecalijpa.model.Tour;
+import com.example.explorecalijpa.repo.TourRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Compares the tour lists with what they cost before the listing projection
+ * and the lazy text columns: the collection excerpt against the full tours
+ * it used to embed, and the heap allocated by a list lookup against loading
+ * the Tour entities with their text.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class TourListingFootprintTest {
+
+  @Autowired
+  private TestRestTemplate template;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private TourService tourService;
+
+  @Autowired
+  private TourRepository tourRepository;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Test
+  void collectionEmbedsListingsOnly() throws Exception {
+    TestRestTemplate user = template.withBasicAuth("user", "password");
+    String listing = user.getForObject("/tours?size=100", String.class);
+    JsonNode tours = objectMapper.readTree(listing).path("_embedded").path("tours");
+    assertThat(tours.isEmpty(), is(false));
+
+    long fullBytes = 0;
+    for (JsonNode tour : tours) {
+      assertThat(tour.has("description"), is(false));
+      assertThat(tour.has("blurb"), is(false));
+      assertThat(tour.has("bullets"), is(false));
+      fullBytes += user.getForObject("/tours/{id}", String.class, tour.get("id").asInt()).length();
+    }
+    System.out.printf("tours=%d collection bytes=%d, the same tours in full=%d bytes%n", tours.size(),
+        listing.length(), fullBytes);
+    assertThat((long) listing.length(), lessThan(fullBytes / 2));
+  }
+
+  @Test
+  @DirtiesContext
+  void deleteCanReturnTheTextOfTheTour() throws Exception {
+    Tour tour = tourService.createTour("Snowboard Cali", "Lazy Text Tour", "Read after delete.", "A blurb.", 100,
+        "1 day", "Bullets", "Lazy", Difficulty.Easy, Region.Varies);
+    entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+    ResponseEntity<String> deleted = template.withBasicAuth("admin", "admin123").exchange("/tours/{id}",
+        HttpMethod.DELETE, new HttpEntity<>(headers), String.class, tour.getId());
+
+    assertThat(deleted.getStatusCode(), is(HttpStatus.OK));
+    assertThat(objectMapper.readTree(deleted.getBody()).path("description").asText(), is("Read after delete."));
+  }
+
+  /**
+   * Run with -Dbenchmarks=true.
+   */
+  @Test
+  @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+  void listAllocatesLessThanEntitiesWithText() {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    for (int round = 0; round < 5; round++) {
+      entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+      long start = threads.getCurrentThreadAllocatedBytes();
+      int listings = tourService.lookupByDifficulty(Difficulty.Easy).size();
+      long listingBytes = threads.getCurrentThreadAllocatedBytes() - start;
+
+      entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+      start = threads.getCurrentThreadAllocatedBytes();
+      // what findByDifficulty cost before: every Tour with its text columns
+      int entities = transactionTemplate.execute(tx -> {
+        List<Tour> tours = tourRepository.findByDifficulty(Difficulty.Easy);
+        tours.forEach(Tour::getDescription);
+        return tours.size();
+      });
+      long entityBytes = threads.getCurrentThreadAllocatedBytes() - start;
+
+      System.out.printf("round %d: %d listings allocated %d bytes, %d entities with text %d bytes%n", round,
+          listings, listingBytes, entities, entityBytes);
+      if (round == 4) {
+        assertThat(listingBytes, lessThan(entityBytes));
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.example.explorecalijpa.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * Times POST /tours/{tourId}/ratings/batch for 10k customers.
+ *
+ * Run with: ./mvnw test -Dtest=TourRatingBatchBenchmarkTest -Dbenchmarks=true
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+    "features.tour-ratings=true", "logging.level.com.example.explorecalijpa=INFO" })
+@DirtiesContext
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class TourRatingBatchBenchmarkTest {
+
+  private static final int CUSTOMERS = 10_000;
+
+  @Autowired
+  private TestRestTemplate template;
+
+  @Autowired
+  private JdbcTemplate jdbc;
+
+  @Test
+  void rateTenThousandCustomers() {
+    TestRestTemplate admin = template.withBasicAuth("admin", "admin123");
+    // warm up
+    admin.postForEntity("/tours/3/ratings/batch?score=4", List.of(1_000_000), String.class);
+
+    List<Integer> customers = IntStream.range(2_000_000, 2_000_000 + CUSTOMERS).boxed().toList();
+    long start = System.nanoTime();
+    ResponseEntity<String> res = admin.postForEntity("/tours/4/ratings/batch?score=4", customers, String.class);
+    long ms = (System.nanoTime() - start) / 1_000_000;
+
+    System.out.printf("rateMany customers=%d took %d ms%n", CUSTOMERS, ms);
+    assertThat(res.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM tour_rating WHERE tour_id = 4", Integer.class))
+        .isEqualTo(CUSTOMERS);
+    assertThat(jdbc.queryForObject("SELECT review_count FROM tour_rating_stats WHERE tour_id = 4", Long.class))
+        .isEqualTo(CUSTOMERS);
+  }
+}
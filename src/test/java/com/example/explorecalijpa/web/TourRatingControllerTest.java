@@ -5,12 +5,19 @@ import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,12 +26,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
+import com.example.explorecalijpa.business.RatingImportResult;
+import com.example.explorecalijpa.business.ScoreDistribution;
 import com.example.explorecalijpa.business.TourRatingService;
 import com.example.explorecalijpa.model.Tour;
 import com.example.explorecalijpa.model.TourRating;
+import com.example.explorecalijpa.repo.TourRatingView;
 
 import jakarta.validation.ConstraintViolationException;
 
@@ -86,11 +102,104 @@ public class TourRatingControllerTest {
 
   @Test
   void testGetAllRatingsForTour() {
-    // Reads allowed for USER
-    when(serviceMock.lookupRatings(anyInt())).thenReturn(List.of(tourRatingMock));
+    // Reads allowed for USER; without size and cursor the whole list, however long
+    doAnswer(inv -> {
+      Consumer<TourRatingView> consumer = inv.getArgument(1);
+      for (int id = 1; id <= 150; id++) {
+        consumer.accept(view(id, CUSTOMER_ID + id, SCORE, null));
+      }
+      return null;
+    }).when(serviceMock).streamRatings(anyInt(), any());
     ResponseEntity<String> res = userRestTemplate.getForEntity(TOUR_RATINGS_URL, String.class);
     assertThat(res.getStatusCode(), is(HttpStatus.OK));
-    verify(serviceMock).lookupRatings(anyInt());
+    assertThat(res.getBody().split("customerId", -1).length - 1, is(150));
+    assertThat(res.getHeaders().containsKey(HttpHeaders.LINK), is(false));
+    verify(serviceMock, never()).lookupRatings(anyInt(), anyInt(), anyInt());
+  }
+
+  @Test
+  void testGetRatingsForTourByCursor() {
+    // Reads allowed for USER; a full page links to the next one
+    when(serviceMock.lookupRatings(TOUR_ID, 0, 3)).thenReturn(List.of(
+        view(7, CUSTOMER_ID, SCORE, COMMENT), view(9, CUSTOMER_ID + 1, 5, null), view(12, CUSTOMER_ID + 2, 1, null)));
+    ResponseEntity<String> res = userRestTemplate.getForEntity(TOUR_RATINGS_URL + "?size=2", String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    assertThat(res.getBody(), is("[{\"score\":3,\"comment\":\"comment\",\"customerId\":1000},"
+        + "{\"score\":5,\"comment\":null,\"customerId\":1001}]"));
+    String link = res.getHeaders().getFirst(HttpHeaders.LINK);
+    assertThat(link.endsWith(">; rel=\"next\""), is(true));
+
+    // following the link continues after the last rating of the page
+    String next = link.substring(link.indexOf(TOUR_RATINGS_URL), link.indexOf('>'));
+    when(serviceMock.lookupRatings(TOUR_ID, 9, 3)).thenReturn(List.of(view(12, CUSTOMER_ID + 2, 1, null)));
+    res = userRestTemplate.getForEntity(next, String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    assertThat(res.getBody(), is("[{\"score\":1,\"comment\":null,\"customerId\":1002}]"));
+    assertThat(res.getHeaders().containsKey(HttpHeaders.LINK), is(false));
+  }
+
+  @Test
+  void testGetRatingsForTourPageSizeIsCapped() {
+    // Reads allowed for USER
+    userRestTemplate.getForEntity(TOUR_RATINGS_URL + "?size=1000000", String.class);
+    verify(serviceMock).lookupRatings(TOUR_ID, 0, 1001);
+  }
+
+  @Test
+  void testGetRatingsForTourInvalidCursor() {
+    // Reads allowed for USER; garbage and cursors of another tour are rejected
+    ResponseEntity<String> res = userRestTemplate.getForEntity(TOUR_RATINGS_URL + "?cursor=!!", String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    String otherTour = Base64.getUrlEncoder().withoutPadding().encodeToString("1:5".getBytes());
+    res = userRestTemplate.getForEntity(TOUR_RATINGS_URL + "?cursor=" + otherTour, String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+  }
+
+  @Test
+  void testStreamAllRatingsForTour() {
+    // Reads allowed for USER
+    doAnswer(inv -> {
+      Consumer<TourRatingView> consumer = inv.getArgument(1);
+      consumer.accept(view(1, CUSTOMER_ID, SCORE, COMMENT));
+      consumer.accept(view(2, CUSTOMER_ID + 1, 5, null));
+      return null;
+    }).when(serviceMock).streamRatings(anyInt(), any());
+    ResponseEntity<String> res = userRestTemplate.getForEntity(TOUR_RATINGS_URL + "?stream=true", String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    assertThat(res.getBody(), is("[{\"score\":3,\"comment\":\"comment\",\"customerId\":1000},"
+        + "{\"score\":5,\"comment\":null,\"customerId\":1001}]"));
+  }
+
+  @Test
+  void testStreamAllRatingsForUnknownTour() {
+    // Reads allowed for USER
+    doThrow(new NoSuchElementException()).when(serviceMock).streamRatings(anyInt(), any());
+    ResponseEntity<String> res = userRestTemplate.getForEntity(TOUR_RATINGS_URL + "?stream=true", String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.NOT_FOUND));
+  }
+
+  private static TourRatingView view(int id, int customerId, int score, String comment) {
+    return new TourRatingView() {
+      public Integer getId() {
+        return id;
+      }
+
+      public Integer getTourId() {
+        return TOUR_ID;
+      }
+
+      public Integer getCustomerId() {
+        return customerId;
+      }
+
+      public Integer getScore() {
+        return score;
+      }
+
+      public String getComment() {
+        return comment;
+      }
+    };
   }
 
   @Test
@@ -102,6 +211,26 @@ public class TourRatingControllerTest {
     verify(serviceMock).getAverageScore(TOUR_ID);
   }
 
+  @Test
+  void testGetScoreDistribution() {
+    // Reads allowed for USER
+    when(serviceMock.getScoreDistribution(TOUR_ID)).thenReturn(
+        new ScoreDistribution(TOUR_ID, new long[] { 0, 2, 0, 0, 0, 6 }, 8, 4.0, 5, 5, 5));
+    ResponseEntity<String> res = userRestTemplate.getForEntity(TOUR_RATINGS_URL + "/distribution", String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    assertThat(res.getBody(), is("{\"tourId\":999,\"counts\":[0,2,0,0,0,6],\"total\":8,\"mean\":4.0,"
+        + "\"p50\":5,\"p90\":5,\"p99\":5}"));
+  }
+
+  @Test
+  void testGetAverages() {
+    // Reads allowed for USER
+    when(serviceMock.getAverageScores(List.of(1, 2))).thenReturn(Map.of(1, 4.0));
+    ResponseEntity<String> res = userRestTemplate.getForEntity("/tours/ratings/averages?ids=1,2", String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    assertThat(res.getBody(), is("{\"1\":4.0}"));
+  }
+
   // PATCH testing works when Apache HttpClient is on the test classpath.
   @Test
   void testUpdateWithPatch() {
@@ -118,6 +247,51 @@ public class TourRatingControllerTest {
     verify(this.serviceMock).update(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT);
   }
 
+  @Test
+  void testPutCreatesMissingRating() {
+    // Mutations require ADMIN
+    when(serviceMock.update(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT)).thenReturn(true);
+    ResponseEntity<Void> res = adminRestTemplate.exchange(TOUR_RATINGS_URL, HttpMethod.PUT,
+        new HttpEntity<>(ratingDto), Void.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.CREATED));
+  }
+
+  @Test
+  void testCreateDuplicateRatingConflicts() {
+    // Mutations require ADMIN
+    when(serviceMock.createNew(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT))
+        .thenThrow(new DataIntegrityViolationException("uk_tour_rating_tour_customer"));
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(TOUR_RATINGS_URL, ratingDto, String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.CONFLICT));
+  }
+
+  @Test
+  void testCreateDuplicateKeyConflicts() {
+    // Mutations require ADMIN
+    when(serviceMock.createNew(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT))
+        .thenThrow(new DuplicateKeyException("Unable to create duplicate ratings"));
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(TOUR_RATINGS_URL, ratingDto, String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.CONFLICT));
+  }
+
+  @Test
+  void testCreateRatingAlreadyQueuedConflicts() {
+    // Mutations require ADMIN
+    when(serviceMock.createNew(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT))
+        .thenThrow(new DataIntegrityViolationException("PUBLIC.UK_TOUR_RATING_OUTBOX_TOUR_CUSTOMER_INDEX_A"));
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(TOUR_RATINGS_URL, ratingDto, String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.CONFLICT));
+  }
+
+  @Test
+  void testCreateRatingViolatingOtherConstraintIsBadRequest() {
+    // Mutations require ADMIN
+    when(serviceMock.createNew(TOUR_ID, CUSTOMER_ID, SCORE, COMMENT))
+        .thenThrow(new DataIntegrityViolationException("Value too long for column \"COMMENT CHARACTER VARYING(100)\""));
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(TOUR_RATINGS_URL, ratingDto, String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+  }
+
   @Test
   void testCreateManyTourRatings() {
     // Mutations require ADMIN
@@ -126,11 +300,78 @@ public class TourRatingControllerTest {
     verify(serviceMock).rateMany(anyInt(), anyInt(), anyList());
   }
 
+  @Test
+  void testCreateManyTourRatingsRejectsScoreOutOfRange() {
+    // Mutations require ADMIN
+    Integer customers[] = { 123 };
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(TOUR_RATINGS_URL + "/batch?score=10", customers,
+        String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    verify(serviceMock, times(0)).rateMany(anyInt(), anyInt(), anyList());
+  }
+
+  @Test
+  void testImportRatings() {
+    // Mutations require ADMIN
+    when(serviceMock.importRatings(anyList()))
+        .thenAnswer(inv -> new RatingImportResult(inv.<List<?>>getArgument(0).size(), List.of()));
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_NDJSON);
+    String body = """
+        {"tourId":1,"customerId":5000,"score":4}
+        {"tourId":1,"customerId":5001,"score":9}
+        {"tourId":2,"customerId":5000,"score":5,"comment":"great"}
+        """;
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(
+        "/tours/ratings/import?chunkSize=2", new HttpEntity<>(body, headers), String.class);
+
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    String[] reports = res.getBody().split("\n");
+    assertThat(reports.length, is(2));
+    assertThat(reports[0].contains("\"imported\":1"), is(true));
+    assertThat(reports[0].contains("\"line\":2"), is(true));
+    assertThat(reports[1].contains("\"imported\":1"), is(true));
+    verify(serviceMock, times(2)).importRatings(anyList());
+  }
+
+  @Test
+  void testImportCsvRatings() {
+    // Mutations require ADMIN
+    when(serviceMock.importRatings(anyList()))
+        .thenAnswer(inv -> new RatingImportResult(inv.<List<?>>getArgument(0).size(), List.of()));
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.parseMediaType("text/csv"));
+    String body = "tourId,customerId,score,comment\n1,5000,4,\"fun, really\"\n1,x,4,\n";
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(
+        "/tours/ratings/import", new HttpEntity<>(body, headers), String.class);
+
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    assertThat(res.getBody().contains("\"imported\":1"), is(true));
+    assertThat(res.getBody().contains("customerId: not a number"), is(true));
+  }
+
+  @Test
+  void testImportRejectsCommentLongerThanTheColumn() {
+    // Mutations require ADMIN
+    when(serviceMock.importRatings(anyList()))
+        .thenAnswer(inv -> new RatingImportResult(inv.<List<?>>getArgument(0).size(), List.of()));
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_NDJSON);
+    String body = "{\"tourId\":1,\"customerId\":5000,\"score\":4,\"comment\":\"" + "x".repeat(101) + "\"}\n"
+        + "{\"tourId\":1,\"customerId\":5001,\"score\":4,\"comment\":\"" + "x".repeat(100) + "\"}\n";
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(
+        "/tours/ratings/import", new HttpEntity<>(body, headers), String.class);
+
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    assertThat(res.getBody().contains("\"imported\":1"), is(true));
+    assertThat(res.getBody().contains("comment: size must be between 0 and 100"), is(true));
+  }
+
   /** Unhappy paths to validate GlobalExceptionHandler */
   @Test
   public void test404() {
     // Reads allowed for USER
-    when(serviceMock.lookupRatings(anyInt())).thenThrow(new NoSuchElementException());
+    doThrow(new NoSuchElementException()).when(serviceMock).streamRatings(anyInt(), any());
     ResponseEntity<String> res = userRestTemplate.getForEntity(TOUR_RATINGS_URL, String.class);
     assertThat(res.getStatusCode(), is(HttpStatus.NOT_FOUND));
   }
@@ -138,7 +379,7 @@ public class TourRatingControllerTest {
   @Test
   public void test400() {
     // Reads allowed for USER
-    when(serviceMock.lookupRatings(anyInt())).thenThrow(new ConstraintViolationException(null));
+    doThrow(new ConstraintViolationException(null)).when(serviceMock).streamRatings(anyInt(), any());
     ResponseEntity<String> res = userRestTemplate.getForEntity(TOUR_RATINGS_URL, String.class);
     assertThat(res.getStatusCode(), is(HttpStatus.BAD_REQUEST));
   }
@@ -0,0 +1,53 @@
+package com.example.explorecalijpa.web;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * A PATCH with a score outside 0-5 is refused before it reaches the rating
+ * or the statistics of the tour (seeded by V1.4: customer 4 gave tour 1 a 5).
+ */
+@SpringBootTest(properties = "features.tour-ratings=true")
+@AutoConfigureMockMvc
+@WithMockUser(roles = "ADMIN")
+@Transactional
+public class TourRatingPatchValidationTest {
+
+  @Autowired
+  private MockMvc mvc;
+
+  @Autowired
+  private JdbcTemplate jdbc;
+
+  @Test
+  void patchWithScoreOutOfRangeIsBadRequest() throws Exception {
+    Map<String, Object> statsBefore = stats();
+
+    mvc.perform(patch("/tours/1/ratings")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"customerId\":4,\"score\":9}"))
+        .andExpect(status().isBadRequest());
+
+    assertThat(jdbc.queryForObject("SELECT score FROM tour_rating WHERE tour_id = 1 AND customer_id = 4",
+        Integer.class), is(5));
+    assertThat(stats(), is(statsBefore));
+  }
+
+  private Map<String, Object> stats() {
+    return jdbc.queryForMap("SELECT * FROM tour_rating_stats WHERE tour_id = 1");
+  }
+}
@@ -0,0 +1,88 @@
+package com.example.explorecalijpa.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.example.explorecalijpa.business.RatingWriteBehind;
+import com.example.explorecalijpa.business.TourRatingService;
+
+/**
+ * Compares creating 20k ratings from 16 threads one transaction each
+ * (TourRatingService.createNew) with queuing them for the write-behind writer.
+ * Prints throughput and the p50/p99 latency seen by the callers.
+ *
+ * Run with: ./mvnw test -Dtest=TourRatingWriteBehindBenchmarkTest -Dbenchmarks=true
+ */
+@SpringBootTest(properties = { "ratings.write-behind.enabled=true", "ratings.write-behind.capacity=100000",
+    "logging.level.com.example.explorecalijpa=WARN" })
+@DirtiesContext
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class TourRatingWriteBehindBenchmarkTest {
+
+  private static final int RATINGS = 20_000;
+  private static final int THREADS = 16;
+
+  @Autowired
+  private TourRatingService tourRatingService;
+
+  @Autowired
+  private RatingWriteBehind writeBehind;
+
+  @Autowired
+  private JdbcTemplate jdbc;
+
+  @Test
+  void synchronousVersusWriteBehind() throws InterruptedException {
+    run("synchronous", 5, c -> {
+      tourRatingService.createNew(5, c, 4, null);
+      return true;
+    });
+    // what the controller does in write-behind mode: no query, the offer waits for the group insert
+    run("write-behind", 6, c -> writeBehind.offer(6, c, 4, null));
+  }
+
+  private int count(int tourId) {
+    return jdbc.queryForObject("SELECT COUNT(*) FROM tour_rating WHERE tour_id = ?", Integer.class, tourId);
+  }
+
+  private void run(String mode, int tourId, IntPredicate create) throws InterruptedException {
+    int before = count(tourId);
+    long[] latencies = new long[RATINGS];
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    long start = System.nanoTime();
+    for (int i = 0; i < RATINGS; i++) {
+      int customer = 3_000_000 + i;
+      int slot = i;
+      pool.execute(() -> {
+        long t = System.nanoTime();
+        assertThat(create.test(customer)).isTrue();
+        latencies[slot] = System.nanoTime() - t;
+      });
+    }
+    pool.shutdown();
+    pool.awaitTermination(10, TimeUnit.MINUTES);
+    long accepted = System.nanoTime() - start;
+    // the write-behind numbers only count once the ratings are in the database
+    while (count(tourId) - before < RATINGS) {
+      Thread.sleep(10);
+    }
+    long written = System.nanoTime() - start;
+
+    Arrays.sort(latencies);
+    System.out.printf("%s ratings=%d accepted in %d ms, written in %d ms (%d/s), p50=%d us p99=%d us%n",
+        mode, RATINGS, accepted / 1_000_000, written / 1_000_000, RATINGS * 1_000_000_000L / written,
+        latencies[RATINGS / 2] / 1_000, latencies[RATINGS * 99 / 100] / 1_000);
+  }
+}
@@ -0,0 +1,79 @@
+package com.example.explorecalijpa.web;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.example.explorecalijpa.business.RatingWriteBehind;
+import com.example.explorecalijpa.business.TourRatingService;
+
+/**
+ * POST /tours/{tourId}/ratings in write-behind mode: queued ratings are
+ * accepted with 202 without a query, a full queue answers 503 and a rating
+ * already queued 409.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "features.tour-ratings=true")
+public class TourRatingWriteBehindControllerTest {
+
+  private static final int TOUR_ID = 999;
+  private static final int CUSTOMER_ID = 1000;
+  private static final String TOUR_RATINGS_URL = "/tours/" + TOUR_ID + "/ratings";
+
+  @Autowired
+  private TestRestTemplate template;
+
+  private TestRestTemplate adminRestTemplate;
+
+  @MockBean
+  private TourRatingService serviceMock;
+
+  @MockBean
+  private RatingWriteBehind writeBehindMock;
+
+  @BeforeEach
+  void setUpAuthClients() {
+    adminRestTemplate = template.withBasicAuth("admin", "admin123");
+  }
+
+  @Test
+  void queuedRatingIsAccepted() {
+    when(writeBehindMock.offer(TOUR_ID, CUSTOMER_ID, 4, "nice")).thenReturn(true);
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(TOUR_RATINGS_URL,
+        new RatingDto(4, "nice", CUSTOMER_ID), String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.ACCEPTED));
+    verifyNoInteractions(serviceMock);
+  }
+
+  @Test
+  void fullQueueIsUnavailable() {
+    when(writeBehindMock.offer(anyInt(), anyInt(), anyInt(), any())).thenReturn(false);
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(TOUR_RATINGS_URL,
+        new RatingDto(4, null, CUSTOMER_ID), String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.SERVICE_UNAVAILABLE));
+    assertThat(res.getHeaders().getFirst(HttpHeaders.RETRY_AFTER), is("1"));
+  }
+
+  @Test
+  void ratingAlreadyQueuedConflicts() {
+    when(writeBehindMock.offer(TOUR_ID, CUSTOMER_ID, 4, null)).thenThrow(new DuplicateKeyException(
+        "Unique index or primary key violation: \"PUBLIC.UK_TOUR_RATING_OUTBOX_TOUR_CUSTOMER_INDEX_A\""));
+    ResponseEntity<String> res = adminRestTemplate.postForEntity(TOUR_RATINGS_URL,
+        new RatingDto(4, null, CUSTOMER_ID), String.class);
+    assertThat(res.getStatusCode(), is(HttpStatus.CONFLICT));
+  }
+}
@@ -0,0 +1,80 @@
+package com.example.explorecalijpa.web;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.example.explorecalijpa.business.TourSearchHit;
+import com.example.explorecalijpa.business.TourService;
+import com.example.explorecalijpa.model.Difficulty;
+import com.example.explorecalijpa.model.Region;
+import com.example.explorecalijpa.model.Tour;
+
+/**
+ * Searches the tours seeded by V1.2; the index follows tours created by the
+ * TourService and deleted through the REST repository.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@DirtiesContext
+public class TourSearchControllerTest {
+
+  private static final String SEARCH_URL = "/tours/search?q={q}";
+
+  @Autowired
+  private TestRestTemplate template;
+
+  @Autowired
+  private TourService tourService;
+
+  private TestRestTemplate user;
+
+  @BeforeEach
+  void setUpAuth() {
+    user = template.withBasicAuth("user", "password");
+  }
+
+  @Test
+  void search() {
+    ResponseEntity<TourSearchHit[]> res = user.getForEntity(SEARCH_URL, TourSearchHit[].class, "big sur");
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    assertThat(res.getBody()[0].title(), is("Big Sur Retreat"));
+  }
+
+  @Test
+  void limit() {
+    ResponseEntity<TourSearchHit[]> res = user.getForEntity(SEARCH_URL + "&limit=2", TourSearchHit[].class,
+        "california");
+    assertThat(res.getBody().length, is(2));
+  }
+
+  @Test
+  void queryRequired() {
+    assertThat(user.getForEntity("/tours/search", String.class).getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    assertThat(user.getForEntity(SEARCH_URL, String.class, " ").getStatusCode(), is(HttpStatus.BAD_REQUEST));
+  }
+
+  @Test
+  void createdAndDeletedToursAreReindexed() {
+    Tour tour = tourService.createTour("Snowboard Cali", "Xylophone Canyon Quest", "A quest.", "A quest.", 100,
+        "1 day", "Xylophone", "Music", Difficulty.Easy, Region.Varies);
+    TourSearchHit[] hits = user.getForObject(SEARCH_URL, TourSearchHit[].class, "xyloph");
+    assertThat(hits.length, is(1));
+    assertThat(hits[0].tourId(), is(tour.getId()));
+
+    // Spring Data REST answers a DELETE that accepts JSON with the deleted tour
+    ResponseEntity<String> deleted = template.withBasicAuth("admin", "admin123")
+        .exchange("/tours/{id}", HttpMethod.DELETE, null, String.class, tour.getId());
+    assertThat(deleted.getStatusCode(), is(HttpStatus.OK));
+    assertThat(user.getForObject(SEARCH_URL, TourSearchHit[].class, "xyloph").length, is(0));
+  }
+}
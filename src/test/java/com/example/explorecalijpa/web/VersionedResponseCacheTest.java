@@ -0,0 +1,136 @@
+package com.example.explorecalijpa.web;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.example.explorecalijpa.business.DataVersions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class VersionedResponseCacheTest {
+
+  private static final String RESOURCE = DataVersions.tourRatings(1);
+
+  private DataVersions versions;
+  private VersionedResponseCache cache;
+  private AtomicInteger built;
+
+  @BeforeEach
+  public void setUp() {
+    versions = new DataVersions();
+    cache = new VersionedResponseCache(versions, new ObjectMapper(), 100, 64);
+    built = new AtomicInteger();
+  }
+
+  @Test
+  public void bodyIsBuiltOncePerVersion() {
+    ResponseEntity<byte[]> first = get(request(), Map.of("average", 4.0));
+    ResponseEntity<byte[]> second = get(request(), Map.of("average", 4.0));
+
+    assertThat(built.get(), is(1));
+    assertThat(new String(second.getBody(), StandardCharsets.UTF_8), is("{\"average\":4.0}"));
+    assertThat(second.getHeaders().getETag(), is(first.getHeaders().getETag()));
+    assertThat(second.getHeaders().getCacheControl(), is(VersionedResponseCache.CACHE_CONTROL));
+  }
+
+  @Test
+  public void currentIfNoneMatchIsNotModified() {
+    String etag = get(request(), Map.of()).getHeaders().getETag();
+    MockHttpServletRequest conditional = request();
+    conditional.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag);
+
+    ResponseEntity<byte[]> res = get(conditional, Map.of());
+    assertThat(res.getStatusCode(), is(HttpStatus.NOT_MODIFIED));
+    assertThat(res.getBody(), is(nullValue()));
+    assertThat(built.get(), is(1));
+  }
+
+  @Test
+  public void bumpMakesStoredResponsesStale() {
+    String etag = get(request(), Map.of()).getHeaders().getETag();
+    versions.bump(RESOURCE);
+
+    MockHttpServletRequest conditional = request();
+    conditional.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+    ResponseEntity<byte[]> res = get(conditional, Map.of());
+    assertThat(res.getStatusCode(), is(HttpStatus.OK));
+    assertThat(res.getHeaders().getETag(), is(not(etag)));
+    assertThat(built.get(), is(2));
+  }
+
+  @Test
+  public void bodyBuiltAcrossAChangeIsNotStored() {
+    ResponseEntity<byte[]> first = cache.json(request(), RESOURCE, () -> {
+      built.incrementAndGet();
+      versions.bump(RESOURCE);
+      return Map.of("average", 4.0);
+    });
+    assertThat(first.getStatusCode(), is(HttpStatus.OK));
+
+    ResponseEntity<byte[]> second = get(request(), Map.of("average", 4.5));
+    assertThat(built.get(), is(2));
+    assertThat(new String(second.getBody(), StandardCharsets.UTF_8), is("{\"average\":4.5}"));
+    assertThat(second.getHeaders().getETag(), is(not(first.getHeaders().getETag())));
+  }
+
+  @Test
+  public void otherResourcesKeepTheirVersion() {
+    String etag = get(request(), Map.of()).getHeaders().getETag();
+    versions.bump(DataVersions.tourRatings(2));
+    versions.bump(DataVersions.PACKAGES);
+
+    MockHttpServletRequest conditional = request();
+    conditional.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+    assertThat(get(conditional, Map.of()).getStatusCode(), is(HttpStatus.NOT_MODIFIED));
+  }
+
+  @Test
+  public void largeBodiesAreGzippedForClientsThatAcceptIt() throws IOException {
+    String body = "x".repeat(100);
+    MockHttpServletRequest gzip = request();
+    gzip.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+    ResponseEntity<byte[]> res = get(gzip, Map.of("body", body));
+    assertThat(res.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), is("gzip"));
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(res.getBody()))) {
+      assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8), is("{\"body\":\"" + body + "\"}"));
+    }
+
+    ResponseEntity<byte[]> identity = get(request(), Map.of("body", body));
+    assertThat(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), is(nullValue()));
+    assertThat(built.get(), is(1));
+  }
+
+  @Test
+  public void smallBodiesAreNotGzipped() {
+    MockHttpServletRequest gzip = request();
+    gzip.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+    assertThat(get(gzip, Map.of()).getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), is(nullValue()));
+  }
+
+  private ResponseEntity<byte[]> get(MockHttpServletRequest request, Map<String, ?> body) {
+    return cache.json(request, RESOURCE, () -> {
+      built.incrementAndGet();
+      return body;
+    });
+  }
+
+  private static MockHttpServletRequest request() {
+    return new MockHttpServletRequest("GET", "/tours/1/ratings/average");
+  }
+}
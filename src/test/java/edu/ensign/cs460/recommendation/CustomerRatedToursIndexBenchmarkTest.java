@@ -0,0 +1,133 @@
+package edu.ensign.cs460.recommendation;
+
+import com.example.explorecalijpa.ExplorecaliJpaApplication;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the SQL exclusion queries recommendations used to run (NOT IN
+ * over the raw ratings or over tour_rating_stats) with the in-memory bitmap
+ * filter at 1M ratings (100k customers x 10 tours).
+ *
+ * Run with: ./mvnw test -Dtest=CustomerRatedToursIndexBenchmarkTest -Dbenchmarks=true
+ */
+@SpringBootTest(classes = ExplorecaliJpaApplication.class,
+    properties = "logging.level.com.example.explorecalijpa=INFO")
+@DirtiesContext
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class CustomerRatedToursIndexBenchmarkTest {
+
+  private static final int CUSTOMERS = 100_000;
+  private static final int RATINGS_PER_CUSTOMER = 10;
+  private static final int TOURS = 30;
+  private static final int LOOKUPS = 500;
+  private static final int LIMIT = 5;
+
+  private static final String RAW_NOT_IN = """
+      SELECT tr.tour_id FROM tour_rating tr JOIN tour t ON t.id = tr.tour_id
+      WHERE tr.tour_id NOT IN (SELECT r.tour_id FROM tour_rating r WHERE r.customer_id = ?)
+      GROUP BY tr.tour_id, t.title
+      ORDER BY AVG(CAST(tr.score AS DOUBLE)) DESC, COUNT(tr.id) DESC, t.title
+      LIMIT ?
+      """;
+  private static final String STATS_NOT_IN = """
+      SELECT s.tour_id FROM tour_rating_stats s JOIN tour t ON t.id = s.tour_id
+      WHERE s.review_count > 0
+        AND s.tour_id NOT IN (SELECT r.tour_id FROM tour_rating r WHERE r.customer_id = ?)
+      ORDER BY CAST(s.score_sum AS DOUBLE) / s.review_count DESC, s.review_count DESC, t.title
+      LIMIT ?
+      """;
+
+  @Autowired
+  private JdbcTemplate jdbc;
+  @Autowired
+  private TourLeaderboard leaderboard;
+  @Autowired
+  private CustomerRatedToursIndex index;
+  @Autowired
+  private RecommendationService service;
+
+  @BeforeAll
+  void loadRatings() {
+    Random random = new Random(42);
+    List<Object[]> batch = new ArrayList<>();
+    for (int c = 1_000; c < 1_000 + CUSTOMERS; c++) {
+      int first = random.nextInt(TOURS);
+      for (int i = 0; i < RATINGS_PER_CUSTOMER; i++) {
+        batch.add(new Object[] { (first + i * 3) % TOURS + 1, c, random.nextInt(6) });
+      }
+      if (batch.size() >= 10_000) {
+        insert(batch);
+      }
+    }
+    insert(batch);
+    jdbc.update("DELETE FROM tour_rating_stats");
+    jdbc.update("""
+        INSERT INTO tour_rating_stats (tour_id, score_sum, review_count,
+            score_0, score_1, score_2, score_3, score_4, score_5)
+          SELECT tour_id, SUM(score), COUNT(id),
+                 SUM(CASE WHEN score = 0 THEN 1 ELSE 0 END), SUM(CASE WHEN score = 1 THEN 1 ELSE 0 END),
+                 SUM(CASE WHEN score = 2 THEN 1 ELSE 0 END), SUM(CASE WHEN score = 3 THEN 1 ELSE 0 END),
+                 SUM(CASE WHEN score = 4 THEN 1 ELSE 0 END), SUM(CASE WHEN score = 5 THEN 1 ELSE 0 END)
+          FROM tour_rating GROUP BY tour_id
+        """);
+    leaderboard.rebuild();
+  }
+
+  private void insert(List<Object[]> batch) {
+    jdbc.batchUpdate("INSERT INTO tour_rating (tour_id, customer_id, score) VALUES (?, ?, ?)", batch);
+    batch.clear();
+  }
+
+  @Test
+  void bitmapFilterVersusSql() {
+    long start = System.nanoTime();
+    index.rebuild();
+    long rebuildMs = (System.nanoTime() - start) / 1_000_000;
+    assertThat(index.customers()).isGreaterThanOrEqualTo(CUSTOMERS);
+
+    int[] customers = new Random(7).ints(LOOKUPS, 1_000, 1_000 + CUSTOMERS).toArray();
+
+    double notIn = time(customers, c -> jdbc.queryForList(RAW_NOT_IN, Integer.class, c, LIMIT));
+    double stats = time(customers, c -> jdbc.queryForList(STATS_NOT_IN, Integer.class, c, LIMIT));
+    double bitmap = time(customers, c -> {
+      service.evictAll();
+      return service.recommendForCustomer(c, LIMIT);
+    });
+
+    System.out.printf("ratings=%d index rebuild=%d ms%n", CUSTOMERS * RATINGS_PER_CUSTOMER, rebuildMs);
+    System.out.printf("per lookup: raw NOT IN=%.3f ms, stats NOT IN=%.3f ms, bitmap=%.4f ms%n",
+        notIn, stats, bitmap);
+
+    for (int c : customers) {
+      assertThat(service.recommendForCustomer(c, LIMIT)).extracting(TourRecommendation::tourId)
+          .isEqualTo(jdbc.queryForList(STATS_NOT_IN, Integer.class, c, LIMIT));
+    }
+  }
+
+  private static double time(int[] customers, IntFunction<List<?>> lookup) {
+    // warm up
+    for (int i = 0; i < 20; i++) {
+      lookup.apply(customers[i]);
+    }
+    long start = System.nanoTime();
+    for (int c : customers) {
+      lookup.apply(c);
+    }
+    return (System.nanoTime() - start) / 1e6 / customers.length;
+  }
+}
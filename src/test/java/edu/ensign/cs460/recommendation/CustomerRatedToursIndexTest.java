@@ -0,0 +1,66 @@
+package edu.ensign.cs460.recommendation;
+
+import com.example.explorecalijpa.repo.TourRatingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CustomerRatedToursIndexTest {
+
+  private static RatedTour rt(Integer customerId, Integer tourId) {
+    return new RatedTour() {
+      public Integer getCustomerId() {
+        return customerId;
+      }
+
+      public Integer getTourId() {
+        return tourId;
+      }
+    };
+  }
+
+  private CustomerRatedToursIndex index;
+
+  @BeforeEach
+  void setUp() {
+    var repo = mock(TourRatingRepository.class);
+    when(repo.streamRatedTours()).thenReturn(Stream.of(
+        rt(4, 1), rt(5, 1), rt(4, 3), rt(100, 2), rt(null, 2), rt(6, null)));
+    index = new CustomerRatedToursIndex(repo);
+    index.rebuild();
+  }
+
+  @Test
+  void rebuild_groups_rated_tours_by_customer() {
+    assertThat(index.customers()).isEqualTo(3);
+    assertThat(index.ratedBy(4).stream()).containsExactly(1, 3);
+    assertThat(index.ratedBy(100).stream()).containsExactly(2);
+    assertThat(index.ratedBy(42).isEmpty()).isTrue();
+  }
+
+  @Test
+  void apply_copies_on_write() {
+    var before = index.ratedBy(4);
+
+    index.apply(2, List.of(4, 7), true);
+    index.apply(1, List.of(4, 5), false);
+
+    assertThat(index.ratedBy(4).stream()).containsExactly(2, 3);
+    assertThat(index.ratedBy(7).stream()).containsExactly(2);
+    assertThat(before.stream()).containsExactly(1, 3);
+  }
+
+  @Test
+  void apply_drops_customers_without_ratings() {
+    index.apply(1, List.of(5), false);
+
+    assertThat(index.customers()).isEqualTo(2);
+    assertThat(index.ratedBy(5).isEmpty()).isTrue();
+  }
+}
@@ -0,0 +1,91 @@
+package edu.ensign.cs460.recommendation;
+
+import com.example.explorecalijpa.repo.TourRatingRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ItemSimilarityIndexTest {
+
+  private static CustomerScore cs(Integer customerId, Integer tourId, Integer score) {
+    return new CustomerScore() {
+      public Integer getCustomerId() {
+        return customerId;
+      }
+
+      public Integer getTourId() {
+        return tourId;
+      }
+
+      public Integer getScore() {
+        return score;
+      }
+    };
+  }
+
+  private final TourRatingRepository repo = mock(TourRatingRepository.class);
+
+  private ItemSimilarityIndex index(int neighbours, Stream<CustomerScore> scores) {
+    when(repo.streamScores()).thenReturn(scores);
+    var index = new ItemSimilarityIndex(repo, neighbours);
+    index.rebuild();
+    return index;
+  }
+
+  @Test
+  void recommends_tours_liked_by_the_same_customers() {
+    // 10 and 11 are liked together, 12 is disliked by whoever likes them
+    var index = index(20, Stream.of(
+        cs(1, 10, 5), cs(1, 11, 5), cs(1, 12, 1),
+        cs(2, 10, 5), cs(2, 11, 4), cs(2, 12, 1),
+        cs(3, 12, 5), cs(3, 13, 5), cs(3, 10, 1),
+        cs(123, 10, 5), cs(124, 10, 1), cs(125, 12, 5), cs(null, 13, 5), cs(4, null, 5)));
+
+    assertThat(index.tours()).isEqualTo(4);
+    assertThat(index.recommend(123)).containsExactly(11);
+    assertThat(index.recommend(125)).containsExactly(13);
+    // 11 is only like 10 and 13 only like 12, which they disliked
+    assertThat(index.recommend(124)).isEmpty();
+    assertThat(index.recommend(3)).isEmpty();
+    assertThat(index.recommend(1)).isEmpty();
+  }
+
+  @Test
+  void unknown_customers_and_empty_ratings_have_no_recommendations() {
+    assertThat(index(20, Stream.of(cs(1, 10, 5), cs(1, 11, 4))).recommend(42)).isEmpty();
+    assertThat(index(20, Stream.empty()).recommend(1)).isEmpty();
+  }
+
+  @Test
+  void neighbours_are_bounded_and_follow_taste_groups() {
+    // customers of group g love the tours with id % 4 == g and dislike the rest
+    Random random = new Random(42);
+    List<CustomerScore> scores = new ArrayList<>();
+    for (int c = 0; c < 2_000; c++) {
+      for (int i = 0; i < 10; i++) {
+        int tour = random.nextInt(100) + 1;
+        scores.add(cs(c, tour, tour % 4 == c % 4 ? 4 + random.nextInt(2) : random.nextInt(3)));
+      }
+    }
+    var index = index(3, scores.stream());
+
+    int[] recommended = index.recommend(6);
+    assertThat(recommended).isNotEmpty();
+    assertThat(recommended.length).isLessThanOrEqualTo(3 * 10);
+    // tours rated just above the customer's mean bring in a few others,
+    // ranked after the tours of their group
+    assertThat(recommended[0] % 4).isEqualTo(2);
+    boolean otherGroup = false;
+    for (int tour : recommended) {
+      otherGroup |= tour % 4 != 2;
+      assertThat(otherGroup && tour % 4 == 2).as("tour %d ranked after another group", tour).isFalse();
+    }
+  }
+}
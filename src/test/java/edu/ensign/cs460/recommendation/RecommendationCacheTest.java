@@ -0,0 +1,105 @@
+package edu.ensign.cs460.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationCacheTest {
+
+  private static final TourRecommendation BIG_SUR = new TourRecommendation(1, "Big Sur Retreat", 4.0, 8L);
+  private static final TourRecommendation JOHN_MUIR = new TourRecommendation(2, "In the Steps of John Muir", 5.0, 1L);
+
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private List<TourRecommendation> load(List<TourRecommendation> value) {
+    loads.incrementAndGet();
+    return value;
+  }
+
+  @Test
+  void hits_and_misses_are_counted() {
+    var cache = new RecommendationCache(10, Duration.ofMinutes(1), now::get);
+    var registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+
+    cache.get(new RecommendationCache.Key(1, 2), () -> load(List.of(JOHN_MUIR, BIG_SUR)));
+    cache.get(new RecommendationCache.Key(1, 2), () -> load(List.of(JOHN_MUIR, BIG_SUR)));
+
+    assertThat(loads).hasValue(1);
+    assertThat(registry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1.0);
+    assertThat(registry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1.0);
+    assertThat(registry.get("cache.size").gauge().value()).isEqualTo(1.0);
+  }
+
+  @Test
+  void entries_expire_after_ttl() {
+    var cache = new RecommendationCache(10, Duration.ofSeconds(30), now::get);
+
+    cache.get(new RecommendationCache.Key(1, 1), () -> load(List.of(JOHN_MUIR)));
+    now.addAndGet(Duration.ofSeconds(31).toNanos());
+    cache.get(new RecommendationCache.Key(1, 1), () -> load(List.of(JOHN_MUIR)));
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void least_recently_used_entry_is_evicted_beyond_max_size() {
+    var cache = new RecommendationCache(2, Duration.ofMinutes(1), now::get);
+
+    cache.get(new RecommendationCache.Key(1, 1), () -> load(List.of(JOHN_MUIR)));
+    cache.get(new RecommendationCache.Key(1, 2), () -> load(List.of(JOHN_MUIR, BIG_SUR)));
+    cache.get(new RecommendationCache.Key(1, 1), () -> load(List.of(JOHN_MUIR)));
+    cache.get(new RecommendationCache.Key(100, 1), () -> load(List.of(BIG_SUR)));
+    cache.get(new RecommendationCache.Key(1, 1), () -> load(List.of(JOHN_MUIR)));
+
+    assertThat(loads).hasValue(3);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  void invalidate_drops_only_affected_entries() {
+    var cache = new RecommendationCache(10, Duration.ofMinutes(1), now::get);
+    // full list that does not contain tour 1 and tour 1 still ranks below it
+    cache.get(new RecommendationCache.Key(1, 1), () -> load(List.of(JOHN_MUIR)));
+    // list containing tour 1
+    cache.get(new RecommendationCache.Key(100, 1), () -> load(List.of(BIG_SUR)));
+    // list of the customer who rated tour 1
+    cache.get(new RecommendationCache.Key(7, 1), () -> load(List.of(JOHN_MUIR)));
+
+    cache.invalidate(1, List.of(7), new TourRecommendation(1, "Big Sur Retreat", 4.1, 9L));
+
+    assertThat(cache.size()).isEqualTo(1);
+    cache.get(new RecommendationCache.Key(1, 1), () -> load(List.of(JOHN_MUIR)));
+    assertThat(loads).hasValue(3);
+  }
+
+  @Test
+  void invalidate_drops_entries_the_tour_now_ranks_into() {
+    var cache = new RecommendationCache(10, Duration.ofMinutes(1), now::get);
+    cache.get(new RecommendationCache.Key(1, 1), () -> load(List.of(BIG_SUR)));
+    cache.get(new RecommendationCache.Key(1, 5), () -> load(List.of(BIG_SUR)));
+
+    cache.invalidate(3, List.of(7), new TourRecommendation(3, "Zion Day Trip", 4.5, 2L));
+
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void load_racing_an_invalidation_is_not_cached() {
+    var cache = new RecommendationCache(10, Duration.ofMinutes(1), now::get);
+
+    cache.get(new RecommendationCache.Key(1, 1), () -> {
+      cache.invalidateAll();
+      return load(List.of(JOHN_MUIR));
+    });
+
+    assertThat(cache.size()).isZero();
+  }
+}
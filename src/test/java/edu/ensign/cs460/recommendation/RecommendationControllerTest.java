@@ -0,0 +1,91 @@
+package edu.ensign.cs460.recommendation;
+
+import com.example.explorecalijpa.ExplorecaliJpaApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The NDJSON batch endpoint: one CustomerRecommendations object per line,
+ * in the order of the request, and a 400 before anything streams.
+ */
+@SpringBootTest(classes = ExplorecaliJpaApplication.class)
+@AutoConfigureMockMvc
+@WithMockUser
+class RecommendationControllerTest {
+
+  @Autowired
+  private MockMvc mvc;
+
+  @MockBean
+  private RecommendationService service;
+
+  @Test
+  void forCustomers_streams_one_line_per_customer() throws Exception {
+    var bikeRide = new TourRecommendation(10, "Coastal Bike Ride", 4.7, 44L);
+    var wineTrip = new TourRecommendation(11, "Wine Country Day Trip", 4.6, 62L);
+    when(service.recommendForCustomers(List.of(1, 2), 2)).thenReturn(Stream.of(
+        new CustomerRecommendations(1, List.of(bikeRide, wineTrip)),
+        new CustomerRecommendations(2, List.of())));
+
+    MvcResult result = mvc.perform(post("/recommendations/customers?limit=2")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_NDJSON)
+            .content("[1, 2]"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+        .andExpect(content().string("""
+            {"customerId":1,"recommendations":[\
+            {"tourId":10,"title":"Coastal Bike Ride","averageScore":4.7,"reviewCount":44},\
+            {"tourId":11,"title":"Wine Country Day Trip","averageScore":4.6,"reviewCount":62}]}
+            {"customerId":2,"recommendations":[]}
+            """));
+  }
+
+  @Test
+  void forCustomers_rejects_invalid_customers_before_streaming() throws Exception {
+    mvc.perform(post("/recommendations/customers")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_NDJSON)
+            .content("[1, null, 0]"))
+        .andExpect(request().asyncNotStarted())
+        .andExpect(status().isBadRequest());
+
+    verify(service, never()).recommendForCustomers(anyList(), anyInt());
+  }
+
+  @Test
+  void forCustomers_rejects_limit_out_of_range() throws Exception {
+    mvc.perform(post("/recommendations/customers?limit=0")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_NDJSON)
+            .content("[1]"))
+        .andExpect(status().isBadRequest());
+
+    verify(service, never()).recommendForCustomers(anyList(), anyInt());
+  }
+}
@@ -1,10 +1,16 @@
 package edu.ensign.cs460.recommendation;
 
+import com.example.explorecalijpa.business.DataVersions;
+import com.example.explorecalijpa.business.TourRatingEvent;
 import com.example.explorecalijpa.repo.TourRatingRepository;
+import com.example.explorecalijpa.repo.TourRatingStatsRepository;
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -12,8 +18,12 @@ import static org.mockito.Mockito.*;
 class RecommendationServiceTest {
 
   // Minimal projection stub to simulate DB results
-  private static TourSummary ts(int id, String title, double avg, long count) {
-    return new TourSummary() {
+  private static VersionedTourSummary ts(int id, String title, double avg, long count) {
+    return ts(id, title, avg, count, 1);
+  }
+
+  private static VersionedTourSummary ts(int id, String title, double avg, long count, long version) {
+    return new VersionedTourSummary() {
       public Integer getTourId() {
         return id;
       }
@@ -29,19 +39,67 @@ class RecommendationServiceTest {
       public Long getReviewCount() {
         return count;
       }
+
+      public Long getVersion() {
+        return version;
+      }
     };
   }
 
-  @Test
-  void recommendTopN_maps_and_uses_page_request() {
-    var repo = mock(TourRatingRepository.class);
-    var svc = new RecommendationService(repo);
+  private static RatedTour rt(int customerId, int tourId) {
+    return new RatedTour() {
+      public Integer getCustomerId() {
+        return customerId;
+      }
+
+      public Integer getTourId() {
+        return tourId;
+      }
+    };
+  }
+
+  private static CustomerScore cs(int customerId, int tourId, int score) {
+    return new CustomerScore() {
+      public Integer getCustomerId() {
+        return customerId;
+      }
+
+      public Integer getTourId() {
+        return tourId;
+      }
+
+      public Integer getScore() {
+        return score;
+      }
+    };
+  }
+
+  private final TourRatingStatsRepository repo = mock(TourRatingStatsRepository.class);
+  private final TourRatingRepository ratingRepo = mock(TourRatingRepository.class);
 
-    when(repo.findTopTours(PageRequest.of(0, 3)))
+  // spied to count the cache misses of recommendForCustomer
+  private CustomerRatedToursIndex ratedTours;
+
+  private RecommendationService service() {
+    var leaderboard = new TourLeaderboard(repo, new DataVersions());
+    leaderboard.rebuild();
+    ratedTours = spy(new CustomerRatedToursIndex(ratingRepo));
+    ratedTours.rebuild();
+    var similarities = new ItemSimilarityIndex(ratingRepo, 20);
+    similarities.rebuild();
+    return new RecommendationService(repo, new RecommendationCache(100, Duration.ofMinutes(5)),
+        leaderboard, ratedTours, similarities);
+  }
+
+  @Test
+  void recommendTopN_served_from_leaderboard_without_queries() {
+    when(repo.findTopTours(Pageable.unpaged()))
         .thenReturn(List.of(
             ts(2, "In the Steps of John Muir", 5.0, 1),
             ts(1, "Big Sur Retreat", 4.0, 8),
             ts(3, "Zion Day Trip", 4.0, 3)));
+    when(ratingRepo.streamRatedTours()).thenReturn(Stream.empty());
+    var svc = service();
 
     var out = svc.recommendTopN(3);
 
@@ -50,35 +108,161 @@ class RecommendationServiceTest {
     assertThat(out.get(1).title()).isEqualTo("Big Sur Retreat");
     assertThat(out.get(2).averageScore()).isEqualTo(4.0);
 
-    verify(repo).findTopTours(PageRequest.of(0, 3));
+    verify(repo, times(1)).findTopTours(Pageable.unpaged());
+    verifyNoMoreInteractions(repo);
   }
 
   @Test
   void recommendTopN_empty_is_ok() {
-    var repo = mock(TourRatingRepository.class);
-    var svc = new RecommendationService(repo);
-
-    when(repo.findTopTours(PageRequest.of(0, 5))).thenReturn(List.of());
+    when(repo.findTopTours(Pageable.unpaged())).thenReturn(List.of());
+    when(ratingRepo.streamRatedTours()).thenReturn(Stream.empty());
+    var svc = service();
 
     var out = svc.recommendTopN(5);
     assertThat(out).isEmpty();
   }
 
   @Test
-  void recommendForCustomer_maps_and_uses_page_request() {
-    var repo = mock(TourRatingRepository.class);
-    var svc = new RecommendationService(repo);
+  void rating_change_reranks_leaderboard() {
+    when(repo.findTopTours(Pageable.unpaged()))
+        .thenReturn(List.of(
+            ts(2, "In the Steps of John Muir", 5.0, 1),
+            ts(1, "Big Sur Retreat", 4.0, 8)));
+    when(ratingRepo.streamRatedTours()).thenReturn(Stream.empty());
+    when(repo.findSummary(1)).thenReturn(Optional.of(ts(1, "Big Sur Retreat", 5.0, 9, 2)));
+    var svc = service();
+
+    svc.onTourRatingChanged(new TourRatingEvent(1, List.of(123), TourRatingEvent.Change.CREATED));
 
-    when(repo.findRecommendedForCustomer(123, PageRequest.of(0, 2)))
+    assertThat(svc.recommendTopN(2)).extracting(TourRecommendation::tourId)
+        .containsExactly(1, 2);
+  }
+
+  @Test
+  void recommendForCustomer_skips_rated_tours_without_queries() {
+    when(repo.findTopTours(Pageable.unpaged()))
         .thenReturn(List.of(
             ts(10, "Coastal Bike Ride", 4.7, 44),
+            ts(12, "Hot Springs Soak", 4.65, 12),
             ts(11, "Wine Country Day Trip", 4.6, 62)));
+    when(ratingRepo.streamRatedTours()).thenReturn(Stream.of(rt(123, 12), rt(7, 10)));
+    var svc = service();
 
     var out = svc.recommendForCustomer(123, 2);
 
     assertThat(out).extracting(TourRecommendation::tourId)
         .containsExactly(10, 11);
+    verify(repo, times(1)).findTopTours(Pageable.unpaged());
+    verifyNoMoreInteractions(repo);
+  }
+
+  @Test
+  void recommendForCustomer_is_cached_until_evictAll() {
+    when(repo.findTopTours(Pageable.unpaged()))
+        .thenReturn(List.of(ts(10, "Coastal Bike Ride", 4.7, 44)));
+    when(ratingRepo.streamRatedTours()).thenReturn(Stream.empty());
+    var svc = service();
+
+    svc.recommendForCustomer(123, 1);
+    svc.recommendForCustomer(123, 1);
+    verify(ratedTours, times(1)).ratedBy(123);
+
+    svc.evictAll();
+    svc.recommendForCustomer(123, 1);
+    verify(ratedTours, times(2)).ratedBy(123);
+  }
+
+  @Test
+  void rating_change_invalidates_the_rating_customer() {
+    when(repo.findTopTours(Pageable.unpaged()))
+        .thenReturn(List.of(ts(10, "Coastal Bike Ride", 4.7, 44)));
+    when(ratingRepo.streamRatedTours()).thenReturn(Stream.empty());
+    when(repo.findSummary(11)).thenReturn(Optional.empty());
+    var svc = service();
+
+    svc.recommendForCustomer(123, 1);
+    svc.recommendForCustomer(7, 1);
+    svc.onTourRatingChanged(new TourRatingEvent(11, List.of(123), TourRatingEvent.Change.UPDATED));
+    svc.recommendForCustomer(123, 1);
+    svc.recommendForCustomer(7, 1);
+
+    verify(ratedTours, times(2)).ratedBy(123);
+    // tour 11 is not on customer 7's list
+    verify(ratedTours, times(1)).ratedBy(7);
+  }
+
+  @Test
+  void rating_changes_update_the_customers_rated_tours() {
+    when(repo.findTopTours(Pageable.unpaged()))
+        .thenReturn(List.of(
+            ts(10, "Coastal Bike Ride", 4.7, 44),
+            ts(11, "Wine Country Day Trip", 4.6, 62)));
+    when(ratingRepo.streamRatedTours()).thenReturn(Stream.empty());
+    when(repo.findSummary(10)).thenReturn(Optional.of(ts(10, "Coastal Bike Ride", 4.7, 45, 2)));
+    var svc = service();
+
+    assertThat(svc.recommendForCustomer(123, 1)).extracting(TourRecommendation::tourId)
+        .containsExactly(10);
+
+    svc.onTourRatingChanged(new TourRatingEvent(10, List.of(123), TourRatingEvent.Change.CREATED));
+    assertThat(svc.recommendForCustomer(123, 1)).extracting(TourRecommendation::tourId)
+        .containsExactly(11);
+
+    svc.onTourRatingChanged(new TourRatingEvent(10, List.of(123), TourRatingEvent.Change.DELETED));
+    assertThat(svc.recommendForCustomer(123, 1)).extracting(TourRecommendation::tourId)
+        .containsExactly(10);
+  }
+
+  @Test
+  void recommendForCustomer_item_item_prefers_similar_tours_then_popular() {
+    when(repo.findTopTours(Pageable.unpaged()))
+        .thenReturn(List.of(
+            ts(12, "Hot Springs Soak", 4.9, 12),
+            ts(10, "Coastal Bike Ride", 4.7, 44),
+            ts(11, "Wine Country Day Trip", 4.6, 62)));
+    when(ratingRepo.streamRatedTours()).thenReturn(Stream.of(rt(123, 10)));
+    when(ratingRepo.streamScores()).thenReturn(Stream.of(
+        cs(1, 10, 5), cs(1, 11, 5), cs(1, 12, 1),
+        cs(2, 10, 5), cs(2, 11, 4), cs(2, 12, 1),
+        cs(123, 10, 5)));
+    var svc = service();
+
+    assertThat(svc.recommendForCustomer(123, 2, RecommendationStrategy.POPULAR))
+        .extracting(TourRecommendation::tourId).containsExactly(12, 11);
+    assertThat(svc.recommendForCustomer(123, 2, RecommendationStrategy.ITEM_ITEM))
+        .extracting(TourRecommendation::tourId).containsExactly(11, 12);
+  }
+
+  @Test
+  void recommendForCustomer_item_item_falls_back_to_popular_for_unknown_customers() {
+    when(repo.findTopTours(Pageable.unpaged()))
+        .thenReturn(List.of(
+            ts(10, "Coastal Bike Ride", 4.7, 44),
+            ts(11, "Wine Country Day Trip", 4.6, 62)));
+    when(ratingRepo.streamScores()).thenReturn(Stream.of(cs(1, 10, 5), cs(1, 11, 4)));
+    var svc = service();
+
+    assertThat(svc.recommendForCustomer(42, 5, RecommendationStrategy.ITEM_ITEM))
+        .extracting(TourRecommendation::tourId).containsExactly(10, 11);
+  }
+
+  @Test
+  void recommendForCustomers_filters_one_snapshot_per_customer() {
+    when(repo.findTopTours(Pageable.unpaged()))
+        .thenReturn(List.of(
+            ts(10, "Coastal Bike Ride", 4.7, 44),
+            ts(11, "Wine Country Day Trip", 4.6, 62),
+            ts(12, "Hot Springs Soak", 4.5, 12)));
+    when(ratingRepo.streamRatedTours()).thenReturn(Stream.of(rt(1, 10), rt(2, 11), rt(2, 12)));
+    var svc = service();
+
+    var out = svc.recommendForCustomers(List.of(1, 2, 3), 2).toList();
 
-    verify(repo).findRecommendedForCustomer(123, PageRequest.of(0, 2));
+    assertThat(out).extracting(CustomerRecommendations::customerId).containsExactly(1, 2, 3);
+    assertThat(out.get(0).recommendations()).extracting(TourRecommendation::tourId).containsExactly(11, 12);
+    assertThat(out.get(1).recommendations()).extracting(TourRecommendation::tourId).containsExactly(10);
+    assertThat(out.get(2).recommendations()).extracting(TourRecommendation::tourId).containsExactly(10, 11);
+    verify(repo, times(1)).findTopTours(Pageable.unpaged());
+    verifyNoMoreInteractions(repo);
   }
 }
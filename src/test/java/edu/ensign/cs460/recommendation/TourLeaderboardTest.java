@@ -0,0 +1,120 @@
+package edu.ensign.cs460.recommendation;
+
+import com.example.explorecalijpa.business.DataVersions;
+import com.example.explorecalijpa.repo.TourRatingStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TourLeaderboardTest {
+
+  private static VersionedTourSummary ts(int id, String title, double avg, long count) {
+    return ts(id, title, avg, count, 1);
+  }
+
+  private static VersionedTourSummary ts(int id, String title, double avg, long count, long version) {
+    return new VersionedTourSummary() {
+      public Integer getTourId() {
+        return id;
+      }
+
+      public String getTitle() {
+        return title;
+      }
+
+      public Double getAvgScore() {
+        return avg;
+      }
+
+      public Long getReviewCount() {
+        return count;
+      }
+
+      public Long getVersion() {
+        return version;
+      }
+    };
+  }
+
+  private final DataVersions versions = new DataVersions();
+  private TourLeaderboard leaderboard;
+
+  @BeforeEach
+  void setUp() {
+    var repo = mock(TourRatingStatsRepository.class);
+    // deliberately out of order, the rebuild must not rely on the database sort
+    when(repo.findTopTours(Pageable.unpaged())).thenReturn(List.of(
+        ts(3, "Zion Day Trip", 4.0, 3),
+        ts(1, "Big Sur Retreat", 4.0, 8),
+        ts(4, "Amgen Tour", 4.0, 3),
+        ts(2, "In the Steps of John Muir", 5.0, 1)));
+    leaderboard = new TourLeaderboard(repo, versions);
+    leaderboard.rebuild();
+  }
+
+  @Test
+  void rebuild_orders_by_avg_then_count_then_title() {
+    assertThat(leaderboard.snapshot()).extracting(TourRecommendation::tourId)
+        .containsExactly(2, 1, 4, 3);
+  }
+
+  @Test
+  void rebuild_bumps_the_ratings_version() {
+    long loaded = versions.current(DataVersions.RATINGS);
+
+    leaderboard.rebuild();
+
+    // responses cached from the empty ranking before the startup rebuild are stale
+    assertThat(loaded).isPositive();
+    assertThat(versions.current(DataVersions.RATINGS)).isGreaterThan(loaded);
+  }
+
+  @Test
+  void top_is_bounded_by_limit_and_size() {
+    assertThat(leaderboard.top(2)).extracting(TourRecommendation::tourId).containsExactly(2, 1);
+    assertThat(leaderboard.top(100)).hasSize(4);
+  }
+
+  @Test
+  void update_moves_tour_without_changing_previous_snapshot() {
+    var before = leaderboard.snapshot();
+
+    leaderboard.update(3, 2, new TourRecommendation(3, "Zion Day Trip", 4.5, 4L));
+
+    assertThat(leaderboard.snapshot()).extracting(TourRecommendation::tourId)
+        .containsExactly(2, 3, 1, 4);
+    assertThat(before).extracting(TourRecommendation::tourId)
+        .containsExactly(2, 1, 4, 3);
+    assertThatThrownBy(() -> before.add(null)).isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  void update_adds_and_removes_tours() {
+    leaderboard.update(5, 1, new TourRecommendation(5, "Coastal Bike Ride", 4.0, 3L));
+    leaderboard.update(2, 2, null);
+
+    assertThat(leaderboard.snapshot()).extracting(TourRecommendation::tourId)
+        .containsExactly(1, 4, 5, 3);
+  }
+
+  @Test
+  void update_read_before_a_newer_one_is_dropped() {
+    // two rating changes of tour 3 commit, the newer summary is applied first
+    var newer = new TourRecommendation(3, "Zion Day Trip", 4.5, 5L);
+    assertThat(leaderboard.update(3, 3, newer)).isEqualTo(newer);
+    assertThat(leaderboard.update(3, 2, new TourRecommendation(3, "Zion Day Trip", 4.25, 4L)))
+        .isEqualTo(newer);
+    assertThat(leaderboard.update(3, 1, null)).isEqualTo(newer);
+
+    assertThat(leaderboard.get(3)).isEqualTo(newer);
+    assertThat(leaderboard.snapshot()).extracting(TourRecommendation::tourId)
+        .containsExactly(2, 3, 1, 4);
+  }
+}